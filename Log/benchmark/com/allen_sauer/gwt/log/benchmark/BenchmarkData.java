@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.benchmark;
+
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Inputs shared by the benchmarks.
+ */
+final class BenchmarkData {
+  /**
+   * Stack frames below the benchmark method in which each throwable is created.
+   */
+  private static final int FRAMES = 20;
+
+  /**
+   * Discards everything written to it, for backends which write to a stream.
+   */
+  static final PrintStream NULL_PRINT_STREAM = new PrintStream(new OutputStream() {
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+
+    @Override
+    public void write(int b) {
+    }
+  });
+
+  /**
+   * Simulate a record received from a client, whose throwable is only present in wrapped form.
+   */
+  static LogRecord clientRecord(LogRecord record) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeObject(record);
+      out.close();
+      return (LogRecord) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+          .readObject();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Create a throwable with the supplied number of causes, each with a realistic stack depth.
+   */
+  static Throwable throwable(int causes) {
+    Throwable cause = causes == 0 ? null : throwable(causes - 1);
+    return create(FRAMES, "failure " + causes, cause);
+  }
+
+  private static Throwable create(int frames, String message, Throwable cause) {
+    return frames == 0 ? new IllegalStateException(message, cause)
+        : create(frames - 1, message, cause);
+  }
+
+  private BenchmarkData() {
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.benchmark;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of a {@link LogRecord}, which captures a bookmark stack when no throwable is
+ * supplied and otherwise wraps the throwable and its causes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+public class LogRecordBenchmark {
+  @Param({"0", "2"})
+  public int causes;
+
+  private Throwable throwable;
+
+  @Setup
+  public void setUp() {
+    throwable = BenchmarkData.throwable(causes);
+  }
+
+  @Benchmark
+  public LogRecord withoutThrowable() {
+    return new LogRecord("gwt-log", Log.LOG_LEVEL_INFO, "message", null);
+  }
+
+  @Benchmark
+  public LogRecord withThrowable() {
+    return new LogRecord("gwt-log", Log.LOG_LEVEL_ERROR, "message", throwable);
+  }
+}
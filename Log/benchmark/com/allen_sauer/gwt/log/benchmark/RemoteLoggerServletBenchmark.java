@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.benchmark;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.server.RemoteLoggerServlet;
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * {@link RemoteLoggerServlet#log(ArrayList)} end to end, i.e. tagging, deobfuscation,
+ * fingerprinting, aggregation, metrics and dispatch to the server side log, for a batch of
+ * records received from a client. The request is a proxy which answers the header and address
+ * lookups the servlet makes. No symbol maps are configured, so deobfuscation only walks the
+ * stack traces, and records are dispatched to whichever server side logging implementation
+ * {@link Log} selects, i.e. the SLF4J no-operation logger if no binding is on the classpath.
+ * <p>
+ * Since the servlet tags and deobfuscates the records it receives in place, each thread logs a
+ * batch of its own, deserialized afresh before each invocation just as RPC would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+public class RemoteLoggerServletBenchmark {
+  /**
+   * Binds the mocked request, and a batch of records, to each benchmark thread.
+   */
+  @State(Scope.Thread)
+  public static class Request {
+    private ArrayList<LogRecord> batch;
+
+    private ArrayList<LogRecord> templates;
+
+    @Setup(Level.Invocation)
+    public void deserialize() {
+      batch = new ArrayList<LogRecord>(templates.size());
+      for (LogRecord template : templates) {
+        batch.add(BenchmarkData.clientRecord(template));
+      }
+    }
+
+    @Setup
+    public void setUp(RemoteLoggerServletBenchmark benchmark) {
+      templates = new ArrayList<LogRecord>();
+      Throwable throwable = BenchmarkData.throwable(2);
+      for (int i = 0; i < benchmark.batchSize; i++) {
+        boolean error = i * 100 < benchmark.errorPercent * benchmark.batchSize;
+        templates.add(new LogRecord("com.example.client.Module" + i % 5,
+            error ? Log.LOG_LEVEL_ERROR : Log.LOG_LEVEL_INFO, "message " + i, error ? throwable
+                : null));
+      }
+      benchmark.servlet.setRequest(proxy(HttpServletRequest.class, new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+          String name = method.getName();
+          if (name.equals("getRemoteAddr")) {
+            return "127.0.0.1";
+          } else if (name.equals("getHeader")) {
+            return "X-GWT-Permutation".equals(args[0]) ? PERMUTATION : null;
+          } else if (name.equals("getContentLength")) {
+            return -1;
+          }
+          return null;
+        }
+      }));
+    }
+  }
+
+  /**
+   * Exposes the request thread local which GWT RPC sets while handling a request.
+   */
+  @SuppressWarnings("serial")
+  static class Servlet extends RemoteLoggerServlet {
+    void setRequest(HttpServletRequest request) {
+      // initializes the thread local
+      getThreadLocalRequest();
+      perThreadRequest.set(request);
+    }
+  }
+
+  private static final String PERMUTATION = "0123456789ABCDEF0123456789ABCDEF";
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+    return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler);
+  }
+
+  @Param({"1", "10", "50"})
+  public int batchSize;
+
+  /**
+   * Percentage of records with a throwable.
+   */
+  @Param({"0", "20", "100"})
+  public int errorPercent;
+
+  private Servlet servlet;
+
+  @Benchmark
+  @Threads(1)
+  public ArrayList<LogRecord> log(Request request) {
+    return servlet.log(request.batch);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public ArrayList<LogRecord> log4Threads(Request request) {
+    return servlet.log(request.batch);
+  }
+
+  @Setup
+  public void setUp() throws ServletException {
+    servlet = new Servlet();
+    servlet.init(proxy(ServletConfig.class, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+        if (name.equals("getInitParameterNames")) {
+          return Collections.enumeration(Collections.emptyList());
+        } else if (name.equals("getServletName")) {
+          return "remote-logger-servlet";
+        }
+        return null;
+      }
+    }));
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.benchmark;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.server.QueueingServerLog;
+import com.allen_sauer.gwt.log.server.ServerLog;
+import com.allen_sauer.gwt.log.server.ServerLogImplFile;
+import com.allen_sauer.gwt.log.server.ServerLogImplJDK14;
+import com.allen_sauer.gwt.log.server.ServerLogImplJournal;
+import com.allen_sauer.gwt.log.server.ServerLogImplLog4J;
+import com.allen_sauer.gwt.log.server.ServerLogImplSLF4J;
+import com.allen_sauer.gwt.log.server.ServerLogImplStdio;
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import org.apache.log4j.WriterAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
+
+/**
+ * Throughput of each server side logging implementation's {@link ServerLog#log(LogRecord)} with
+ * 1, 4 and 16 logging threads. Backends which write to a stream are pointed at one which discards
+ * its output, so that formatting and locking are measured rather than the terminal. SLF4J logs to
+ * whichever binding is on the classpath, i.e. the no-operation logger if there is none.
+ * <p>
+ * The FILE and JOURNAL backends write to a temporary directory, which is deleted after each
+ * iteration so that disk use stays bounded. The FILE backend only enqueues records for its writer
+ * thread; once its queue is full, further records are dropped, so its score is that of enqueuing
+ * and dropping rather than of writing, and the number of dropped records is printed after each
+ * iteration. The JOURNAL backend is measured without its index, whose cost is measured by
+ * <code>JournalIndexBenchmark</code>.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+public class ServerLogBenchmark {
+  private static final String PATTERN = "%d [%-5p] %c: %m%n";
+
+  @Param({"FILE", "JDK14", "JOURNAL", "LOG4J", "SLF4J", "STDIO"})
+  public String backend;
+
+  private Path dir;
+
+  private ServerLog log;
+
+  private LogRecord record;
+
+  private PrintStream stderr;
+
+  private static void delete(Path path) throws IOException {
+    if (Files.isDirectory(path)) {
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+        for (Path child : stream) {
+          delete(child);
+        }
+      }
+    }
+    Files.deleteIfExists(path);
+  }
+
+  @Setup(Level.Iteration)
+  public void setUp() throws IOException {
+    record = new LogRecord("com.allen_sauer.gwt.log.benchmark.Category", Log.LOG_LEVEL_INFO,
+        "benchmark message", null);
+    switch (backend) {
+      case "FILE":
+        dir = Files.createTempDirectory("gwt-log-benchmark");
+        System.setProperty(ServerLogImplFile.GWT_LOG_FILE_PREFERENCE, dir.resolve("gwt-log.log")
+            .toString());
+        log = new ServerLogImplFile();
+        break;
+      case "JDK14":
+        LogManager.getLogManager().reset();
+        Logger root = Logger.getLogger("");
+        root.setLevel(java.util.logging.Level.INFO);
+        root.addHandler(new StreamHandler(BenchmarkData.NULL_PRINT_STREAM, new SimpleFormatter()));
+        log = new ServerLogImplJDK14();
+        break;
+      case "JOURNAL":
+        dir = Files.createTempDirectory("gwt-log-benchmark");
+        System.setProperty(ServerLogImplJournal.GWT_LOG_JOURNAL_DIR_PREFERENCE, dir.toString());
+        System.setProperty(ServerLogImplJournal.GWT_LOG_JOURNAL_INDEX_PARTITION_PREFERENCE, "0");
+        log = new ServerLogImplJournal();
+        break;
+      case "LOG4J":
+        org.apache.log4j.Logger rootLogger = org.apache.log4j.Logger.getRootLogger();
+        rootLogger.removeAllAppenders();
+        rootLogger.setLevel(org.apache.log4j.Level.INFO);
+        rootLogger.addAppender(new WriterAppender(new org.apache.log4j.PatternLayout(PATTERN),
+            BenchmarkData.NULL_PRINT_STREAM));
+        log = new ServerLogImplLog4J();
+        break;
+      case "SLF4J":
+        log = new ServerLogImplSLF4J();
+        break;
+      case "STDIO":
+        System.setProperty(ServerLogImplStdio.GWT_LOG_PATTERN_PREFERENCE, PATTERN);
+        stderr = System.err;
+        System.setErr(BenchmarkData.NULL_PRINT_STREAM);
+        log = new ServerLogImplStdio();
+        break;
+      default:
+        throw new IllegalArgumentException(backend);
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() throws IOException {
+    if (stderr != null) {
+      System.setErr(stderr);
+      stderr = null;
+    }
+    if (log instanceof QueueingServerLog) {
+      QueueingServerLog queueing = (QueueingServerLog) log;
+      queueing.close();
+      System.out.println(backend + ": dropped " + queueing.getDroppedCount() + " records");
+    }
+    if (dir != null) {
+      delete(dir);
+      dir = null;
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void threads1() {
+    log.log(record);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void threads16() {
+    log.log(record);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void threads4() {
+    log.log(record);
+  }
+}
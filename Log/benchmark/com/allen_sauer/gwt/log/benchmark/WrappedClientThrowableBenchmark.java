@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.benchmark;
+
+import com.allen_sauer.gwt.log.shared.UnwrappedClientThrowable;
+import com.allen_sauer.gwt.log.shared.WrappedClientThrowable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wrapping a throwable for transfer to the server, and reconstituting it there.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+public class WrappedClientThrowableBenchmark {
+  @Param({"0", "2", "5"})
+  public int causes;
+
+  private Throwable throwable;
+
+  private WrappedClientThrowable wrapped;
+
+  @Setup
+  public void setUp() {
+    throwable = BenchmarkData.throwable(causes);
+    wrapped = WrappedClientThrowable.getInstanceOrNull(throwable);
+  }
+
+  @Benchmark
+  public UnwrappedClientThrowable unwrap() {
+    return UnwrappedClientThrowable.getInstanceOrNull(wrapped);
+  }
+
+  @Benchmark
+  public WrappedClientThrowable wrap() {
+    return WrappedClientThrowable.getInstanceOrNull(throwable);
+  }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.loadtest;
+
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+import com.google.gwt.user.server.rpc.SerializationPolicyLoader;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.client.RemoteLoggerService;
+import com.allen_sauer.gwt.log.server.LatencyHistogram;
+import com.allen_sauer.gwt.log.server.RemoteLoggerServlet;
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Load generator which boots {@link RemoteLoggerServlet} in an embedded Jetty on localhost and
+ * posts synthetic GWT RPC batches to it from a number of client threads, as the client side
+ * remote logger would, then reports the sustained throughput, the latency percentiles observed by
+ * the clients and the garbage collection activity of the process. Everything runs in a single
+ * JVM without network access, so the figures include the cost of the clients.
+ * 
+ * <p>
+ * Configured with system properties, e.g.
+ * <code>ant loadtest -Dloadtest.threads=8 -Dloadtest.permutations=70,20,10</code>:
+ * </p>
+ * <dl>
+ * <dt><code>loadtest.batchSize</code></dt>
+ * <dd>records per request, default 20</dd>
+ * <dt><code>loadtest.causes</code></dt>
+ * <dd>causes chained to each logged throwable, default 1</dd>
+ * <dt><code>loadtest.depth</code></dt>
+ * <dd>stack frames of each throwable and cause, default 30</dd>
+ * <dt><code>loadtest.duration</code></dt>
+ * <dd>seconds to measure for, default 30</dd>
+ * <dt><code>loadtest.errorPercent</code></dt>
+ * <dd>percentage of records logged at ERROR with a throwable, default 25</dd>
+ * <dt><code>loadtest.permutations</code></dt>
+ * <dd>relative share of requests sent by each permutation, default 1, i.e. a single one</dd>
+ * <dt><code>loadtest.symbolMaps</code></dt>
+ * <dd>symbol maps directory to deobfuscate with, default none</dd>
+ * <dt><code>loadtest.threads</code></dt>
+ * <dd>concurrent clients, default 4</dd>
+ * <dt><code>loadtest.warmup</code></dt>
+ * <dd>seconds to run before measuring, default 10</dd>
+ * </dl>
+ * <p>
+ * The server side log is selected with the usual <code>gwt-log.*</code> system properties.
+ * </p>
+ */
+public final class RemoteLoggerLoadTest {
+  /**
+   * Posts batches until stopped, counting those which complete while measuring.
+   */
+  private final class Client extends Thread {
+    private long batches;
+    private long errors;
+    private long records;
+
+    private Client(int id) {
+      super("loadtest-client-" + id);
+    }
+
+    @Override
+    public void run() {
+      byte[] buf = new byte[8192];
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      while (running) {
+        Permutation permutation = pickPermutation(random.nextInt(totalWeight));
+        byte[] body = permutation.bodies[random.nextInt(permutation.bodies.length)];
+        boolean measured = measuring;
+        long start = System.nanoTime();
+        boolean ok = post(permutation.strongName, body, buf);
+        long duration = System.nanoTime() - start;
+        if (measured && running) {
+          if (ok) {
+            batches++;
+            records += batchSize;
+            histogram.record(duration);
+          } else {
+            errors++;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * A compiled permutation of the client, with the pre-encoded batches which it sends.
+   */
+  private static final class Permutation {
+    private byte[][] bodies;
+    private String strongName;
+    private int weight;
+  }
+
+  private static final String CONTENT_TYPE = "text/x-gwt-rpc; charset=utf-8";
+
+  private static final String MODULE = "loadtest";
+
+  /**
+   * The types in the serialization policy which the GWT compiler generates for
+   * {@link RemoteLoggerService}.
+   */
+  private static final String[] POLICY_TYPES = {
+      "com.allen_sauer.gwt.log.shared.LogRecord",
+      "com.allen_sauer.gwt.log.shared.WrappedClientThrowable", "java.lang.StackTraceElement",
+      "[Ljava.lang.StackTraceElement;", "java.lang.String", "java.util.ArrayList",
+      "java.util.HashMap"};
+
+  /**
+   * Distinct pre-encoded batches per permutation, so that requests are not all identical.
+   */
+  private static final int VARIANTS = 16;
+
+  public static void main(String[] args) throws Exception {
+    new RemoteLoggerLoadTest().run();
+  }
+
+  private static long[] gcTotals() {
+    long[] totals = new long[2];
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      totals[0] += Math.max(0, gc.getCollectionCount());
+      totals[1] += Math.max(0, gc.getCollectionTime());
+    }
+    return totals;
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.US, "%.3f", nanos / 1e6);
+  }
+
+  private static String strongName(int permutation) {
+    return String.format("%032X", 0x5EED0000L + permutation);
+  }
+
+  private final int batchSize = Integer.getInteger("loadtest.batchSize", 20);
+  private final int causes = Integer.getInteger("loadtest.causes", 1);
+  private final int depth = Integer.getInteger("loadtest.depth", 30);
+  private final int duration = Integer.getInteger("loadtest.duration", 30);
+  private final int errorPercent = Integer.getInteger("loadtest.errorPercent", 25);
+  private final LatencyHistogram histogram = new LatencyHistogram(Long.MAX_VALUE);
+  private volatile boolean measuring;
+  private String moduleBaseUrl;
+  private final String permutationMix = System.getProperty("loadtest.permutations", "1");
+  private Permutation[] permutations;
+  private volatile boolean running = true;
+  private URL serviceUrl;
+  private final String symbolMaps = System.getProperty("loadtest.symbolMaps");
+  private final int threads = Integer.getInteger("loadtest.threads", 4);
+  private int totalWeight;
+  private final int warmup = Integer.getInteger("loadtest.warmup", 10);
+
+  private RemoteLoggerLoadTest() {
+  }
+
+  /**
+   * A record as logged by the client, with an obfuscated stack trace if it is an error. Method
+   * names are drawn from a small pool so that the same failures recur, as they do in practice.
+   */
+  private LogRecord createRecord(Random random, String strongName) {
+    String category = "com.example.client.Module" + random.nextInt(20);
+    if (random.nextInt(100) >= errorPercent) {
+      int level = random.nextBoolean() ? Log.LOG_LEVEL_INFO : Log.LOG_LEVEL_DEBUG;
+      return new LogRecord(category, level, "synthetic message " + random.nextInt(1000), null);
+    }
+    Throwable throwable = null;
+    for (int i = causes; i >= 0; i--) {
+      throwable = new RuntimeException("synthetic failure " + random.nextInt(50), throwable);
+      StackTraceElement[] stackTrace = new StackTraceElement[depth];
+      for (int j = 0; j < depth; j++) {
+        stackTrace[j] = new StackTraceElement("Unknown", "$" + Integer.toString(
+            random.nextInt(200), Character.MAX_RADIX), moduleBaseUrl + strongName + ".cache.js",
+            random.nextInt(5000));
+      }
+      throwable.setStackTrace(stackTrace);
+    }
+    return new LogRecord(category, Log.LOG_LEVEL_ERROR, "synthetic error", throwable);
+  }
+
+  private void createPermutations(File moduleDir) throws IOException, ParseException,
+      SerializationException {
+    String[] weights = permutationMix.split(",");
+    permutations = new Permutation[weights.length];
+    Method logMethod;
+    try {
+      logMethod = RemoteLoggerService.class.getMethod("log", ArrayList.class);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+    Random random = new Random(42);
+    for (int i = 0; i < permutations.length; i++) {
+      Permutation permutation = permutations[i] = new Permutation();
+      permutation.strongName = strongName(i);
+      permutation.weight = Integer.parseInt(weights[i].trim());
+      totalWeight += permutation.weight;
+
+      File policyFile = new File(moduleDir, permutation.strongName + ".gwt.rpc");
+      Writer writer = new OutputStreamWriter(new FileOutputStream(policyFile),
+          SerializationPolicyLoader.SERIALIZATION_POLICY_FILE_ENCODING);
+      try {
+        for (String type : POLICY_TYPES) {
+          writer.write(type + ", true\n");
+        }
+      } finally {
+        writer.close();
+      }
+      SerializationPolicy policy;
+      InputStream in = new FileInputStream(policyFile);
+      try {
+        policy = SerializationPolicyLoader.loadFromStream(in, null);
+      } finally {
+        in.close();
+      }
+
+      permutation.bodies = new byte[VARIANTS][];
+      for (int j = 0; j < VARIANTS; j++) {
+        ArrayList<LogRecord> batch = new ArrayList<LogRecord>();
+        for (int k = 0; k < batchSize; k++) {
+          batch.add(createRecord(random, permutation.strongName));
+        }
+        permutation.bodies[j] = RpcRequestWriter.encode(policy, moduleBaseUrl,
+            permutation.strongName, logMethod, batch).getBytes("UTF-8");
+      }
+    }
+  }
+
+  private Permutation pickPermutation(int point) {
+    for (Permutation permutation : permutations) {
+      point -= permutation.weight;
+      if (point < 0) {
+        return permutation;
+      }
+    }
+    throw new IllegalStateException();
+  }
+
+  private boolean post(String strongName, byte[] body, byte[] buf) {
+    try {
+      HttpURLConnection connection = (HttpURLConnection) serviceUrl.openConnection();
+      connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(body.length);
+      connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+      connection.setRequestProperty("X-GWT-Module-Base", moduleBaseUrl);
+      connection.setRequestProperty("X-GWT-Permutation", strongName);
+      OutputStream out = connection.getOutputStream();
+      out.write(body);
+      out.close();
+      boolean ok = connection.getResponseCode() == HttpURLConnection.HTTP_OK;
+      InputStream in = ok ? connection.getInputStream() : connection.getErrorStream();
+      if (in != null) {
+        // read the entire response, so that the connection is reused
+        int n = in.read(buf);
+        ok &= n >= 4 && buf[2] == 'O' && buf[3] == 'K';
+        while (n != -1) {
+          n = in.read(buf);
+        }
+        in.close();
+      }
+      return ok;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private void run() throws Exception {
+    // allow each client to keep its connection alive
+    System.setProperty("http.maxConnections", Integer.toString(threads));
+
+    File war = Files.createTempDirectory("gwt-log-loadtest").toFile();
+    File moduleDir = new File(war, MODULE);
+    moduleDir.mkdir();
+
+    Server server = new Server();
+    SelectChannelConnector connector = new SelectChannelConnector();
+    connector.setHost("127.0.0.1");
+    connector.setPort(0);
+    server.addConnector(connector);
+    ServletContextHandler context = new ServletContextHandler();
+    context.setContextPath("/");
+    context.setResourceBase(war.getPath());
+    ServletHolder holder = new ServletHolder(new RemoteLoggerServlet());
+    if (symbolMaps != null) {
+      holder.setInitParameter("symbolMapsFileSystem", symbolMaps);
+    }
+    context.addServlet(holder, "/" + MODULE + "/gwt-log");
+    server.setHandler(context);
+    try {
+      server.start();
+      moduleBaseUrl = "http://127.0.0.1:" + connector.getLocalPort() + "/" + MODULE + "/";
+      serviceUrl = new URL(moduleBaseUrl + "gwt-log");
+      createPermutations(moduleDir);
+
+      System.out.println("gwt-log load test: " + threads + " threads, " + batchSize
+          + " records/batch, " + errorPercent + "% errors with " + causes + " causes of "
+          + depth + " frames, permutations " + permutationMix);
+      Client[] clients = new Client[threads];
+      for (int i = 0; i < threads; i++) {
+        clients[i] = new Client(i);
+        clients[i].start();
+      }
+      Thread.sleep(warmup * 1000L);
+
+      long droppedBefore = Log.getDroppedCount();
+      long[] gcBefore = gcTotals();
+      measuring = true;
+      long start = System.nanoTime();
+      Thread.sleep(duration * 1000L);
+      running = false;
+      long elapsed = System.nanoTime() - start;
+      long[] gcAfter = gcTotals();
+      long dropped = Log.getDroppedCount() - droppedBefore;
+
+      long batches = 0;
+      long errors = 0;
+      long records = 0;
+      for (Client client : clients) {
+        client.join();
+        batches += client.batches;
+        errors += client.errors;
+        records += client.records;
+      }
+      LatencyHistogram.Snapshot latency = histogram.getSnapshot();
+      double seconds = elapsed / 1e9;
+      long gcMillis = gcAfter[1] - gcBefore[1];
+      System.out.println(String.format(Locale.US, "records/sec  %.1f", records / seconds));
+      System.out.println(String.format(Locale.US, "batches/sec  %.1f", batches / seconds));
+      System.out.println("latency ms   p50 " + millis(latency.getP50Nanos()) + "  p99 "
+          + millis(latency.getP99Nanos()) + "  p99.9 " + millis(latency.getP999Nanos())
+          + "  max " + millis(latency.getMaxNanos()));
+      System.out.println(String.format(Locale.US, "gc           %d collections, %d ms (%.2f%%)",
+          gcAfter[0] - gcBefore[0], gcMillis, gcMillis * 100 / (seconds * 1000)));
+      System.out.println("failed       " + errors);
+      System.out.println("dropped      " + dropped);
+    } finally {
+      server.stop();
+      for (File file : moduleDir.listFiles()) {
+        file.delete();
+      }
+      moduleDir.delete();
+      war.delete();
+    }
+  }
+}
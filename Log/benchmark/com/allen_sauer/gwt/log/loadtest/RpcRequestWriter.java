@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.loadtest;
+
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.client.rpc.impl.AbstractSerializationStreamWriter;
+import com.google.gwt.user.server.Base64Utils;
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+import com.google.gwt.user.server.rpc.impl.SerializabilityUtil;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Encodes GWT RPC requests in the format sent by the generated client proxies, so that synthetic
+ * requests can be sent from the JVM. Fields are written in the order, and types named with the
+ * signatures, which the server derives by reflection, so the request is accepted by any servlet
+ * configured with the same serialization policy. RPC tokens and type name elision are not
+ * supported.
+ */
+final class RpcRequestWriter extends AbstractSerializationStreamWriter {
+  private static final char SEPARATOR = '|';
+
+  /**
+   * Encode a call of a remote service method.
+   * 
+   * @param policy the serialization policy of the permutation which makes the call
+   * @param moduleBaseUrl the module base URL which the server uses to locate the policy
+   * @param strongName the strong name of the permutation
+   * @param method the remote service method
+   * @param args the arguments of the call
+   * @return the request body
+   * @throws SerializationException if an argument cannot be serialized
+   */
+  static String encode(SerializationPolicy policy, String moduleBaseUrl, String strongName,
+      Method method, Object... args) throws SerializationException {
+    RpcRequestWriter writer = new RpcRequestWriter(policy);
+    writer.prepareToWrite();
+    writer.writeString(moduleBaseUrl);
+    writer.writeString(strongName);
+    writer.writeString(method.getDeclaringClass().getName());
+    writer.writeString(method.getName());
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    writer.writeInt(parameterTypes.length);
+    for (Class<?> parameterType : parameterTypes) {
+      writer.writeString(parameterType.isPrimitive()
+          ? SerializabilityUtil.getSerializedTypeName(parameterType)
+          : SerializabilityUtil.encodeSerializedInstanceReference(parameterType, policy));
+    }
+    for (int i = 0; i < parameterTypes.length; i++) {
+      writer.serializeValue(args[i], parameterTypes[i]);
+    }
+    return writer.toString();
+  }
+
+  private static void appendQuoted(StringBuilder buf, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\\') {
+        buf.append("\\\\");
+      } else if (c == SEPARATOR) {
+        buf.append("\\!");
+      } else if (c == '\u0000') {
+        buf.append("\\0");
+      } else {
+        buf.append(c);
+      }
+    }
+    buf.append(SEPARATOR);
+  }
+
+  private final StringBuilder payload = new StringBuilder();
+
+  private final SerializationPolicy policy;
+
+  private RpcRequestWriter(SerializationPolicy policy) {
+    this.policy = policy;
+  }
+
+  @Override
+  public String toString() {
+    List<String> stringTable = getStringTable();
+    StringBuilder buf = new StringBuilder(payload.length() + 32 * stringTable.size());
+    buf.append(getVersion()).append(SEPARATOR);
+    buf.append(getFlags()).append(SEPARATOR);
+    buf.append(stringTable.size()).append(SEPARATOR);
+    for (String s : stringTable) {
+      appendQuoted(buf, s);
+    }
+    return buf.append(payload).toString();
+  }
+
+  @Override
+  public void writeLong(long value) {
+    append(Base64Utils.toBase64(value));
+  }
+
+  @Override
+  protected void append(String token) {
+    payload.append(token).append(SEPARATOR);
+  }
+
+  @Override
+  protected String getObjectTypeSignature(Object instance) {
+    return SerializabilityUtil.encodeSerializedInstanceReference(instance.getClass(), policy);
+  }
+
+  @Override
+  protected void serialize(Object instance, String typeSignature)
+      throws SerializationException {
+    serialize(instance, instance.getClass());
+  }
+
+  private void serialize(Object instance, Class<?> instanceClass) throws SerializationException {
+    try {
+      Class<?> customSerializer = SerializabilityUtil.hasCustomFieldSerializer(instanceClass);
+      if (customSerializer != null) {
+        for (Method method : customSerializer.getMethods()) {
+          if (method.getName().equals("serialize")) {
+            method.invoke(null, this, instance);
+            return;
+          }
+        }
+        throw new SerializationException("No serialize method in " + customSerializer);
+      } else if (instanceClass.isArray()) {
+        int length = Array.getLength(instance);
+        writeInt(length);
+        for (int i = 0; i < length; i++) {
+          serializeValue(Array.get(instance, i), instanceClass.getComponentType());
+        }
+      } else if (instanceClass.isEnum()) {
+        writeInt(((Enum<?>) instance).ordinal());
+      } else {
+        for (Field field : SerializabilityUtil.applyFieldSerializationPolicy(instanceClass)) {
+          field.setAccessible(true);
+          serializeValue(field.get(instance), field.getType());
+        }
+        Class<?> superClass = instanceClass.getSuperclass();
+        if (policy.shouldSerializeFields(superClass)) {
+          serialize(instance, superClass);
+        }
+      }
+    } catch (IllegalAccessException e) {
+      throw new SerializationException(e);
+    } catch (InvocationTargetException e) {
+      throw new SerializationException(e.getCause());
+    }
+  }
+
+  private void serializeValue(Object value, Class<?> type) throws SerializationException {
+    if (type == boolean.class) {
+      writeBoolean((Boolean) value);
+    } else if (type == byte.class) {
+      writeByte((Byte) value);
+    } else if (type == char.class) {
+      writeChar((Character) value);
+    } else if (type == double.class) {
+      writeDouble((Double) value);
+    } else if (type == float.class) {
+      writeFloat((Float) value);
+    } else if (type == int.class) {
+      writeInt((Integer) value);
+    } else if (type == long.class) {
+      writeLong((Long) value);
+    } else if (type == short.class) {
+      writeShort((Short) value);
+    } else if (type == String.class) {
+      writeString((String) value);
+    } else {
+      writeObject(value);
+    }
+  }
+}
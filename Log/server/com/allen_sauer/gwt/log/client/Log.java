@@ -15,16 +15,26 @@ package com.allen_sauer.gwt.log.client;
 
 import com.google.gwt.core.client.JavaScriptObject;
 
+import com.allen_sauer.gwt.log.server.QueueingServerLog;
 import com.allen_sauer.gwt.log.server.ServerLog;
+import com.allen_sauer.gwt.log.server.ServerLogImplFile;
+import com.allen_sauer.gwt.log.server.ServerLogImplJournal;
 import com.allen_sauer.gwt.log.server.ServerLogImplJDK14;
 import com.allen_sauer.gwt.log.server.ServerLogImplLog4J;
 import com.allen_sauer.gwt.log.server.ServerLogImplSLF4J;
 import com.allen_sauer.gwt.log.server.ServerLogImplStdio;
 import com.allen_sauer.gwt.log.shared.LogRecord;
 
+import java.util.HashMap;
+
 // CHECKSTYLE_JAVADOC_OFF
 public final class Log {
   private static final String GWT_LOG_REMOTE_LOGGER_PREFERENCE = "gwt-log.RemoteLogger";
+  /**
+   * Per thread diagnostic context, replaced rather than modified so that records can share it.
+   */
+  private static final ThreadLocal<HashMap<String, String>> context =
+      new ThreadLocal<HashMap<String, String>>();
   private static ServerLog impl;
   public static final int LOG_LEVEL_DEBUG = 10000;
   public static final int LOG_LEVEL_ERROR = 40000;
@@ -46,6 +56,10 @@ public final class Log {
         impl = tryLog4J();
       } else if (remoteLoggerPreference.equals("JDK14")) {
         impl = tryJDK14();
+      } else if (remoteLoggerPreference.equals("FILE")) {
+        impl = tryFile();
+      } else if (remoteLoggerPreference.equals("JOURNAL")) {
+        impl = tryJournal();
       } else {
         if (!remoteLoggerPreference.equals("STDIO")) {
           throw new UnsupportedOperationException("System property "
@@ -91,6 +105,10 @@ public final class Log {
     throw new UnsupportedOperationException(UNSUPPORTED_METHOD_TEXT);
   }
 
+  public static void addLogger(Logger logger, int minimumLevel) {
+    throw new UnsupportedOperationException(UNSUPPORTED_METHOD_TEXT);
+  }
+
   public static void clear() {
   }
 
@@ -110,6 +128,13 @@ public final class Log {
     throw new UnsupportedOperationException(UNSUPPORTED_METHOD_TEXT);
   }
 
+  public static void debug(String category, String messagePattern, Object... arguments) {
+    if (impl.isEnabled(category, Log.LOG_LEVEL_DEBUG)) {
+      log(new LogRecord(category, Log.LOG_LEVEL_DEBUG, messagePattern, arguments,
+          LogUtil.getThrowableCandidate(messagePattern, arguments)));
+    }
+  }
+
   public static void debug(String category, String message, Throwable e) {
     log(new LogRecord(category, Log.LOG_LEVEL_DEBUG, message, e));
   }
@@ -118,6 +143,24 @@ public final class Log {
     debug("gwt-log", message, e);
   }
 
+  public static void debugLazy(LogMessageSupplier message) {
+    debugLazy("gwt-log", message, (Throwable) null);
+  }
+
+  public static void debugLazy(LogMessageSupplier message, Throwable e) {
+    debugLazy("gwt-log", message, e);
+  }
+
+  public static void debugLazy(String category, LogMessageSupplier message) {
+    debugLazy(category, message, (Throwable) null);
+  }
+
+  public static void debugLazy(String category, LogMessageSupplier message, Throwable e) {
+    if (impl.isEnabled(category, Log.LOG_LEVEL_DEBUG)) {
+      debug(category, message.get(), e);
+    }
+  }
+
   /**
    * @deprecated For internal gwt-log use only.
    */
@@ -142,6 +185,13 @@ public final class Log {
     throw new UnsupportedOperationException(UNSUPPORTED_METHOD_TEXT);
   }
 
+  public static void error(String category, String messagePattern, Object... arguments) {
+    if (impl.isEnabled(category, Log.LOG_LEVEL_ERROR)) {
+      log(new LogRecord(category, Log.LOG_LEVEL_ERROR, messagePattern, arguments,
+          LogUtil.getThrowableCandidate(messagePattern, arguments)));
+    }
+  }
+
   public static void error(String category, String message, Throwable e) {
     log(new LogRecord(category, Log.LOG_LEVEL_ERROR, message, e));
   }
@@ -150,6 +200,24 @@ public final class Log {
     log(new LogRecord("gwt-log", Log.LOG_LEVEL_ERROR, message, e));
   }
 
+  public static void errorLazy(LogMessageSupplier message) {
+    errorLazy("gwt-log", message, (Throwable) null);
+  }
+
+  public static void errorLazy(LogMessageSupplier message, Throwable e) {
+    errorLazy("gwt-log", message, e);
+  }
+
+  public static void errorLazy(String category, LogMessageSupplier message) {
+    errorLazy(category, message, (Throwable) null);
+  }
+
+  public static void errorLazy(String category, LogMessageSupplier message, Throwable e) {
+    if (impl.isEnabled(category, Log.LOG_LEVEL_ERROR)) {
+      error(category, message.get(), e);
+    }
+  }
+
   public static void fatal(String message) {
     fatal(message, (Throwable) null);
   }
@@ -166,6 +234,13 @@ public final class Log {
     throw new UnsupportedOperationException(UNSUPPORTED_METHOD_TEXT);
   }
 
+  public static void fatal(String category, String messagePattern, Object... arguments) {
+    if (impl.isEnabled(category, Log.LOG_LEVEL_FATAL)) {
+      log(new LogRecord(category, Log.LOG_LEVEL_FATAL, messagePattern, arguments,
+          LogUtil.getThrowableCandidate(messagePattern, arguments)));
+    }
+  }
+
   public static void fatal(String category, String message, Throwable e) {
     log(new LogRecord(category, Log.LOG_LEVEL_FATAL, message, e));
   }
@@ -174,14 +249,54 @@ public final class Log {
     log(new LogRecord("gwt-log", Log.LOG_LEVEL_FATAL, message, e));
   }
 
+  public static void fatalLazy(LogMessageSupplier message) {
+    fatalLazy("gwt-log", message, (Throwable) null);
+  }
+
+  public static void fatalLazy(LogMessageSupplier message, Throwable e) {
+    fatalLazy("gwt-log", message, e);
+  }
+
+  public static void fatalLazy(String category, LogMessageSupplier message) {
+    fatalLazy(category, message, (Throwable) null);
+  }
+
+  public static void fatalLazy(String category, LogMessageSupplier message, Throwable e) {
+    if (impl.isEnabled(category, Log.LOG_LEVEL_FATAL)) {
+      fatal(category, message.get(), e);
+    }
+  }
+
   public static int getCurrentLogLevel() {
     return impl.getCurrentLogLevel();
   }
 
+  public static int getCurrentLogLevel(String category) {
+    int[] levels = {
+        Log.LOG_LEVEL_TRACE, Log.LOG_LEVEL_DEBUG, Log.LOG_LEVEL_INFO, Log.LOG_LEVEL_WARN,
+        Log.LOG_LEVEL_ERROR, Log.LOG_LEVEL_FATAL};
+    for (int level : levels) {
+      if (impl.isEnabled(category, level)) {
+        return level;
+      }
+    }
+    return Log.LOG_LEVEL_OFF;
+  }
+
   public static String getCurrentLogLevelString() {
     return LogUtil.levelToString(getCurrentLogLevel());
   }
 
+  /**
+   * Retrieve the number of records dropped by the server side logging implementation since
+   * startup, e.g. because its queue was full.
+   *
+   * @return the number of dropped records, or 0 if the implementation never drops records
+   */
+  public static long getDroppedCount() {
+    return impl instanceof QueueingServerLog ? ((QueueingServerLog) impl).getDroppedCount() : 0;
+  }
+
   public static <T extends Logger> T getLogger(Class<T> clazz) {
     throw new UnsupportedOperationException(UNSUPPORTED_METHOD_TEXT);
   }
@@ -199,6 +314,16 @@ public final class Log {
     return version.matches("^@.+@$") ? "0.0.0" : version;
   }
 
+  /**
+   * Retrieve the number of records queued by the server side logging implementation but not yet
+   * written.
+   *
+   * @return the number of queued records, or 0 if the implementation writes synchronously
+   */
+  public static int getQueueDepth() {
+    return impl instanceof QueueingServerLog ? ((QueueingServerLog) impl).getQueueDepth() : 0;
+  }
+
   public static void info(String message) {
     info(message, (Throwable) null);
   }
@@ -215,6 +340,13 @@ public final class Log {
     throw new UnsupportedOperationException(UNSUPPORTED_METHOD_TEXT);
   }
 
+  public static void info(String category, String messagePattern, Object... arguments) {
+    if (impl.isEnabled(category, Log.LOG_LEVEL_INFO)) {
+      log(new LogRecord(category, Log.LOG_LEVEL_INFO, messagePattern, arguments,
+          LogUtil.getThrowableCandidate(messagePattern, arguments)));
+    }
+  }
+
   public static void info(String category, String message, Throwable e) {
     log(new LogRecord(category, Log.LOG_LEVEL_INFO, message, e));
   }
@@ -223,22 +355,56 @@ public final class Log {
     log(new LogRecord("gwt-log", Log.LOG_LEVEL_INFO, message, e));
   }
 
+  public static void infoLazy(LogMessageSupplier message) {
+    infoLazy("gwt-log", message, (Throwable) null);
+  }
+
+  public static void infoLazy(LogMessageSupplier message, Throwable e) {
+    infoLazy("gwt-log", message, e);
+  }
+
+  public static void infoLazy(String category, LogMessageSupplier message) {
+    infoLazy(category, message, (Throwable) null);
+  }
+
+  public static void infoLazy(String category, LogMessageSupplier message, Throwable e) {
+    if (impl.isEnabled(category, Log.LOG_LEVEL_INFO)) {
+      info(category, message.get(), e);
+    }
+  }
+
   public static boolean isDebugEnabled() {
     return impl.isDebugEnabled();
   }
 
+  public static boolean isDebugEnabled(String category) {
+    return impl.isEnabled(category, Log.LOG_LEVEL_DEBUG);
+  }
+
   public static boolean isErrorEnabled() {
     return impl.isErrorEnabled();
   }
 
+  public static boolean isErrorEnabled(String category) {
+    return impl.isEnabled(category, Log.LOG_LEVEL_ERROR);
+  }
+
   public static boolean isFatalEnabled() {
     return impl.isFatalEnabled();
   }
 
+  public static boolean isFatalEnabled(String category) {
+    return impl.isEnabled(category, Log.LOG_LEVEL_FATAL);
+  }
+
   public static boolean isInfoEnabled() {
     return impl.isInfoEnabled();
   }
 
+  public static boolean isInfoEnabled(String category) {
+    return impl.isEnabled(category, Log.LOG_LEVEL_INFO);
+  }
+
   public static boolean isLoggingEnabled() {
     return impl.isLoggingEnabled();
   }
@@ -247,18 +413,58 @@ public final class Log {
     return impl.isTraceEnabled();
   }
 
+  public static boolean isTraceEnabled(String category) {
+    return impl.isEnabled(category, Log.LOG_LEVEL_TRACE);
+  }
+
   public static boolean isWarnEnabled() {
     return impl.isWarnEnabled();
   }
 
+  public static boolean isWarnEnabled(String category) {
+    return impl.isEnabled(category, Log.LOG_LEVEL_WARN);
+  }
+
   public static void log(LogRecord record) {
+    if (!record.hasContext()) {
+      record.setContext(context.get());
+    }
     impl.log(record);
   }
 
+  public static void putContext(String key, String value) {
+    HashMap<String, String> current = context.get();
+    HashMap<String, String> newContext = current == null ? new HashMap<String, String>()
+        : new HashMap<String, String>(current);
+    newContext.put(key, value);
+    context.set(newContext);
+  }
+
+  public static void removeContext(String key) {
+    HashMap<String, String> current = context.get();
+    if (current != null && current.containsKey(key)) {
+      HashMap<String, String> newContext = new HashMap<String, String>(current);
+      newContext.remove(key);
+      if (newContext.isEmpty()) {
+        context.remove();
+      } else {
+        context.set(newContext);
+      }
+    }
+  }
+
+  public static void removeCurrentLogLevel(String category) {
+    throw new UnsupportedOperationException(UNSUPPORTED_METHOD_TEXT);
+  }
+
   public static void setCurrentLogLevel(int level) {
     impl.setCurrentImplLogLevel(impl.mapGWTLogLevelToImplLevel(level));
   }
 
+  public static int setCurrentLogLevel(String category, int level) {
+    throw new UnsupportedOperationException(UNSUPPORTED_METHOD_TEXT);
+  }
+
   public static void setUncaughtExceptionHandler() {
     throw new UnsupportedOperationException(UNSUPPORTED_METHOD_TEXT);
   }
@@ -279,6 +485,13 @@ public final class Log {
     throw new UnsupportedOperationException(UNSUPPORTED_METHOD_TEXT);
   }
 
+  public static void trace(String category, String messagePattern, Object... arguments) {
+    if (impl.isEnabled(category, Log.LOG_LEVEL_TRACE)) {
+      log(new LogRecord(category, Log.LOG_LEVEL_TRACE, messagePattern, arguments,
+          LogUtil.getThrowableCandidate(messagePattern, arguments)));
+    }
+  }
+
   public static void trace(String category, String message, Throwable e) {
     log(new LogRecord(category, Log.LOG_LEVEL_TRACE, message, e));
   }
@@ -287,6 +500,33 @@ public final class Log {
     log(new LogRecord("gwt-log", Log.LOG_LEVEL_TRACE, message, e));
   }
 
+  public static void traceLazy(LogMessageSupplier message) {
+    traceLazy("gwt-log", message, (Throwable) null);
+  }
+
+  public static void traceLazy(LogMessageSupplier message, Throwable e) {
+    traceLazy("gwt-log", message, e);
+  }
+
+  public static void traceLazy(String category, LogMessageSupplier message) {
+    traceLazy(category, message, (Throwable) null);
+  }
+
+  public static void traceLazy(String category, LogMessageSupplier message, Throwable e) {
+    if (impl.isEnabled(category, Log.LOG_LEVEL_TRACE)) {
+      trace(category, message.get(), e);
+    }
+  }
+
+  private static ServerLog tryFile() {
+    try {
+      return new ServerLogImplFile();
+    } catch (Throwable e) {
+      e.printStackTrace();
+    }
+    return null;
+  }
+
   private static ServerLog tryJDK14() {
     try {
       return new ServerLogImplJDK14();
@@ -300,6 +540,15 @@ public final class Log {
     return null;
   }
 
+  private static ServerLog tryJournal() {
+    try {
+      return new ServerLogImplJournal();
+    } catch (Throwable e) {
+      e.printStackTrace();
+    }
+    return null;
+  }
+
   private static ServerLog tryLog4J() {
     try {
       return new ServerLogImplLog4J();
@@ -348,6 +597,13 @@ public final class Log {
     throw new UnsupportedOperationException(UNSUPPORTED_METHOD_TEXT);
   }
 
+  public static void warn(String category, String messagePattern, Object... arguments) {
+    if (impl.isEnabled(category, Log.LOG_LEVEL_WARN)) {
+      log(new LogRecord(category, Log.LOG_LEVEL_WARN, messagePattern, arguments,
+          LogUtil.getThrowableCandidate(messagePattern, arguments)));
+    }
+  }
+
   public static void warn(String category, String message, Throwable e) {
     log(new LogRecord(category, Log.LOG_LEVEL_WARN, message, e));
   }
@@ -356,4 +612,22 @@ public final class Log {
     log(new LogRecord("gwt-log", Log.LOG_LEVEL_WARN, message, e));
   }
 
+  public static void warnLazy(LogMessageSupplier message) {
+    warnLazy("gwt-log", message, (Throwable) null);
+  }
+
+  public static void warnLazy(LogMessageSupplier message, Throwable e) {
+    warnLazy("gwt-log", message, e);
+  }
+
+  public static void warnLazy(String category, LogMessageSupplier message) {
+    warnLazy(category, message, (Throwable) null);
+  }
+
+  public static void warnLazy(String category, LogMessageSupplier message, Throwable e) {
+    if (impl.isEnabled(category, Log.LOG_LEVEL_WARN)) {
+      warn(category, message.get(), e);
+    }
+  }
+
 }
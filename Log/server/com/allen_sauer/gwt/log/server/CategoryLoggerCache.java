@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Concurrent cache of per category loggers, which avoids the synchronized name lookup of the
+ * underlying logging framework for every record. Categories are supplied by clients, and most
+ * frameworks keep every logger they are asked for, so only a bounded number of categories is ever
+ * passed to the framework. Once the cache is full, and for names which are not plausible category
+ * names, the fixed {@link #fallback() fallback} logger is used instead.
+ *
+ * @param <T> the logger type
+ */
+abstract class CategoryLoggerCache<T> {
+  static final int DEFAULT_MAX_SIZE = 1000;
+  static final int MAX_CATEGORY_LENGTH = 256;
+
+  private final ConcurrentMap<String, T> loggers = new ConcurrentHashMap<String, T>();
+  private final int maxSize;
+
+  CategoryLoggerCache() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  CategoryLoggerCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Determine whether a category looks like a class or package name, which may be passed to the
+   * underlying logging framework.
+   *
+   * @param category the non-null category
+   * @return true if the category is acceptable
+   */
+  static boolean isValidCategory(String category) {
+    int length = category.length();
+    if (length == 0 || length > MAX_CATEGORY_LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      char c = category.charAt(i);
+      if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '.'
+          || c == '_' || c == '$' || c == '-')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Retrieve the logger for a category, creating it if necessary.
+   *
+   * @param category the non-null category
+   * @return the logger, or the fallback logger for an invalid category or a full cache
+   */
+  final T get(String category) {
+    T logger = loggers.get(category);
+    if (logger != null) {
+      return logger;
+    }
+    if (!isValidCategory(category)) {
+      return fallback();
+    }
+    // misses are rare once warmed up; serialize them so the cap is exact
+    synchronized (loggers) {
+      logger = loggers.get(category);
+      if (logger == null) {
+        if (loggers.size() >= maxSize) {
+          return fallback();
+        }
+        logger = create(category);
+        loggers.put(category, logger);
+      }
+      return logger;
+    }
+  }
+
+  final int size() {
+    return loggers.size();
+  }
+
+  /**
+   * Look up the logger for a category in the underlying logging framework.
+   *
+   * @param category the non-null category
+   * @return the logger
+   */
+  abstract T create(String category);
+
+  /**
+   * Provide the fixed logger used for categories which are not passed to the underlying logging
+   * framework.
+   *
+   * @return the fallback logger
+   */
+  abstract T fallback();
+}
@@ -0,0 +1,818 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Inverted index over the records in a journal written by {@link ServerLogImplJournal}, which
+ * finds records by level, category and attributes, such as <code>remoteAddr</code>,
+ * <code>fingerprint</code>, <code>permutation</code> or keys set via
+ * {@link com.allen_sauer.gwt.log.shared.LogRecord#set(String, String)}, without scanning the
+ * journal.
+ *
+ * <p>
+ * The index is partitioned by ingest time. The current partitions are held in memory; once a
+ * partition's time has passed, it is sealed into a file in the <code>index</code> subdirectory of
+ * the journal, holding the journal position and ingest time of each record, a term dictionary and
+ * delta encoded posting lists. Partitions which were not sealed, e.g. because the process died,
+ * are rebuilt from the journal on startup.
+ *
+ * <p>
+ * Logging threads only queue the records they commit; a single indexer thread adds them to the
+ * open partitions and seals those whose time has passed, so that logging neither contends for the
+ * index nor waits for a partition to be written. Searches first index any queued records, so they
+ * see every record committed before the search began.
+ */
+public final class JournalIndex {
+  /**
+   * A time partition, either open or sealed. Documents are numbered in the order in which they were
+   * added, and posting lists are in ascending document order.
+   */
+  private abstract static class Partition {
+    abstract int docCount();
+
+    abstract long docIngest(int doc);
+
+    abstract int docLevel(int doc);
+
+    abstract int docOffset(int doc);
+
+    abstract long docSegment(int doc);
+
+    abstract long maxIngest();
+
+    abstract long minIngest();
+
+    abstract int[] postings(String term) throws IOException;
+
+    abstract Collection<String> terms() throws IOException;
+  }
+
+  /**
+   * A partition being added to, held in memory.
+   */
+  private static final class OpenPartition extends Partition {
+    private int docCount;
+    private long[] ingests = new long[1024];
+    private int[] levels = new int[1024];
+    private long maxIngest = Long.MIN_VALUE;
+    private long minIngest = Long.MAX_VALUE;
+    private int[] offsets = new int[1024];
+    private final HashMap<String, Postings> postings = new HashMap<String, Postings>();
+    private long[] segments = new long[1024];
+    private final long start;
+
+    OpenPartition(long start) {
+      this.start = start;
+    }
+
+    int add(long segment, int offset, long ingest, int level) {
+      if (docCount == segments.length) {
+        segments = Arrays.copyOf(segments, docCount * 2);
+        offsets = Arrays.copyOf(offsets, docCount * 2);
+        ingests = Arrays.copyOf(ingests, docCount * 2);
+        levels = Arrays.copyOf(levels, docCount * 2);
+      }
+      segments[docCount] = segment;
+      offsets[docCount] = offset;
+      ingests[docCount] = ingest;
+      levels[docCount] = level;
+      minIngest = Math.min(minIngest, ingest);
+      maxIngest = Math.max(maxIngest, ingest);
+      return docCount++;
+    }
+
+    void addTerm(String term, int doc) {
+      Postings list = postings.get(term);
+      if (list == null) {
+        list = new Postings();
+        postings.put(term, list);
+      }
+      list.add(doc);
+    }
+
+    @Override
+    int docCount() {
+      return docCount;
+    }
+
+    @Override
+    long docIngest(int doc) {
+      return ingests[doc];
+    }
+
+    @Override
+    int docLevel(int doc) {
+      return levels[doc];
+    }
+
+    @Override
+    int docOffset(int doc) {
+      return offsets[doc];
+    }
+
+    @Override
+    long docSegment(int doc) {
+      return segments[doc];
+    }
+
+    @Override
+    long maxIngest() {
+      return maxIngest;
+    }
+
+    @Override
+    long minIngest() {
+      return minIngest;
+    }
+
+    @Override
+    int[] postings(String term) {
+      Postings list = postings.get(term);
+      return list == null ? null : Arrays.copyOf(list.docs, list.size);
+    }
+
+    @Override
+    Collection<String> terms() {
+      return postings.keySet();
+    }
+
+    /**
+     * Write this partition to a file, which is only moved into place once complete.
+     */
+    void write(Path file) throws IOException {
+      ArrayList<String> terms = new ArrayList<String>(postings.keySet());
+      Collections.sort(terms);
+      byte[][] termBytes = new byte[terms.size()][];
+      byte[][] encodedPostings = new byte[terms.size()][];
+      for (int i = 0; i < terms.size(); i++) {
+        termBytes[i] = terms.get(i).getBytes(StandardCharsets.UTF_8);
+        encodedPostings[i] = postings.get(terms.get(i)).encode();
+      }
+
+      Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+      try (OutputStream stream = Files.newOutputStream(temp)) {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 65536));
+        out.writeInt(MAGIC);
+        out.writeLong(minIngest);
+        out.writeLong(maxIngest);
+        out.writeInt(docCount);
+        out.writeInt(terms.size());
+        for (int doc = 0; doc < docCount; doc++) {
+          out.writeLong(segments[doc]);
+          out.writeInt(offsets[doc]);
+          out.writeLong(ingests[doc]);
+          out.writeInt(levels[doc]);
+        }
+        int postingsOffset = 0;
+        for (int i = 0; i < terms.size(); i++) {
+          out.writeInt(termBytes[i].length);
+          out.write(termBytes[i]);
+          out.writeInt(postings.get(terms.get(i)).size);
+          out.writeInt(postingsOffset);
+          out.writeInt(encodedPostings[i].length);
+          postingsOffset += encodedPostings[i].length;
+        }
+        for (byte[] encoded : encodedPostings) {
+          out.write(encoded);
+        }
+        out.flush();
+      }
+      Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+
+  /**
+   * A record which was committed to the journal, but not yet indexed.
+   */
+  private static final class Pending {
+    private final Map<String, String> attributes;
+    private final String category;
+    private final long ingest;
+    private final int level;
+    private final int offset;
+    private final long segment;
+
+    Pending(long segment, int offset, long ingest, int level, String category,
+        Map<String, String> attributes) {
+      this.segment = segment;
+      this.offset = offset;
+      this.ingest = ingest;
+      this.level = level;
+      this.category = category;
+      this.attributes = attributes;
+    }
+  }
+
+  /**
+   * A growable list of ascending document numbers.
+   */
+  private static final class Postings {
+    int[] docs = new int[4];
+    int size;
+
+    void add(int doc) {
+      if (size == docs.length) {
+        docs = Arrays.copyOf(docs, size * 2);
+      }
+      docs[size++] = doc;
+    }
+
+    /**
+     * Encode the differences between successive documents as variable length integers.
+     */
+    byte[] encode() {
+      byte[] bytes = new byte[size * 5];
+      int length = 0;
+      int previous = 0;
+      for (int i = 0; i < size; i++) {
+        int delta = docs[i] - previous;
+        previous = docs[i];
+        while ((delta & ~0x7f) != 0) {
+          bytes[length++] = (byte) (delta & 0x7f | 0x80);
+          delta >>>= 7;
+        }
+        bytes[length++] = (byte) delta;
+      }
+      return Arrays.copyOf(bytes, length);
+    }
+  }
+
+  /**
+   * A partition file, whose term dictionary is read on first use and whose documents and posting
+   * lists are read from a memory mapping.
+   */
+  private static final class SealedPartition extends Partition {
+    private static final int DOC_SIZE = 8 + 4 + 8 + 4;
+    private static final int HEADER_SIZE = 4 + 8 + 8 + 4 + 4;
+
+    private MappedByteBuffer buffer;
+    private HashMap<String, int[]> dictionary;
+    private final int docCount;
+    private final Path file;
+    private final long maxIngest;
+    private final long minIngest;
+    private int postingsStart;
+
+    SealedPartition(Path file) throws IOException {
+      this.file = file;
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header) >= 0) {
+          // keep reading
+        }
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+          throw new IOException("Not a journal index partition: " + file);
+        }
+        minIngest = header.getLong();
+        maxIngest = header.getLong();
+        docCount = header.getInt();
+      }
+    }
+
+    @Override
+    int docCount() {
+      return docCount;
+    }
+
+    @Override
+    long docIngest(int doc) {
+      return buffer.getLong(HEADER_SIZE + doc * DOC_SIZE + 12);
+    }
+
+    @Override
+    int docLevel(int doc) {
+      return buffer.getInt(HEADER_SIZE + doc * DOC_SIZE + 20);
+    }
+
+    @Override
+    int docOffset(int doc) {
+      return buffer.getInt(HEADER_SIZE + doc * DOC_SIZE + 8);
+    }
+
+    @Override
+    long docSegment(int doc) {
+      return buffer.getLong(HEADER_SIZE + doc * DOC_SIZE);
+    }
+
+    @Override
+    long maxIngest() {
+      return maxIngest;
+    }
+
+    @Override
+    long minIngest() {
+      return minIngest;
+    }
+
+    @Override
+    int[] postings(String term) throws IOException {
+      int[] entry = load().get(term);
+      if (entry == null) {
+        return null;
+      }
+      int[] docs = new int[entry[0]];
+      int position = postingsStart + entry[1];
+      int doc = 0;
+      for (int i = 0; i < docs.length; i++) {
+        int delta = 0;
+        int shift = 0;
+        byte b;
+        do {
+          b = buffer.get(position++);
+          delta |= (b & 0x7f) << shift;
+          shift += 7;
+        } while (b < 0);
+        doc += delta;
+        docs[i] = doc;
+      }
+      return docs;
+    }
+
+    @Override
+    Collection<String> terms() throws IOException {
+      return load().keySet();
+    }
+
+    private synchronized HashMap<String, int[]> load() throws IOException {
+      if (dictionary == null) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+          buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer buf = buffer.duplicate();
+        int termCount = buf.getInt(HEADER_SIZE - 4);
+        buf.position(HEADER_SIZE + docCount * DOC_SIZE);
+        HashMap<String, int[]> terms = new HashMap<String, int[]>(termCount * 2);
+        for (int i = 0; i < termCount; i++) {
+          byte[] bytes = new byte[buf.getInt()];
+          buf.get(bytes);
+          int count = buf.getInt();
+          int offset = buf.getInt();
+          buf.getInt();
+          terms.put(new String(bytes, StandardCharsets.UTF_8), new int[] {count, offset});
+        }
+        postingsStart = buf.position();
+        dictionary = terms;
+      }
+      return dictionary;
+    }
+  }
+
+  /**
+   * How long after the end of its time period a partition remains open to records which were
+   * ingested during the period but added to the index late.
+   */
+  private static final long GRACE_MILLIS = 60000;
+
+  /**
+   * Upper bound on how long an idle indexer sleeps.
+   */
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private static final String INDEX_DIR = "index";
+
+  private static final String INDEX_SUFFIX = ".index";
+
+  /**
+   * Attribute keys which are not indexed, since their values are unique.
+   */
+  private static final String[] UNINDEXED_KEYS = {"logSequence"};
+
+  private static final int MAGIC = 0x474c4958;
+
+  /**
+   * Number of queued records beyond which logging threads index their records themselves, which
+   * bounds the queue when the indexer falls behind.
+   */
+  private static final int MAX_PENDING = 65536;
+
+  /**
+   * Attribute values longer than this are not indexed.
+   */
+  private static final int MAX_INDEXED_VALUE_LENGTH = 256;
+
+  /**
+   * Prefixes for the terms of the record fields, which cannot clash with attribute keys.
+   */
+  private static final String CATEGORY_PREFIX = "\u0001category\u0000";
+  private static final String LEVEL_PREFIX = "\u0001level\u0000";
+
+  private static final Comparator<Partition> PARTITION_ORDER = new Comparator<Partition>() {
+    @Override
+    public int compare(Partition p1, Partition p2) {
+      return p1.minIngest() < p2.minIngest() ? -1 : p1.minIngest() == p2.minIngest() ? 0 : 1;
+    }
+  };
+
+  /**
+   * Open the index of a journal for searching only, e.g. from another process. Partitions which
+   * have not yet been sealed are not searched.
+   * 
+   * @param journalDir the journal directory
+   * @return the index
+   * @throws IOException if the index cannot be read
+   */
+  public static JournalIndex open(Path journalDir) throws IOException {
+    return new JournalIndex(journalDir, 0, false);
+  }
+
+  private static int[] intersect(int[] a, int[] b) {
+    int[] result = new int[Math.min(a.length, b.length)];
+    int count = 0;
+    for (int i = 0, j = 0; i < a.length && j < b.length;) {
+      if (a[i] < b[j]) {
+        i++;
+      } else if (a[i] > b[j]) {
+        j++;
+      } else {
+        result[count++] = a[i];
+        i++;
+        j++;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  private static boolean isIndexed(String key, String value) {
+    if (value == null || value.length() > MAX_INDEXED_VALUE_LENGTH) {
+      return false;
+    }
+    for (String unindexed : UNINDEXED_KEYS) {
+      if (unindexed.equals(key)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String partitionName(long start, int sequence) {
+    return String.format("%019d-%04d", start, sequence) + INDEX_SUFFIX;
+  }
+
+  private static int[] union(List<int[]> lists) {
+    int total = 0;
+    for (int[] list : lists) {
+      total += list.length;
+    }
+    int[] result = new int[total];
+    int position = 0;
+    for (int[] list : lists) {
+      System.arraycopy(list, 0, result, position, list.length);
+      position += list.length;
+    }
+    // each document has a single level, so there are no duplicates
+    Arrays.sort(result);
+    return result;
+  }
+
+  private final Path indexDir;
+  private final Thread indexer;
+  private volatile boolean indexerParked;
+  private final Path journalDir;
+  private long newestIngest = Long.MIN_VALUE;
+  private final TreeMap<Long, OpenPartition> openPartitions = new TreeMap<Long, OpenPartition>();
+  private final long partitionMillis;
+  private final ConcurrentLinkedQueue<Pending> pending = new ConcurrentLinkedQueue<Pending>();
+  private final AtomicInteger pendingCount = new AtomicInteger();
+  private volatile boolean running = true;
+  private final ArrayList<SealedPartition> sealedPartitions = new ArrayList<SealedPartition>();
+  private final boolean writable;
+
+  JournalIndex(Path journalDir, long partitionMillis) throws IOException {
+    this(journalDir, partitionMillis, true);
+  }
+
+  private JournalIndex(Path journalDir, long partitionMillis, boolean writable)
+      throws IOException {
+    this.journalDir = journalDir;
+    this.partitionMillis = partitionMillis;
+    this.writable = writable;
+    indexDir = journalDir.resolve(INDEX_DIR);
+    if (writable) {
+      Files.createDirectories(indexDir);
+    }
+    long indexedUntil = Long.MIN_VALUE;
+    if (Files.isDirectory(indexDir)) {
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(indexDir, "*" + INDEX_SUFFIX)) {
+        for (Path file : stream) {
+          SealedPartition partition = new SealedPartition(file);
+          sealedPartitions.add(partition);
+          indexedUntil = Math.max(indexedUntil, partition.maxIngest());
+        }
+      }
+    }
+    if (writable) {
+      rebuild(indexedUntil == Long.MIN_VALUE ? Long.MIN_VALUE : indexedUntil + 1);
+      indexer = new Thread("gwt-log journal indexer") {
+        @Override
+        public void run() {
+          indexLoop();
+        }
+      };
+      indexer.setDaemon(true);
+      indexer.start();
+    } else {
+      indexer = null;
+    }
+  }
+
+  /**
+   * Find the records which match a query, in ingest order within each partition.
+   * 
+   * @param query the query
+   * @param limit the maximum number of records to return
+   * @return the matching records
+   * @throws IOException if the index or journal cannot be read
+   */
+  public List<JournalRecord> search(JournalQuery query, int limit) throws IOException {
+    List<long[]> refs = find(query, limit);
+    ArrayList<JournalRecord> records = new ArrayList<JournalRecord>(refs.size());
+    JournalReader reader = new JournalReader();
+    for (long[] ref : refs) {
+      JournalRecord record = reader.read(
+          journalDir.resolve(ServerLogImplJournal.segmentName(ref[0])), (int) ref[1]);
+      if (record != null) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Queue a record which was committed to the journal for the indexer thread. The attributes are
+   * retained, so must not be modified afterwards.
+   */
+  void add(long segment, int offset, long ingest, int level, String category,
+      Map<String, String> attributes) {
+    if (pendingCount.incrementAndGet() > MAX_PENDING) {
+      // the indexer has fallen behind; index the record here rather than queue without bound
+      pendingCount.decrementAndGet();
+      index(segment, offset, ingest, level, category, attributes);
+      return;
+    }
+    pending.offer(new Pending(segment, offset, ingest, level, category, attributes));
+    if (indexerParked) {
+      LockSupport.unpark(indexer);
+    }
+  }
+
+  /**
+   * Find the journal positions, as (segment, offset) pairs, of the records which match a query.
+   */
+  List<long[]> find(JournalQuery query, int limit) throws IOException {
+    ArrayList<Partition> partitions = new ArrayList<Partition>();
+    ArrayList<long[]> openRefs = new ArrayList<long[]>();
+    synchronized (this) {
+      // search the open partitions now, so that none can be sealed in the meantime
+      indexPending();
+      partitions.addAll(sealedPartitions);
+      for (OpenPartition partition : openPartitions.values()) {
+        search(partition, query, limit, openRefs);
+      }
+    }
+    Collections.sort(partitions, PARTITION_ORDER);
+
+    ArrayList<long[]> refs = new ArrayList<long[]>();
+    for (Partition partition : partitions) {
+      if (refs.size() < limit) {
+        search(partition, query, limit, refs);
+      }
+    }
+    refs.addAll(openRefs.subList(0, Math.min(openRefs.size(), limit - refs.size())));
+    return refs;
+  }
+
+  /**
+   * Stop the indexer, then index the queued records and seal all open partitions.
+   */
+  void close() throws IOException {
+    if (indexer != null) {
+      running = false;
+      LockSupport.unpark(indexer);
+      try {
+        indexer.join(TimeUnit.SECONDS.toMillis(10));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    synchronized (this) {
+      indexPending();
+      while (!openPartitions.isEmpty()) {
+        seal(openPartitions.pollFirstEntry().getValue());
+      }
+    }
+  }
+
+  private synchronized void index(long segment, int offset, long ingest, int level,
+      String category, Map<String, String> attributes) {
+    long start = ingest / partitionMillis * partitionMillis;
+    OpenPartition partition = openPartitions.get(start);
+    if (partition == null) {
+      Entry<Long, OpenPartition> earliest = openPartitions.firstEntry();
+      if (earliest != null && start < earliest.getKey()) {
+        // late, beyond the grace period; keep it searchable in the earliest open partition
+        partition = earliest.getValue();
+      } else {
+        partition = new OpenPartition(start);
+        openPartitions.put(start, partition);
+      }
+    }
+    int doc = partition.add(segment, offset, ingest, level);
+    partition.addTerm(LEVEL_PREFIX + level, doc);
+    if (category != null) {
+      partition.addTerm(CATEGORY_PREFIX + category, doc);
+    }
+    for (Entry<String, String> entry : attributes.entrySet()) {
+      if (isIndexed(entry.getKey(), entry.getValue())) {
+        partition.addTerm(entry.getKey() + '\u0000' + entry.getValue(), doc);
+      }
+    }
+    newestIngest = Math.max(newestIngest, ingest);
+  }
+
+  private void indexLoop() {
+    while (running || !pending.isEmpty()) {
+      try {
+        indexPending();
+        sealExpired();
+      } catch (IOException e) {
+        // Unexpected; the records are journaled, and will be indexed again after a restart
+        e.printStackTrace();
+      } catch (RuntimeException e) {
+        e.printStackTrace();
+      }
+      if (running && pending.isEmpty()) {
+        indexerParked = true;
+        if (running && pending.isEmpty()) {
+          LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+        indexerParked = false;
+      }
+    }
+  }
+
+  /**
+   * Index the queued records, in a single critical section.
+   */
+  private synchronized void indexPending() {
+    int count = 0;
+    try {
+      Pending record;
+      while ((record = pending.poll()) != null) {
+        count++;
+        index(record.segment, record.offset, record.ingest, record.level, record.category,
+            record.attributes);
+      }
+    } finally {
+      pendingCount.addAndGet(-count);
+    }
+  }
+
+  /**
+   * Index the journal records which were ingested after the supplied time.
+   */
+  private void rebuild(long fromMillis) throws IOException {
+    if (!Files.isDirectory(journalDir)) {
+      return;
+    }
+    JournalReader reader = new JournalReader(journalDir, fromMillis, Long.MAX_VALUE);
+    for (JournalRecord record; (record = reader.next()) != null;) {
+      index(ServerLogImplJournal.parseSegmentName(
+          reader.getRecordSegment().getFileName().toString()), reader.getRecordPosition(),
+          record.getIngestTimestamp(), record.getLevel(), record.getCategory(),
+          record.getAttributes());
+    }
+    sealExpired();
+  }
+
+  private void seal(OpenPartition partition) throws IOException {
+    if (!writable) {
+      throw new IllegalStateException("Index is read only");
+    }
+    int sequence = 0;
+    Path file;
+    do {
+      file = indexDir.resolve(partitionName(partition.start, sequence++));
+    } while (Files.exists(file));
+    partition.write(file);
+    sealedPartitions.add(new SealedPartition(file));
+  }
+
+  /**
+   * Seal the open partitions whose grace period has passed. Searches wait while a partition is
+   * written, as do logging threads only when the queue is full.
+   */
+  private synchronized void sealExpired() throws IOException {
+    while (!openPartitions.isEmpty()
+        && openPartitions.firstKey() + partitionMillis + GRACE_MILLIS <= newestIngest) {
+      seal(openPartitions.pollFirstEntry().getValue());
+    }
+  }
+
+  private void search(Partition partition, JournalQuery query, int limit, List<long[]> refs)
+      throws IOException {
+    if (partition.docCount() == 0 || partition.maxIngest() < query.getFromMillis()
+        || partition.minIngest() > query.getToMillis()) {
+      return;
+    }
+
+    ArrayList<int[]> lists = new ArrayList<int[]>();
+    if (query.getCategory() != null) {
+      lists.add(partition.postings(CATEGORY_PREFIX + query.getCategory()));
+    }
+    for (Entry<String, String> entry : query.getAttributes().entrySet()) {
+      lists.add(partition.postings(entry.getKey() + '\u0000' + entry.getValue()));
+    }
+    if (lists.isEmpty()) {
+      // without other criteria, use the level postings rather than checking every document; for
+      // sealed partitions, this also reads the term dictionary and maps the file
+      ArrayList<int[]> levels = new ArrayList<int[]>();
+      boolean levelExcluded = false;
+      for (String term : partition.terms()) {
+        if (term.startsWith(LEVEL_PREFIX)) {
+          if (Integer.parseInt(term.substring(LEVEL_PREFIX.length())) >= query
+              .getMinimumLevel()) {
+            levels.add(partition.postings(term));
+          } else {
+            levelExcluded = true;
+          }
+        }
+      }
+      if (levelExcluded) {
+        lists.add(union(levels));
+      }
+    }
+
+    int[] docs = null;
+    if (!lists.isEmpty()) {
+      // intersect the shortest lists first
+      for (int[] list : lists) {
+        if (list == null) {
+          return;
+        }
+      }
+      Collections.sort(lists, new Comparator<int[]>() {
+        @Override
+        public int compare(int[] a, int[] b) {
+          return a.length - b.length;
+        }
+      });
+      docs = lists.get(0);
+      for (int i = 1; i < lists.size() && docs.length > 0; i++) {
+        docs = intersect(docs, lists.get(i));
+      }
+    }
+
+    int count = docs == null ? partition.docCount() : docs.length;
+    for (int i = 0; i < count && refs.size() < limit; i++) {
+      int doc = docs == null ? i : docs[i];
+      long ingest = partition.docIngest(doc);
+      if (ingest >= query.getFromMillis() && ingest <= query.getToMillis()
+          && partition.docLevel(doc) >= query.getMinimumLevel()) {
+        refs.add(new long[] {partition.docSegment(doc), partition.docOffset(doc)});
+      }
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.client.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Criteria for {@link JournalIndex#search(JournalQuery, int)}, all of which must match, e.g.
+ * 
+ * <pre>
+ * new JournalQuery(now - 3600000, now).minimumLevel(Log.LOG_LEVEL_ERROR)
+ *     .attribute(&quot;permutation&quot;, permutation)
+ *     .attribute(&quot;fingerprint&quot;, fingerprint);
+ * </pre>
+ */
+public final class JournalQuery {
+  private final LinkedHashMap<String, String> attributes = new LinkedHashMap<String, String>();
+  private String category;
+  private final long fromMillis;
+  private int minimumLevel = Log.LOG_LEVEL_TRACE;
+  private final long toMillis;
+
+  /**
+   * Match records ingested within a time range.
+   * 
+   * @param fromMillis the earliest ingest time to include
+   * @param toMillis the latest ingest time to include
+   */
+  public JournalQuery(long fromMillis, long toMillis) {
+    this.fromMillis = fromMillis;
+    this.toMillis = toMillis;
+  }
+
+  /**
+   * Only match records with the supplied attribute, e.g. <code>remoteAddr</code>,
+   * <code>fingerprint</code>, <code>permutation</code> or a key set via
+   * {@link com.allen_sauer.gwt.log.shared.LogRecord#set(String, String)}.
+   * 
+   * @param key the attribute key
+   * @param value the attribute value
+   * @return this query
+   */
+  public JournalQuery attribute(String key, String value) {
+    attributes.put(key, value);
+    return this;
+  }
+
+  /**
+   * Only match records in the supplied category.
+   * 
+   * @param category the category
+   * @return this query
+   */
+  public JournalQuery category(String category) {
+    this.category = category;
+    return this;
+  }
+
+  public Map<String, String> getAttributes() {
+    return attributes;
+  }
+
+  public String getCategory() {
+    return category;
+  }
+
+  public long getFromMillis() {
+    return fromMillis;
+  }
+
+  public int getMinimumLevel() {
+    return minimumLevel;
+  }
+
+  public long getToMillis() {
+    return toMillis;
+  }
+
+  /**
+   * Only match records at or above the supplied level.
+   * 
+   * @param level the minimum level
+   * @return this query
+   */
+  public JournalQuery minimumLevel(int level) {
+    minimumLevel = level;
+    return this;
+  }
+}
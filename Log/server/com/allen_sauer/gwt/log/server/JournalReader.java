@@ -0,0 +1,262 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Replays the records written by {@link ServerLogImplJournal} whose ingest time falls within a
+ * range, in journal order. Segments entirely outside the range are not read, since each segment
+ * only holds records ingested from its own creation until that of the next segment. Records which
+ * were not committed, and gaps left by writers which had not yet written a record's length, are
+ * skipped and counted by {@link #getSkippedCount()}.
+ *
+ * <pre>
+ * JournalReader reader = new JournalReader(dir, from, to);
+ * for (JournalRecord record; (record = reader.next()) != null;) {
+ *   ...
+ * }
+ * </pre>
+ */
+public final class JournalReader {
+  private MappedByteBuffer buffer;
+  private final CRC32 crc = new CRC32();
+  private final long fromMillis;
+  private Path mappedSegment;
+  private byte[] payload = new byte[1024];
+  private int position;
+  private int recordPosition;
+  private int segmentIndex;
+  private final List<Path> segments = new ArrayList<Path>();
+  private int skippedCount;
+  private final long toMillis;
+
+  /**
+   * Prepare to read individual records by position, via {@link #read(Path, int)}.
+   */
+  JournalReader() {
+    fromMillis = Long.MIN_VALUE;
+    toMillis = Long.MAX_VALUE;
+  }
+
+  /**
+   * Prepare to read the records in the supplied journal directory.
+   *
+   * @param dir the journal directory
+   * @param fromMillis the earliest ingest time to include
+   * @param toMillis the latest ingest time to include
+   * @throws IOException if the directory cannot be listed
+   */
+  public JournalReader(Path dir, long fromMillis, long toMillis) throws IOException {
+    this.fromMillis = fromMillis;
+    this.toMillis = toMillis;
+    List<Path> all = ServerLogImplJournal.listSegments(dir);
+    for (int i = 0; i < all.size(); i++) {
+      long createdMillis = parseCreatedMillis(all.get(i));
+      long nextCreatedMillis = i + 1 < all.size() ? parseCreatedMillis(all.get(i + 1))
+          : Long.MAX_VALUE;
+      // clocks have millisecond resolution, so the next segment may be created in the same
+      // millisecond as the last records of this one were ingested
+      if (createdMillis <= toMillis && nextCreatedMillis >= fromMillis) {
+        segments.add(all.get(i));
+      }
+    }
+  }
+
+  /**
+   * Retrieve the number of records and gaps skipped so far because they were not committed.
+   *
+   * @return the number of skipped records
+   */
+  public int getSkippedCount() {
+    return skippedCount;
+  }
+
+  /**
+   * Retrieve the offset within its segment of the record last returned by {@link #next()}.
+   */
+  int getRecordPosition() {
+    return recordPosition;
+  }
+
+  /**
+   * Retrieve the segment of the record last returned by {@link #next()}.
+   */
+  Path getRecordSegment() {
+    return mappedSegment;
+  }
+
+  /**
+   * Read the next record within the time range.
+   *
+   * @return the next record, or null if there are no more
+   * @throws IOException if a segment cannot be read
+   */
+  public JournalRecord next() throws IOException {
+    while (true) {
+      if (buffer == null) {
+        if (segmentIndex == segments.size()) {
+          return null;
+        }
+        mappedSegment = segments.get(segmentIndex++);
+        buffer = map(mappedSegment);
+        position = 0;
+      }
+      JournalRecord record = readRecord(true);
+      if (record == null) {
+        buffer = null;
+      } else if (record.getIngestTimestamp() >= fromMillis
+          && record.getIngestTimestamp() <= toMillis) {
+        return record;
+      }
+    }
+  }
+
+  /**
+   * Read the record at the supplied position, which must have been obtained from the journal.
+   *
+   * @param segment the segment file
+   * @param offset the offset of the record within the segment
+   * @return the record, or null if it was not committed
+   * @throws IOException if the segment cannot be read
+   */
+  JournalRecord read(Path segment, int offset) throws IOException {
+    if (!segment.equals(mappedSegment)) {
+      buffer = map(segment);
+      mappedSegment = segment;
+    }
+    position = offset;
+    int skipped = skippedCount;
+    JournalRecord record = readRecord(false);
+    if (skippedCount != skipped) {
+      // readRecord() moved on past the uncommitted record
+      skippedCount = skipped;
+      return null;
+    }
+    return record;
+  }
+
+  private static long parseCreatedMillis(Path segment) {
+    return ServerLogImplJournal.parseSegmentName(segment.getFileName().toString());
+  }
+
+  private static String readString(ByteBuffer buf) {
+    int length = buf.getInt();
+    if (length < 0) {
+      return null;
+    }
+    String text = new String(buf.array(), buf.position(), length, StandardCharsets.UTF_8);
+    buf.position(buf.position() + length);
+    return text;
+  }
+
+  /**
+   * Determine whether a committed record of the supplied payload length starts at the supplied
+   * position, leaving its payload in {@link #payload} if so.
+   */
+  private boolean isCommitted(int position, int length) {
+    if (payload.length < length) {
+      payload = new byte[Math.max(length, payload.length * 2)];
+    }
+    ByteBuffer source = buffer.duplicate();
+    source.position(position + ServerLogImplJournal.HEADER_SIZE);
+    source.get(payload, 0, length);
+    crc.reset();
+    crc.update(payload, 0, length);
+    return (int) crc.getValue() == buffer.getInt(position + 4);
+  }
+
+  private MappedByteBuffer map(Path segment) throws IOException {
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+      return channel.map(MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  /**
+   * Read the next committed record in the current segment, or return null at the end of the
+   * segment's records.
+   *
+   * @param resync whether to look past a gap for further records, rather than return null
+   */
+  private JournalRecord readRecord(boolean resync) {
+    while (position <= buffer.limit() - ServerLogImplJournal.HEADER_SIZE) {
+      int length = buffer.getInt(position);
+      int start = position + ServerLogImplJournal.HEADER_SIZE;
+      // an unwritten length marks either a gap or the end of the reserved space
+      if (length <= 0 || length > buffer.limit() - start) {
+        if (!resync || !resync()) {
+          return null;
+        }
+        skippedCount++;
+        continue;
+      }
+      recordPosition = position;
+      position = ServerLogImplJournal.align(start + length);
+      if (!isCommitted(recordPosition, length)) {
+        skippedCount++;
+        continue;
+      }
+
+      ByteBuffer buf = ByteBuffer.wrap(payload, 0, length);
+      long ingestTimestamp = buf.getLong();
+      long timestamp = buf.getLong();
+      int level = buf.getInt();
+      int recordSequence = buf.getInt();
+      String category = readString(buf);
+      String message = readString(buf);
+      String throwableText = readString(buf);
+      int attributeCount = buf.getInt();
+      HashMap<String, String> attributes = new HashMap<String, String>();
+      for (int i = 0; i < attributeCount; i++) {
+        attributes.put(readString(buf), readString(buf));
+      }
+      return new JournalRecord(ingestTimestamp, timestamp, level, recordSequence, category,
+          message, throwableText, attributes);
+    }
+    return null;
+  }
+
+  /**
+   * Move on to the next aligned position, after the current one, at which a committed record
+   * starts. Beyond the last record the segment is zeroed, so reaching its end only costs a read
+   * of each aligned length.
+   *
+   * @return false if there is no such record
+   */
+  private boolean resync() {
+    int limit = buffer.limit() - ServerLogImplJournal.HEADER_SIZE;
+    for (int p = position + ServerLogImplJournal.ALIGNMENT; p <= limit;
+        p += ServerLogImplJournal.ALIGNMENT) {
+      int length = buffer.getInt(p);
+      if (length > 0 && length <= limit - p && isCommitted(p, length)) {
+        position = p;
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A record read back from the journal written by {@link ServerLogImplJournal}.
+ */
+public final class JournalRecord {
+  private final Map<String, String> attributes;
+  private final String category;
+  private final long ingestTimestamp;
+  private final int level;
+  private final String message;
+  private final int recordSequence;
+  private final String throwableText;
+  private final long timestamp;
+
+  JournalRecord(long ingestTimestamp, long timestamp, int level, int recordSequence,
+      String category, String message, String throwableText, Map<String, String> attributes) {
+    this.ingestTimestamp = ingestTimestamp;
+    this.timestamp = timestamp;
+    this.level = level;
+    this.recordSequence = recordSequence;
+    this.category = category;
+    this.message = message;
+    this.throwableText = throwableText;
+    this.attributes = Collections.unmodifiableMap(attributes);
+  }
+
+  /**
+   * Retrieve the key/value pairs and diagnostic context of the original record.
+   *
+   * @return the attributes, possibly empty
+   */
+  public Map<String, String> getAttributes() {
+    return attributes;
+  }
+
+  public String getCategory() {
+    return category;
+  }
+
+  /**
+   * Retrieve the server time at which the record was appended to the journal.
+   *
+   * @return the time in milliseconds since the epoch
+   */
+  public long getIngestTimestamp() {
+    return ingestTimestamp;
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public int getRecordSequence() {
+    return recordSequence;
+  }
+
+  /**
+   * Retrieve the stack trace of the original record's throwable, as rendered when it was
+   * journaled.
+   *
+   * @return the stack trace text, or null if the record had no throwable
+   */
+  public String getThrowableText() {
+    return throwableText;
+  }
+
+  /**
+   * Retrieve the time at which the original record was created, which for client records is the
+   * client's clock.
+   *
+   * @return the time in milliseconds since the epoch
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  @Override
+  public String toString() {
+    return ingestTimestamp + " " + level + " " + category + ": " + message;
+  }
+}
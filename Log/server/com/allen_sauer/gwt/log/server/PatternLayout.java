@@ -0,0 +1,347 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.client.LogUtil;
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import java.text.FieldPosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Server side formatter for the <code>log_pattern</code> syntax used by the client, e.g.
+ * <code>(%F:%L) %d [%-5p] %m%n</code>. The pattern is compiled once into an array of segments,
+ * which append each record to a caller supplied buffer without allocating for the common
+ * conversions. Instances are not thread safe.
+ */
+public final class PatternLayout {
+  /**
+   * Appends one conversion or literal of the pattern.
+   */
+  private abstract static class Segment {
+    abstract void write(LogRecord record, String threadName, StringBuilder buf);
+  }
+
+  private static final HashMap<String, String> DATE_FORMAT_MAP = new HashMap<String, String>();
+
+  private static final String ISO8601 = "ISO8601";
+
+  private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+  /**
+   * Same syntax as {@link com.allen_sauer.gwt.log.rebind.LogMessageFormatterGenerator}:
+   * literal text, then <code>%</code>, optional <code>-</code>, minimum width, optional
+   * <code>.</code> and maximum width, conversion character and optional <code>{...}</code>
+   * specifier.
+   */
+  private static final Pattern PATTERN = Pattern.compile(
+      "(.*?)%(-?)(\\d*)\\.?(\\d*)([cCdFlLmMnprtxX%])(\\{([^\\}]+)\\})?");
+
+  static {
+    DATE_FORMAT_MAP.put("ABSOLUTE", "HH:mm:ss,SSS");
+    DATE_FORMAT_MAP.put("DATE", "dd MMM yyyy HH:mm:ss,SSS");
+    DATE_FORMAT_MAP.put(ISO8601, "yyyy-MM-dd HH:mm:ss,SSS");
+  }
+
+  /**
+   * Append the last <code>precision</code> components of a dotted name, like
+   * {@link LogUtil#formatCategory(String, int)} but without creating a substring.
+   */
+  private static void appendAbbreviated(StringBuilder buf, String name, int precision) {
+    int pos = name.length();
+    for (int i = 0; i < precision && pos >= 0; i++) {
+      pos = name.lastIndexOf('.', pos - 1);
+    }
+    buf.append(name, precision < 1 ? 0 : pos + 1, name.length());
+  }
+
+  private static Segment categorySegment(final int precision) {
+    return new Segment() {
+      @Override
+      void write(LogRecord record, String threadName, StringBuilder buf) {
+        String category = record.getCategory();
+        if (category == null) {
+          buf.append("<null category>");
+        } else {
+          appendAbbreviated(buf, category, precision);
+        }
+      }
+    };
+  }
+
+  /**
+   * Formats dates, caching the text of the current second (or millisecond if the pattern has a
+   * millisecond field other than a trailing <code>SSS</code>).
+   */
+  private static Segment dateSegment(String datePattern) {
+    String unquoted = datePattern.replaceAll("'[^']*'", "");
+    final boolean millisSuffix = datePattern.endsWith("SSS")
+        && unquoted.indexOf('S') == unquoted.length() - 3;
+    final boolean perSecond = millisSuffix || unquoted.indexOf('S') == -1;
+    final SimpleDateFormat format = new SimpleDateFormat(millisSuffix
+        ? datePattern.substring(0, datePattern.length() - 3) : datePattern);
+    return new Segment() {
+      private final StringBuffer cachedText = new StringBuffer();
+      private long cachedKey = Long.MIN_VALUE;
+      private final Date date = new Date();
+      private final FieldPosition fieldPosition = new FieldPosition(0);
+
+      @Override
+      void write(LogRecord record, String threadName, StringBuilder buf) {
+        long millis = record.getTimestamp();
+        long key = perSecond ? floorDiv(millis, 1000) : millis;
+        if (key != cachedKey) {
+          date.setTime(millis);
+          cachedText.setLength(0);
+          format.format(date, cachedText, fieldPosition);
+          cachedKey = key;
+        }
+        buf.append(cachedText);
+        if (millisSuffix) {
+          int ms = (int) (millis - key * 1000);
+          if (ms < 100) {
+            buf.append(ms < 10 ? "00" : "0");
+          }
+          buf.append(ms);
+        }
+      }
+    };
+  }
+
+  private static long floorDiv(long dividend, long divisor) {
+    return dividend >= 0 ? dividend / divisor : (dividend - divisor + 1) / divisor;
+  }
+
+  private static Segment literalSegment(final String text) {
+    return new Segment() {
+      @Override
+      void write(LogRecord record, String threadName, StringBuilder buf) {
+        buf.append(text);
+      }
+    };
+  }
+
+  private static Segment widthSegment(final Segment segment, final int minFieldWidth,
+      final int maxFieldWidth) {
+    return new Segment() {
+      @Override
+      void write(LogRecord record, String threadName, StringBuilder buf) {
+        int start = buf.length();
+        segment.write(record, threadName, buf);
+        if (minFieldWidth > 0) {
+          LogUtil.padLeft(buf, start, minFieldWidth);
+        } else if (minFieldWidth < 0) {
+          LogUtil.padRight(buf, start, -minFieldWidth);
+        }
+        if (maxFieldWidth > 0) {
+          LogUtil.trim(buf, start, maxFieldWidth);
+        }
+      }
+    };
+  }
+
+  private final long bigBang = System.currentTimeMillis();
+
+  private final String pattern;
+
+  private final Segment[] segments;
+
+  /**
+   * Compile the supplied pattern.
+   * 
+   * @param pattern the pattern, using the <code>log_pattern</code> syntax
+   */
+  public PatternLayout(String pattern) {
+    this.pattern = pattern;
+    ArrayList<Segment> list = new ArrayList<Segment>();
+    StringBuilder literal = new StringBuilder();
+    Matcher matcher = PATTERN.matcher(pattern);
+    int tailStart = 0;
+    while (matcher.find()) {
+      tailStart = matcher.end();
+      literal.append(matcher.group(1));
+      int minFieldWidth = Integer.parseInt(matcher.group(2) + "0" + matcher.group(3));
+      int maxFieldWidth = Integer.parseInt("0" + matcher.group(4));
+      char conversion = matcher.group(5).charAt(0);
+      String formatSpecifier = matcher.group(7);
+
+      String constant = conversion == 'X' && formatSpecifier != null ? null
+          : constantValue(conversion);
+      if (constant != null) {
+        // merge with the surrounding literal text
+        StringBuilder value = new StringBuilder(constant);
+        applyWidth(value, minFieldWidth, maxFieldWidth);
+        literal.append(value);
+        continue;
+      }
+      if (literal.length() > 0) {
+        list.add(literalSegment(literal.toString()));
+        literal.setLength(0);
+      }
+      Segment segment = conversionSegment(conversion, formatSpecifier);
+      if (minFieldWidth != 0 || maxFieldWidth > 0) {
+        segment = widthSegment(segment, minFieldWidth, maxFieldWidth);
+      }
+      list.add(segment);
+    }
+    literal.append(pattern.substring(tailStart));
+    if (literal.length() > 0) {
+      list.add(literalSegment(literal.toString()));
+    }
+    segments = list.toArray(new Segment[list.size()]);
+  }
+
+  /**
+   * Append the formatted record to the supplied buffer.
+   * 
+   * @param record the record to format
+   * @param buf the buffer to append to, which callers typically reuse
+   */
+  public void format(LogRecord record, StringBuilder buf) {
+    format(record, Thread.currentThread().getName(), buf);
+  }
+
+  /**
+   * Append the formatted record to the supplied buffer, on behalf of the thread which logged it.
+   * 
+   * @param record the record to format
+   * @param threadName the name of the logging thread, used for <code>%t</code>
+   * @param buf the buffer to append to, which callers typically reuse
+   */
+  public void format(LogRecord record, String threadName, StringBuilder buf) {
+    for (int i = 0; i < segments.length; i++) {
+      segments[i].write(record, threadName, buf);
+    }
+  }
+
+  public String getPattern() {
+    return pattern;
+  }
+
+  private void applyWidth(StringBuilder value, int minFieldWidth, int maxFieldWidth) {
+    if (minFieldWidth > 0) {
+      LogUtil.padLeft(value, 0, minFieldWidth);
+    } else if (minFieldWidth < 0) {
+      LogUtil.padRight(value, 0, -minFieldWidth);
+    }
+    if (maxFieldWidth > 0) {
+      LogUtil.trim(value, 0, maxFieldWidth);
+    }
+  }
+
+  private String constantValue(char conversion) {
+    switch (conversion) {
+      case 'n':
+        return LINE_SEPARATOR;
+      case 'x':
+      case 'X':
+        return "-";
+      case '%':
+        return "%";
+      default:
+        return null;
+    }
+  }
+
+  private Segment conversionSegment(final char conversion, String formatSpecifier) {
+    switch (conversion) {
+      case 'c':
+        return categorySegment(formatSpecifier == null ? 0 : Integer.parseInt(formatSpecifier));
+      case 'd':
+        if (formatSpecifier == null) {
+          formatSpecifier = ISO8601;
+        }
+        String datePattern = DATE_FORMAT_MAP.get(formatSpecifier);
+        return dateSegment(datePattern != null ? datePattern : formatSpecifier);
+      case 'm':
+        return new Segment() {
+          @Override
+          void write(LogRecord record, String threadName, StringBuilder buf) {
+            String message = record.getMessage();
+            buf.append(message == null ? "<null message>" : message);
+          }
+        };
+      case 'p':
+        return new Segment() {
+          @Override
+          void write(LogRecord record, String threadName, StringBuilder buf) {
+            buf.append(LogUtil.levelToString(record.getLevel()));
+          }
+        };
+      case 'r':
+        return new Segment() {
+          @Override
+          void write(LogRecord record, String threadName, StringBuilder buf) {
+            buf.append(record.getTimestamp() - bigBang);
+          }
+        };
+      case 'X':
+        final String key = formatSpecifier;
+        return new Segment() {
+          @Override
+          void write(LogRecord record, String threadName, StringBuilder buf) {
+            String value = record.get(key);
+            if (value != null) {
+              buf.append(value);
+            }
+          }
+        };
+      case 't':
+        return new Segment() {
+          @Override
+          void write(LogRecord record, String threadName, StringBuilder buf) {
+            buf.append(threadName);
+          }
+        };
+      default:
+        final int precision = formatSpecifier == null ? 0 : Integer.parseInt(formatSpecifier);
+        return new Segment() {
+          @Override
+          void write(LogRecord record, String threadName, StringBuilder buf) {
+            StackTraceElement ste = record.getCallingStackTraceElement();
+            if (ste == null) {
+              buf.append('-');
+              return;
+            }
+            switch (conversion) {
+              case 'C':
+                appendAbbreviated(buf, ste.getClassName(), precision);
+                break;
+              case 'F':
+                buf.append(ste.getFileName());
+                break;
+              case 'l':
+                buf.append(ste);
+                break;
+              case 'L':
+                buf.append(ste.getLineNumber());
+                break;
+              case 'M':
+                buf.append(ste.getMethodName());
+                break;
+              default:
+                throw new IllegalStateException();
+            }
+          }
+        };
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+/**
+ * A {@link ServerLog} which may queue records to be written later, and may drop records it cannot
+ * accept.
+ */
+public interface QueueingServerLog extends ServerLog {
+  /**
+   * Stop accepting records, write those already accepted and release the underlying files.
+   */
+  void close();
+
+  /**
+   * Retrieve the number of records which have been dropped since startup.
+   *
+   * @return the number of dropped records
+   */
+  long getDroppedCount();
+
+  /**
+   * Retrieve the number of records which have been accepted but not yet written.
+   *
+   * @return the number of queued records
+   */
+  int getQueueDepth();
+}
@@ -8,6 +8,8 @@ public interface ServerLog {
 
   boolean isDebugEnabled();
 
+  boolean isEnabled(String category, int level);
+
   boolean isErrorEnabled();
 
   boolean isFatalEnabled();
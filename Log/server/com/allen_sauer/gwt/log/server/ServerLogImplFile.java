@@ -0,0 +1,460 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.client.LogUtil;
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Zero dependency backend, selected with <code>-Dgwt-log.RemoteLogger=FILE</code>, which appends
+ * records to a file from a single writer thread. Logging threads only enqueue the record on a
+ * lock-free queue; the writer drains the queue in batches, formats each record with
+ * {@link PatternLayout}, encodes it into a set of direct buffers and writes the batch with a
+ * single gathering write.
+ *
+ * <p>
+ * Configured via system properties:
+ * <ul>
+ * <li><code>gwt-log.pattern</code>, the {@link PatternLayout} pattern</li>
+ * <li><code>gwt-log.file</code>, the log file, by default <code>gwt-log.log</code></li>
+ * <li><code>gwt-log.file.maxSize</code>, the size in bytes once reached the file is rolled, by default
+ * 10 MiB, or 0 to disable</li>
+ * <li><code>gwt-log.file.rollInterval</code>, the interval in minutes, aligned to local midnight,
+ * at which the file is rolled, by default 1440, or 0 to disable</li>
+ * <li><code>gwt-log.file.sync</code>, when written data is forced to disk: <code>NONE</code>,
+ * <code>ROLL</code> (the default) or <code>BATCH</code></li>
+ * <li><code>gwt-log.file.capacity</code>, the number of records which may be queued before further
+ * records are dropped, by default 65536</li>
+ * </ul>
+ * Rolled files are renamed with a timestamp suffix and are not deleted.
+ */
+public final class ServerLogImplFile implements QueueingServerLog {
+  /**
+   * When written data is forced to disk.
+   */
+  enum Sync {
+    /**
+     * After every batch.
+     */
+    BATCH,
+
+    /**
+     * Never; left to the operating system.
+     */
+    NONE,
+
+    /**
+     * Before a file is rolled or closed.
+     */
+    ROLL
+  }
+
+  /**
+   * A queued record, along with the name of the thread which logged it.
+   */
+  private static final class Entry {
+    final LogRecord record;
+    final String threadName;
+
+    Entry(LogRecord record, String threadName) {
+      this.record = record;
+      this.threadName = threadName;
+    }
+  }
+
+  public static final String GWT_LOG_FILE_CAPACITY_PREFERENCE = "gwt-log.file.capacity";
+  public static final String GWT_LOG_FILE_MAX_SIZE_PREFERENCE = "gwt-log.file.maxSize";
+  public static final String GWT_LOG_FILE_PREFERENCE = "gwt-log.file";
+  public static final String GWT_LOG_FILE_ROLL_INTERVAL_PREFERENCE = "gwt-log.file.rollInterval";
+  public static final String GWT_LOG_FILE_SYNC_PREFERENCE = "gwt-log.file.sync";
+
+  private static final int BUFFER_COUNT = 16;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final String DEFAULT_PATTERN = "%d [%-5p] %c: %m%n";
+
+  /**
+   * Upper bound on how long an idle writer sleeps, so that time based rolling happens promptly.
+   */
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private static int getIntPreference(String name, int defaultValue) {
+    String value = System.getProperty(name);
+    return value == null ? defaultValue : Integer.parseInt(value.trim());
+  }
+
+  private final ByteBuffer[] buffers = new ByteBuffer[BUFFER_COUNT];
+  private final int capacity;
+  private FileChannel channel;
+  private CharBuffer charBuffer = CharBuffer.allocate(1024);
+  private int currentBuffer;
+  private final AtomicInteger dropped = new AtomicInteger();
+  private final AtomicLong droppedTotal = new AtomicLong();
+  private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder().onMalformedInput(
+      CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+  private final Path file;
+  private long fileSize;
+  private final PatternLayout layout;
+  private volatile int level = Log.LOG_LEVEL_TRACE;
+  private final long maxSize;
+  private long nextRollMillis;
+  private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<Entry>();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final long rollIntervalMillis;
+  private volatile boolean running = true;
+  private final Sync sync;
+  private final StringBuilder text = new StringBuilder();
+  private final Thread writer;
+  private volatile boolean writerParked;
+
+  public ServerLogImplFile() throws IOException {
+    this(Paths.get(System.getProperty(GWT_LOG_FILE_PREFERENCE, "gwt-log.log")),
+        System.getProperty(ServerLogImplStdio.GWT_LOG_PATTERN_PREFERENCE, DEFAULT_PATTERN),
+        getIntPreference(GWT_LOG_FILE_MAX_SIZE_PREFERENCE, 10 * 1024 * 1024),
+        TimeUnit.MINUTES.toMillis(getIntPreference(GWT_LOG_FILE_ROLL_INTERVAL_PREFERENCE, 1440)),
+        Sync.valueOf(System.getProperty(GWT_LOG_FILE_SYNC_PREFERENCE, Sync.ROLL.name())),
+        getIntPreference(GWT_LOG_FILE_CAPACITY_PREFERENCE, 65536));
+    Runtime.getRuntime().addShutdownHook(new Thread("gwt-log file shutdown") {
+      @Override
+      public void run() {
+        close();
+      }
+    });
+  }
+
+  ServerLogImplFile(Path file, String pattern, long maxSize, long rollIntervalMillis, Sync sync,
+      int capacity) throws IOException {
+    this.file = file;
+    this.layout = new PatternLayout(pattern);
+    this.maxSize = maxSize;
+    this.rollIntervalMillis = rollIntervalMillis;
+    this.sync = sync;
+    this.capacity = capacity;
+    for (int i = 0; i < BUFFER_COUNT; i++) {
+      buffers[i] = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+    open(System.currentTimeMillis());
+    writer = new Thread("gwt-log file writer") {
+      @Override
+      public void run() {
+        writeLoop();
+      }
+    };
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @Override
+  public int getCurrentLogLevel() {
+    return level;
+  }
+
+  @Override
+  public long getDroppedCount() {
+    return droppedTotal.get();
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return queued.get();
+  }
+
+  @Override
+  public boolean isDebugEnabled() {
+    return level <= Log.LOG_LEVEL_DEBUG;
+  }
+
+  @Override
+  public boolean isEnabled(String category, int gwtLogLevel) {
+    return level <= gwtLogLevel && gwtLogLevel < Log.LOG_LEVEL_OFF;
+  }
+
+  @Override
+  public boolean isErrorEnabled() {
+    return level <= Log.LOG_LEVEL_ERROR;
+  }
+
+  @Override
+  public boolean isFatalEnabled() {
+    return level <= Log.LOG_LEVEL_FATAL;
+  }
+
+  @Override
+  public boolean isInfoEnabled() {
+    return level <= Log.LOG_LEVEL_INFO;
+  }
+
+  @Override
+  public boolean isLoggingEnabled() {
+    return level < Log.LOG_LEVEL_OFF;
+  }
+
+  @Override
+  public boolean isTraceEnabled() {
+    return level <= Log.LOG_LEVEL_TRACE;
+  }
+
+  @Override
+  public boolean isWarnEnabled() {
+    return level <= Log.LOG_LEVEL_WARN;
+  }
+
+  @Override
+  public void log(LogRecord record) {
+    if (record.getLevel() < level || !running) {
+      return;
+    }
+    if (queued.incrementAndGet() > capacity) {
+      queued.decrementAndGet();
+      dropped.incrementAndGet();
+      droppedTotal.incrementAndGet();
+      return;
+    }
+    queue.offer(new Entry(record, Thread.currentThread().getName()));
+    if (writerParked) {
+      LockSupport.unpark(writer);
+    }
+  }
+
+  @Override
+  public int mapGWTLogLevelToImplLevel(int gwtLogLevel) {
+    return gwtLogLevel;
+  }
+
+  @Override
+  public void setCurrentImplLogLevel(int level) {
+    this.level = level;
+  }
+
+  /**
+   * Stop accepting records, then wait for the writer to write those already queued and close the
+   * file.
+   */
+  @Override
+  public void close() {
+    running = false;
+    LockSupport.unpark(writer);
+    try {
+      writer.join(TimeUnit.SECONDS.toMillis(10));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void append(Entry entry) throws IOException {
+    text.setLength(0);
+    layout.format(entry.record, entry.threadName, text);
+    Throwable throwable = entry.record.getThrowable();
+    if (throwable != null) {
+      text.append(LogUtil.stackTraceToString(throwable));
+    }
+    encode();
+    if (maxSize > 0 && fileSize + pendingBytes() >= maxSize) {
+      writeBuffers();
+      roll(System.currentTimeMillis());
+    }
+  }
+
+  private void appendDropped(int count) throws IOException {
+    text.setLength(0);
+    text.append("gwt-log: dropped ").append(count).append(
+        " records which exceeded the queue capacity of ").append(capacity).append('\n');
+    encode();
+  }
+
+  private void closeChannel() throws IOException {
+    if (sync != Sync.NONE) {
+      channel.force(false);
+    }
+    channel.close();
+  }
+
+  /**
+   * Drain the queue, returning whether there was anything to write.
+   */
+  private boolean drain() throws IOException {
+    long now = System.currentTimeMillis();
+    if (rollIntervalMillis > 0 && now >= nextRollMillis) {
+      writeBuffers();
+      roll(now);
+    }
+    int count = 0;
+    try {
+      Entry entry;
+      while ((entry = queue.poll()) != null) {
+        count++;
+        append(entry);
+      }
+    } finally {
+      queued.addAndGet(-count);
+    }
+    int droppedCount = dropped.getAndSet(0);
+    if (droppedCount > 0) {
+      appendDropped(droppedCount);
+    }
+    if (count == 0 && droppedCount == 0) {
+      return false;
+    }
+    writeBuffers();
+    if (sync == Sync.BATCH) {
+      channel.force(false);
+    }
+    return true;
+  }
+
+  /**
+   * Encode {@link #text} into the direct buffers, writing them out whenever all are full.
+   */
+  private void encode() throws IOException {
+    int length = text.length();
+    if (length > charBuffer.capacity()) {
+      charBuffer = CharBuffer.allocate(Math.max(length, charBuffer.capacity() * 2));
+    }
+    charBuffer.clear();
+    text.getChars(0, length, charBuffer.array(), 0);
+    charBuffer.limit(length);
+    encoder.reset();
+    while (encoder.encode(charBuffer, buffers[currentBuffer], true).isOverflow()) {
+      nextBuffer();
+    }
+    while (encoder.flush(buffers[currentBuffer]) == CoderResult.OVERFLOW) {
+      nextBuffer();
+    }
+  }
+
+  private void nextBuffer() throws IOException {
+    if (currentBuffer == BUFFER_COUNT - 1) {
+      writeBuffers();
+    } else {
+      currentBuffer++;
+    }
+  }
+
+  private long nextRollMillis(long now) {
+    if (rollIntervalMillis <= 0) {
+      return Long.MAX_VALUE;
+    }
+    // align intervals to local midnight
+    long offset = TimeZone.getDefault().getOffset(now);
+    return ((now + offset) / rollIntervalMillis + 1) * rollIntervalMillis - offset;
+  }
+
+  private void open(long now) throws IOException {
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND);
+    fileSize = channel.size();
+    nextRollMillis = nextRollMillis(now);
+  }
+
+  private long pendingBytes() {
+    long bytes = 0;
+    for (int i = 0; i <= currentBuffer; i++) {
+      bytes += buffers[i].position();
+    }
+    return bytes;
+  }
+
+  private void roll(long now) throws IOException {
+    if (fileSize == 0) {
+      nextRollMillis = nextRollMillis(now);
+      return;
+    }
+    closeChannel();
+    String rolledName = file.getFileName() + "."
+        + new SimpleDateFormat("yyyy-MM-dd-HHmmss").format(new Date(now));
+    Path rolled = file.resolveSibling(rolledName);
+    for (int i = 1; Files.exists(rolled); i++) {
+      rolled = file.resolveSibling(rolledName + "." + i);
+    }
+    Files.move(file, rolled);
+    open(now);
+  }
+
+  /**
+   * Write the filled direct buffers to the file with a single gathering write.
+   */
+  private void writeBuffers() throws IOException {
+    int count = currentBuffer + 1;
+    for (int i = 0; i < count; i++) {
+      buffers[i].flip();
+    }
+    try {
+      while (buffers[currentBuffer].hasRemaining()) {
+        fileSize += channel.write(buffers, 0, count);
+      }
+    } finally {
+      for (int i = 0; i < count; i++) {
+        buffers[i].clear();
+      }
+      currentBuffer = 0;
+    }
+  }
+
+  private void writeLoop() {
+    while (true) {
+      boolean stopping = !running;
+      try {
+        if (!drain()) {
+          if (stopping) {
+            break;
+          }
+          writerParked = true;
+          if (queue.isEmpty() && running) {
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+          }
+          writerParked = false;
+        }
+      } catch (IOException e) {
+        // Unexpected; the current batch is lost, but keep writing subsequent records
+        e.printStackTrace();
+        if (stopping) {
+          break;
+        }
+      } catch (RuntimeException e) {
+        e.printStackTrace();
+        if (stopping) {
+          break;
+        }
+      }
+    }
+    try {
+      closeChannel();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -16,11 +16,52 @@ package com.allen_sauer.gwt.log.server;
 import com.allen_sauer.gwt.log.client.Log;
 import com.allen_sauer.gwt.log.shared.LogRecord;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 // CHECKSTYLE_JAVADOC_OFF
 public final class ServerLogImplJDK14 implements ServerLog {
+  /**
+   * JDK log record which carries the diagnostic context and key/value pairs of a gwt-log record,
+   * for handlers which are aware of it. They are not passed as parameters, since
+   * {@link java.util.logging.Formatter} would then treat the client's message as a
+   * {@link java.text.MessageFormat} pattern.
+   */
+  public static final class AttributedLogRecord extends java.util.logging.LogRecord {
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, String> attributes;
+
+    AttributedLogRecord(Level level, String message, Map<String, String> attributes) {
+      super(level, message);
+      this.attributes = attributes;
+    }
+
+    /**
+     * Retrieve the diagnostic context and key/value pairs of the original record.
+     *
+     * @return the unmodifiable attributes
+     */
+    public Map<String, String> getAttributes() {
+      return attributes;
+    }
+  }
+
+  private final CategoryLoggerCache<Logger> categoryLoggers = new CategoryLoggerCache<Logger>() {
+    @Override
+    Logger create(String category) {
+      return Logger.getLogger(category);
+    }
+
+    @Override
+    Logger fallback() {
+      return logger;
+    }
+  };
   private final Logger logger;
 
   {
@@ -51,6 +92,13 @@ public final class ServerLogImplJDK14 implements ServerLog {
     return logger.isLoggable(Level.CONFIG);
   }
 
+  @Override
+  public boolean isEnabled(String category, int gwtLogLevel) {
+    Logger log = category != null ? categoryLoggers.get(category) : logger;
+    return gwtLogLevel < Log.LOG_LEVEL_OFF
+        && log.isLoggable(mapGWTLogLevelToImplLevelObject(gwtLogLevel));
+  }
+
   @Override
   public boolean isErrorEnabled() {
     return logger.isLoggable(Level.SEVERE);
@@ -84,9 +132,18 @@ public final class ServerLogImplJDK14 implements ServerLog {
   @Override
   public void log(LogRecord record) {
     String category = record.getCategory();
-    Logger log = category != null ? Logger.getLogger(category) : logger;
-    log.log(mapGWTLogLevelToImplLevelObject(record.getLevel()), record.getMessage(),
-        record.getThrowable());
+    Logger log = category != null ? categoryLoggers.get(category) : logger;
+    Level level = mapGWTLogLevelToImplLevelObject(record.getLevel());
+    if (!log.isLoggable(level)) {
+      return;
+    }
+    // preserve the time at which the record was originally logged
+    AttributedLogRecord lr = new AttributedLogRecord(level, record.getMessage(),
+        getAttributes(record));
+    lr.setLoggerName(log.getName());
+    lr.setMillis(record.getTimestamp());
+    lr.setThrown(record.getThrowable());
+    log.log(lr);
   }
 
   @Override
@@ -99,6 +156,20 @@ public final class ServerLogImplJDK14 implements ServerLog {
     logger.setLevel(Level.parse("" + level));
   }
 
+  /**
+   * Combine the diagnostic context and key/value pairs of a record.
+   */
+  private Map<String, String> getAttributes(LogRecord record) {
+    HashMap<String, String> attributes = new HashMap<String, String>();
+    for (Entry<String, String> entry : record.getContextEntrySet()) {
+      attributes.put(entry.getKey(), entry.getValue());
+    }
+    for (Entry<String, String> entry : record.getMapEntrySet()) {
+      attributes.put(entry.getKey(), entry.getValue());
+    }
+    return Collections.unmodifiableMap(attributes);
+  }
+
   private Level mapGWTLogLevelToImplLevelObject(int gwtLogLevel) {
     switch (gwtLogLevel) {
       case Log.LOG_LEVEL_TRACE:
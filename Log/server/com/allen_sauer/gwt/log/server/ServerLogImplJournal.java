@@ -0,0 +1,417 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.client.LogUtil;
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Backend, selected with <code>-Dgwt-log.RemoteLogger=JOURNAL</code>, which appends every record
+ * to a journal of memory-mapped segment files, for replay with {@link JournalReader}. Records are
+ * written directly by the logging threads: each reserves space in the current segment with a
+ * single atomic add, writes the record into its reservation and commits it by writing a checksum
+ * last. Once a segment is full, a new one is created and the unused tail of the old one is left
+ * zeroed.
+ *
+ * <p>
+ * Each record is a length, a CRC-32 of the payload and the payload itself, padded to a multiple of
+ * 8 bytes. A record whose checksum does not match was not committed, e.g. because the process died
+ * while writing it, and is skipped by readers. A reservation whose length has not been written yet,
+ * because its writer was descheduled or died, leaves a zeroed gap; readers skip it by scanning the
+ * following aligned offsets for the next record with a valid checksum, so a record still being
+ * written when a reader passes it is missed by that pass only. Data is written to the page cache
+ * and so survives the process, but is only forced to disk when a segment is rolled or the journal
+ * is closed.
+ *
+ * <p>
+ * Configured via system properties:
+ * <ul>
+ * <li><code>gwt-log.journal.dir</code>, the journal directory, by default
+ * <code>gwt-log-journal</code></li>
+ * <li><code>gwt-log.journal.segmentSize</code>, the size of each segment in bytes, by default
+ * 64 MiB</li>
+ * <li><code>gwt-log.journal.indexPartition</code>, the time period in minutes covered by each
+ * partition of the {@link JournalIndex}, by default 60, or 0 to disable the index</li>
+ * </ul>
+ */
+public final class ServerLogImplJournal implements QueueingServerLog {
+  /**
+   * A memory-mapped segment file, whose name is the time at which it was created.
+   */
+  private static final class Segment {
+    final MappedByteBuffer buffer;
+    final long createdMillis;
+    final AtomicInteger position = new AtomicInteger();
+
+    Segment(MappedByteBuffer buffer, long createdMillis) {
+      this.buffer = buffer;
+      this.createdMillis = createdMillis;
+    }
+  }
+
+  public static final String GWT_LOG_JOURNAL_DIR_PREFERENCE = "gwt-log.journal.dir";
+  public static final String GWT_LOG_JOURNAL_INDEX_PARTITION_PREFERENCE =
+      "gwt-log.journal.indexPartition";
+  public static final String GWT_LOG_JOURNAL_SEGMENT_SIZE_PREFERENCE =
+      "gwt-log.journal.segmentSize";
+
+  /**
+   * Records start at multiples of this, so that readers can find the next record after a gap.
+   */
+  static final int ALIGNMENT = 8;
+
+  /**
+   * Size of the length and checksum which precede each payload.
+   */
+  static final int HEADER_SIZE = 8;
+
+  static final String SEGMENT_SUFFIX = ".journal";
+
+  /**
+   * Size of the fixed length payload fields: ingest time, timestamp, level, sequence and attribute
+   * count.
+   */
+  private static final int FIXED_PAYLOAD_SIZE = 8 + 8 + 4 + 4 + 4;
+
+  private static final byte[] NULL_STRING = null;
+
+  /**
+   * Round the supplied size up to a multiple of {@link #ALIGNMENT}.
+   */
+  static int align(int size) {
+    return (size + ALIGNMENT - 1) & -ALIGNMENT;
+  }
+
+  /**
+   * Parse the creation time of the segment file with the supplied name, or return -1 if the file
+   * is not a segment.
+   */
+  static long parseSegmentName(String name) {
+    if (!name.endsWith(SEGMENT_SUFFIX)) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * List the segment files in the supplied directory, in the order in which they were created.
+   */
+  static List<Path> listSegments(Path dir) throws IOException {
+    List<Path> segments = new ArrayList<Path>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SEGMENT_SUFFIX)) {
+      for (Path path : stream) {
+        if (parseSegmentName(path.getFileName().toString()) >= 0) {
+          segments.add(path);
+        }
+      }
+    }
+    // the names are zero padded, so lexical order is creation order
+    Collections.sort(segments);
+    return segments;
+  }
+
+  private static byte[] encode(String text) {
+    return text == null ? NULL_STRING : text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static int encodedSize(byte[] bytes) {
+    return 4 + (bytes == null ? 0 : bytes.length);
+  }
+
+  private static void put(ByteBuffer buf, byte[] bytes) {
+    if (bytes == null) {
+      buf.putInt(-1);
+    } else {
+      buf.putInt(bytes.length);
+      buf.put(bytes);
+    }
+  }
+
+  static String segmentName(long createdMillis) {
+    return String.format("%019d", createdMillis) + SEGMENT_SUFFIX;
+  }
+
+  private volatile Segment current;
+  private final Path dir;
+  private final AtomicInteger dropped = new AtomicInteger();
+  private final JournalIndex index;
+  private volatile int level = Log.LOG_LEVEL_TRACE;
+  private final int segmentSize;
+
+  public ServerLogImplJournal() throws IOException {
+    this(Paths.get(System.getProperty(GWT_LOG_JOURNAL_DIR_PREFERENCE, "gwt-log-journal")),
+        Integer.parseInt(System.getProperty(GWT_LOG_JOURNAL_SEGMENT_SIZE_PREFERENCE,
+            "" + 64 * 1024 * 1024)), TimeUnit.MINUTES.toMillis(Integer.parseInt(
+            System.getProperty(GWT_LOG_JOURNAL_INDEX_PARTITION_PREFERENCE, "60"))));
+    Runtime.getRuntime().addShutdownHook(new Thread("gwt-log journal shutdown") {
+      @Override
+      public void run() {
+        close();
+      }
+    });
+  }
+
+  ServerLogImplJournal(Path dir, int segmentSize, long indexPartitionMillis) throws IOException {
+    this.dir = dir;
+    this.segmentSize = segmentSize;
+    Files.createDirectories(dir);
+    // index any records which were journaled, but not indexed, before the last shutdown
+    index = indexPartitionMillis > 0 ? new JournalIndex(dir, indexPartitionMillis) : null;
+    long lastCreatedMillis = -1;
+    List<Path> segments = listSegments(dir);
+    if (!segments.isEmpty()) {
+      lastCreatedMillis = parseSegmentName(
+          segments.get(segments.size() - 1).getFileName().toString());
+    }
+    // never append to segments left by a previous process
+    current = createSegment(lastCreatedMillis);
+  }
+
+  @Override
+  public int getCurrentLogLevel() {
+    return level;
+  }
+
+  /**
+   * Retrieve the index of this journal.
+   *
+   * @return the index, or null if indexing is disabled
+   */
+  public JournalIndex getIndex() {
+    return index;
+  }
+
+  /**
+   * Retrieve the number of records which were not journaled, because they did not fit in a segment
+   * or a segment could not be created.
+   *
+   * @return the number of dropped records
+   */
+  @Override
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * Records are written by the logging thread, so there is never a queue.
+   *
+   * @return 0
+   */
+  @Override
+  public int getQueueDepth() {
+    return 0;
+  }
+
+  @Override
+  public boolean isDebugEnabled() {
+    return level <= Log.LOG_LEVEL_DEBUG;
+  }
+
+  @Override
+  public boolean isEnabled(String category, int gwtLogLevel) {
+    return level <= gwtLogLevel && gwtLogLevel < Log.LOG_LEVEL_OFF;
+  }
+
+  @Override
+  public boolean isErrorEnabled() {
+    return level <= Log.LOG_LEVEL_ERROR;
+  }
+
+  @Override
+  public boolean isFatalEnabled() {
+    return level <= Log.LOG_LEVEL_FATAL;
+  }
+
+  @Override
+  public boolean isInfoEnabled() {
+    return level <= Log.LOG_LEVEL_INFO;
+  }
+
+  @Override
+  public boolean isLoggingEnabled() {
+    return level < Log.LOG_LEVEL_OFF;
+  }
+
+  @Override
+  public boolean isTraceEnabled() {
+    return level <= Log.LOG_LEVEL_TRACE;
+  }
+
+  @Override
+  public boolean isWarnEnabled() {
+    return level <= Log.LOG_LEVEL_WARN;
+  }
+
+  @Override
+  public void log(LogRecord record) {
+    if (record.getLevel() < level) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    byte[] category = encode(record.getCategory());
+    byte[] message = encode(record.getMessage());
+    Throwable throwable = record.getThrowable();
+    byte[] throwableText = throwable == null ? NULL_STRING
+        : encode(LogUtil.stackTraceToString(throwable));
+    HashMap<String, String> attributes = new HashMap<String, String>();
+    for (Entry<String, String> entry : record.getContextEntrySet()) {
+      attributes.put(entry.getKey(), entry.getValue());
+    }
+    for (Entry<String, String> entry : record.getMapEntrySet()) {
+      attributes.put(entry.getKey(), entry.getValue());
+    }
+    byte[][] attributeBytes = new byte[attributes.size() * 2][];
+    int payloadSize = FIXED_PAYLOAD_SIZE + encodedSize(category) + encodedSize(message)
+        + encodedSize(throwableText);
+    int i = 0;
+    for (Entry<String, String> entry : attributes.entrySet()) {
+      attributeBytes[i] = encode(entry.getKey());
+      attributeBytes[i + 1] = encode(entry.getValue());
+      payloadSize += encodedSize(attributeBytes[i]) + encodedSize(attributeBytes[i + 1]);
+      i += 2;
+    }
+
+    int size = align(HEADER_SIZE + payloadSize);
+    if (size > segmentSize) {
+      dropped.incrementAndGet();
+      return;
+    }
+    Segment segment;
+    int position;
+    while (true) {
+      segment = current;
+      position = segment.position.getAndAdd(size);
+      if (position >= 0 && position <= segmentSize - size) {
+        break;
+      }
+      // the first overflowing writer replaces the segment, while the others wait for it
+      if (!roll(segment)) {
+        dropped.incrementAndGet();
+        return;
+      }
+    }
+
+    // reserve: the length makes the record walkable before its contents are written
+    ByteBuffer segmentBuf = segment.buffer.duplicate();
+    segmentBuf.putInt(position, payloadSize);
+
+    ByteBuffer buf = ByteBuffer.allocate(payloadSize);
+    // segments are created in order, so this keeps ingest times ordered by segment
+    long ingest = Math.max(now, segment.createdMillis);
+    buf.putLong(ingest);
+    buf.putLong(record.getTimestamp());
+    buf.putInt(record.getLevel());
+    buf.putInt(record.getRecordSequence());
+    put(buf, category);
+    put(buf, message);
+    put(buf, throwableText);
+    buf.putInt(attributes.size());
+    for (byte[] bytes : attributeBytes) {
+      put(buf, bytes);
+    }
+
+    segmentBuf.position(position + HEADER_SIZE);
+    segmentBuf.put(buf.array());
+
+    // commit
+    CRC32 crc = new CRC32();
+    crc.update(buf.array());
+    segmentBuf.putInt(position + 4, (int) crc.getValue());
+
+    if (index != null) {
+      index.add(segment.createdMillis, position, ingest, record.getLevel(), record.getCategory(),
+          attributes);
+    }
+  }
+
+  @Override
+  public int mapGWTLogLevelToImplLevel(int gwtLogLevel) {
+    return gwtLogLevel;
+  }
+
+  @Override
+  public void setCurrentImplLogLevel(int level) {
+    this.level = level;
+  }
+
+  /**
+   * Force the current segment to disk and seal the index.
+   */
+  @Override
+  public void close() {
+    current.buffer.force();
+    if (index != null) {
+      try {
+        index.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  private Segment createSegment(long previousCreatedMillis) throws IOException {
+    // segment names, and hence their creation times, must be unique and ascending
+    long createdMillis = Math.max(System.currentTimeMillis(), previousCreatedMillis + 1);
+    Path path = dir.resolve(segmentName(createdMillis));
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // the mapping remains valid after the channel is closed
+      return new Segment(channel.map(MapMode.READ_WRITE, 0, segmentSize), createdMillis);
+    }
+  }
+
+  private synchronized boolean roll(Segment full) {
+    if (current != full) {
+      return true;
+    }
+    try {
+      current = createSegment(full.createdMillis);
+    } catch (IOException e) {
+      // Unexpected
+      e.printStackTrace();
+      return false;
+    }
+    // writers which reserved space in the full segment may still be writing; their records are
+    // forced when the journal is closed, or by the operating system
+    full.buffer.force();
+    return true;
+  }
+}
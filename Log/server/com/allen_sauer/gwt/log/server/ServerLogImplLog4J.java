@@ -15,17 +15,51 @@
  */
 package com.allen_sauer.gwt.log.server;
 
+import com.allen_sauer.gwt.log.client.Log;
 import com.allen_sauer.gwt.log.shared.LogRecord;
 
+import org.apache.log4j.Category;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.apache.log4j.MDC;
+import org.apache.log4j.NDC;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.ThrowableInformation;
 
-import java.util.Set;
+import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.Map.Entry;
 
 // CHECKSTYLE_JAVADOC_OFF
 public final class ServerLogImplLog4J implements ServerLog {
+  /**
+   * Log4J 1.2 has no parameterized messages, but does accept any message object, which it only
+   * renders when an appender needs the text.
+   */
+  private static final class ParameterizedMessage {
+    private final LogRecord record;
+
+    ParameterizedMessage(LogRecord record) {
+      this.record = record;
+    }
+
+    @Override
+    public String toString() {
+      return record.getMessage();
+    }
+  }
+
+  private final CategoryLoggerCache<Logger> categoryLoggers = new CategoryLoggerCache<Logger>() {
+    @Override
+    Logger create(String category) {
+      return Logger.getLogger(category);
+    }
+
+    @Override
+    Logger fallback() {
+      return logger;
+    }
+  };
   private final Logger logger;
 
   {
@@ -42,6 +76,12 @@ public final class ServerLogImplLog4J implements ServerLog {
     return logger.isDebugEnabled();
   }
 
+  @Override
+  public boolean isEnabled(String category, int gwtLogLevel) {
+    return gwtLogLevel < Log.LOG_LEVEL_OFF && isEnabled(getLogger(category),
+        Level.toLevel(mapGWTLogLevelToImplLevel(gwtLogLevel)));
+  }
+
   @Override
   public boolean isErrorEnabled() {
     return logger.isEnabledFor(Level.ERROR);
@@ -74,15 +114,31 @@ public final class ServerLogImplLog4J implements ServerLog {
 
   @Override
   public void log(LogRecord record) {
-    Set<Entry<String, String>> set = record.getMapEntrySet();
-    for (Entry<String, String> entry : set) {
-      MDC.put(entry.getKey(), entry.getValue());
+    Logger log = getLogger(record.getCategory());
+    Level level = Level.toLevel(mapGWTLogLevelToImplLevel(record.getLevel()));
+    if (!isEnabled(log, level)) {
+      return;
+    }
+    // hand the event its own MDC in one go, rather than putting and removing each entry
+    HashMap<String, Object> mdc = new HashMap<String, Object>();
+    Hashtable<?, ?> threadMdc = MDC.getContext();
+    if (threadMdc != null) {
+      for (Entry<?, ?> entry : threadMdc.entrySet()) {
+        mdc.put((String) entry.getKey(), entry.getValue());
+      }
+    }
+    for (Entry<String, String> entry : record.getContextEntrySet()) {
+      mdc.put(entry.getKey(), entry.getValue());
     }
-    logger.log(Level.toLevel(mapGWTLogLevelToImplLevel(record.getLevel())), record.getMessage(),
-        record.getThrowable());
-    for (Entry<String, String> entry : set) {
-      MDC.remove(entry.getKey());
+    for (Entry<String, String> entry : record.getMapEntrySet()) {
+      mdc.put(entry.getKey(), entry.getValue());
     }
+    Throwable throwable = record.getThrowable();
+    // preserve the time at which the record was originally logged
+    log.callAppenders(new LoggingEvent(Category.class.getName(), log, record.getTimestamp(),
+        level, record.getMessagePattern() == null ? record.getMessage()
+            : new ParameterizedMessage(record), Thread.currentThread().getName(),
+        throwable == null ? null : new ThrowableInformation(throwable), NDC.get(), null, mdc));
   }
 
   @Override
@@ -95,4 +151,15 @@ public final class ServerLogImplLog4J implements ServerLog {
     logger.setLevel(Level.toLevel(level));
   }
 
+  private Logger getLogger(String category) {
+    if (category == null) {
+      return logger;
+    }
+    return categoryLoggers.get(category);
+  }
+
+  private boolean isEnabled(Logger log, Level level) {
+    return !log.getLoggerRepository().isDisabled(level.toInt())
+        && level.isGreaterOrEqual(log.getEffectiveLevel());
+  }
 }
@@ -20,9 +20,25 @@ import com.allen_sauer.gwt.log.shared.LogRecord;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 
 //CHECKSTYLE_JAVADOC_OFF
 public final class ServerLogImplSLF4J implements ServerLog {
+  private final CategoryLoggerCache<Logger> categoryLoggers = new CategoryLoggerCache<Logger>() {
+    @Override
+    Logger create(String category) {
+      return LoggerFactory.getLogger(category);
+    }
+
+    @Override
+    Logger fallback() {
+      return logger;
+    }
+  };
   private final Logger logger;
 
   {
@@ -42,6 +58,11 @@ public final class ServerLogImplSLF4J implements ServerLog {
     return logger.isDebugEnabled();
   }
 
+  @Override
+  public boolean isEnabled(String category, int gwtLogLevel) {
+    return gwtLogLevel < Log.LOG_LEVEL_OFF && isEnabled(getLogger(category), gwtLogLevel);
+  }
+
   @Override
   public boolean isErrorEnabled() {
     return logger.isErrorEnabled();
@@ -74,37 +95,122 @@ public final class ServerLogImplSLF4J implements ServerLog {
 
   @Override
   public void log(LogRecord record) {
+    if (record.getLevel() == Log.LOG_LEVEL_OFF) {
+      return;
+    }
+    Logger log = getLogger(record.getCategory());
+    if (!isEnabled(log, record.getLevel())) {
+      return;
+    }
+    // replace the MDC once per record, rather than putting and restoring each entry; request
+    // threads usually have no MDC of their own, in which case nothing needs to be copied
+    Map<String, String> previous = MDC.getCopyOfContextMap();
+    if (previous != null && previous.isEmpty()) {
+      previous = null;
+    }
+    HashMap<String, String> mdc = previous == null ? new HashMap<String, String>()
+        : new HashMap<String, String>(previous);
+    for (Entry<String, String> entry : record.getContextEntrySet()) {
+      mdc.put(entry.getKey(), entry.getValue());
+    }
+    for (Entry<String, String> entry : record.getMapEntrySet()) {
+      mdc.put(entry.getKey(), entry.getValue());
+    }
+    MDC.setContextMap(mdc);
+    try {
+      log(log, record);
+    } finally {
+      if (previous == null) {
+        MDC.clear();
+      } else {
+        MDC.setContextMap(previous);
+      }
+    }
+  }
+
+  @Override
+  public int mapGWTLogLevelToImplLevel(int level) {
+    return level;
+  }
+
+  @Override
+  public void setCurrentImplLogLevel(int level) {
+    logger.warn("Ignoring attempt to set implementation log level to " + level);
+  }
+
+  private Logger getLogger(String category) {
+    if (category == null) {
+      return logger;
+    }
+    return categoryLoggers.get(category);
+  }
+
+  private boolean isEnabled(Logger log, int level) {
+    switch (level) {
+      case Log.LOG_LEVEL_ERROR:
+      case Log.LOG_LEVEL_FATAL:
+        return log.isErrorEnabled();
+      case Log.LOG_LEVEL_WARN:
+        return log.isWarnEnabled();
+      case Log.LOG_LEVEL_INFO:
+        return log.isInfoEnabled();
+      case Log.LOG_LEVEL_DEBUG:
+        return log.isDebugEnabled();
+      case Log.LOG_LEVEL_TRACE:
+        return log.isTraceEnabled();
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
+
+  private void log(Logger log, LogRecord record) {
+    if (record.getMessagePattern() != null) {
+      // let SLF4J format the message, and pick out a trailing throwable argument, itself
+      logParameterized(log, record.getLevel(), record.getMessagePattern(), record.getArguments());
+      return;
+    }
     switch (record.getLevel()) {
-      case Log.LOG_LEVEL_OFF:
-        return;
       case Log.LOG_LEVEL_ERROR:
       case Log.LOG_LEVEL_FATAL:
-        logger.error(record.getMessage(), record.getThrowable());
+        log.error(record.getMessage(), record.getThrowable());
         return;
       case Log.LOG_LEVEL_WARN:
-        logger.warn(record.getMessage(), record.getThrowable());
+        log.warn(record.getMessage(), record.getThrowable());
         return;
       case Log.LOG_LEVEL_INFO:
-        logger.info(record.getMessage(), record.getThrowable());
+        log.info(record.getMessage(), record.getThrowable());
         return;
       case Log.LOG_LEVEL_DEBUG:
-        logger.debug(record.getMessage(), record.getThrowable());
+        log.debug(record.getMessage(), record.getThrowable());
         return;
       case Log.LOG_LEVEL_TRACE:
-        logger.trace(record.getMessage(), record.getThrowable());
+        log.trace(record.getMessage(), record.getThrowable());
         return;
       default:
         throw new IllegalArgumentException();
     }
   }
 
-  @Override
-  public int mapGWTLogLevelToImplLevel(int level) {
-    return level;
-  }
-
-  @Override
-  public void setCurrentImplLogLevel(int level) {
-    logger.warn("Ignoring attempt to set implementation log level to " + level);
+  private void logParameterized(Logger log, int level, String messagePattern, Object[] arguments) {
+    switch (level) {
+      case Log.LOG_LEVEL_ERROR:
+      case Log.LOG_LEVEL_FATAL:
+        log.error(messagePattern, arguments);
+        return;
+      case Log.LOG_LEVEL_WARN:
+        log.warn(messagePattern, arguments);
+        return;
+      case Log.LOG_LEVEL_INFO:
+        log.info(messagePattern, arguments);
+        return;
+      case Log.LOG_LEVEL_DEBUG:
+        log.debug(messagePattern, arguments);
+        return;
+      case Log.LOG_LEVEL_TRACE:
+        log.trace(messagePattern, arguments);
+        return;
+      default:
+        throw new IllegalArgumentException();
+    }
   }
 }
@@ -18,6 +18,17 @@ import com.allen_sauer.gwt.log.shared.LogRecord;
 
 // CHECKSTYLE_JAVADOC_OFF
 public final class ServerLogImplStdio implements ServerLog {
+  private static final String DEFAULT_PATTERN = "%m%n";
+
+  /**
+   * System property which specifies the {@link PatternLayout} pattern.
+   */
+  public static final String GWT_LOG_PATTERN_PREFERENCE = "gwt-log.pattern";
+
+  private final StringBuilder buf = new StringBuilder();
+
+  private final PatternLayout layout = new PatternLayout(System.getProperty(
+      GWT_LOG_PATTERN_PREFERENCE, DEFAULT_PATTERN));
 
   private int level;
 
@@ -28,42 +39,49 @@ public final class ServerLogImplStdio implements ServerLog {
 
   @Override
   public boolean isDebugEnabled() {
-    return level >= Log.LOG_LEVEL_DEBUG;
+    return level <= Log.LOG_LEVEL_DEBUG;
+  }
+
+  @Override
+  public boolean isEnabled(String category, int gwtLogLevel) {
+    return level <= gwtLogLevel && gwtLogLevel < Log.LOG_LEVEL_OFF;
   }
 
   @Override
   public boolean isErrorEnabled() {
-    return level >= Log.LOG_LEVEL_ERROR;
+    return level <= Log.LOG_LEVEL_ERROR;
   }
 
   @Override
   public boolean isFatalEnabled() {
-    return level >= Log.LOG_LEVEL_FATAL;
+    return level <= Log.LOG_LEVEL_FATAL;
   }
 
   @Override
   public boolean isInfoEnabled() {
-    return level >= Log.LOG_LEVEL_INFO;
+    return level <= Log.LOG_LEVEL_INFO;
   }
 
   @Override
   public boolean isLoggingEnabled() {
-    return level >= Log.LOG_LEVEL_OFF;
+    return level < Log.LOG_LEVEL_OFF;
   }
 
   @Override
   public boolean isTraceEnabled() {
-    return level >= Log.LOG_LEVEL_TRACE;
+    return level <= Log.LOG_LEVEL_TRACE;
   }
 
   @Override
   public boolean isWarnEnabled() {
-    return level >= Log.LOG_LEVEL_WARN;
+    return level <= Log.LOG_LEVEL_WARN;
   }
 
   @Override
-  public void log(LogRecord record) {
-    System.err.println(record.getMessage());
+  public synchronized void log(LogRecord record) {
+    buf.setLength(0);
+    layout.format(record, buf);
+    System.err.append(buf);
     Throwable e = record.getThrowable();
     if (e != null) {
       e.printStackTrace();
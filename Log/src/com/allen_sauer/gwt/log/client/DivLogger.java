@@ -16,6 +16,9 @@ package com.allen_sauer.gwt.log.client;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.dom.client.DivElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Style.Unit;
 import com.google.gwt.dom.client.Style.Visibility;
 import com.google.gwt.event.dom.client.ClickEvent;
@@ -50,7 +53,10 @@ import com.allen_sauer.gwt.log.client.util.DOMUtil;
 import com.allen_sauer.gwt.log.shared.LogRecord;
 
 /**
- * Logger which outputs to a draggable floating <code>DIV</code>.
+ * Logger which outputs to a draggable floating <code>DIV</code>. The most recent
+ * {@link #getCapacity()} records are retained; records are buffered in a ring and appended to the
+ * panel as individual rows in periodic batches, so a burst exceeding the capacity never creates DOM
+ * for records that would immediately be evicted.
  */
 public class DivLogger implements Logger {
   // CHECKSTYLE_JAVADOC_OFF
@@ -191,18 +197,32 @@ public class DivLogger implements Logger {
   private static final int[] levels = {
       Log.LOG_LEVEL_TRACE, Log.LOG_LEVEL_DEBUG, Log.LOG_LEVEL_INFO, Log.LOG_LEVEL_WARN,
       Log.LOG_LEVEL_ERROR, Log.LOG_LEVEL_FATAL, Log.LOG_LEVEL_OFF,};
+  private static final int DEFAULT_CAPACITY = 1000;
   private static final int MAX_VERTICAL_SCROLL = 0x6666666;
 
-  private static final String STACKTRACE_ELEMENT_PREFIX = "&nbsp;&nbsp;&nbsp;&nbsp;at&nbsp;";
   private static final int UPDATE_INTERVAL_MILLIS = 500;
+  private int capacity = DEFAULT_CAPACITY;
   private boolean dirty = false;
   private Button[] levelButtons;
 
   private final LogDockPanel logDockPanel = new LogDockPanel();
-  private String logText = "";
 
   private final HTML logTextArea = new HTML();
 
+  /**
+   * Ring buffer of records which have been logged but not yet rendered.
+   */
+  private LogRecord[] pendingRecords = new LogRecord[capacity];
+
+  private int pendingCount;
+
+  private int pendingStart;
+
+  /**
+   * Reused for the HTML of each row.
+   */
+  private final StringBuilder rowHtml = new StringBuilder();
+
   private final ScrollPanelImpl scrollPanel = new ScrollPanelImpl();
   private final Timer timer;
 
@@ -234,8 +254,7 @@ public class DivLogger implements Logger {
       @Override
       public void run() {
         dirty = false;
-        logTextArea.setHTML(logTextArea.getHTML() + logText);
-        logText = "";
+        renderPendingRecords();
         Scheduler.get().scheduleDeferred(new ScheduledCommand() {
           @Override
           public void execute() {
@@ -248,9 +267,19 @@ public class DivLogger implements Logger {
 
   @Override
   public final void clear() {
+    clearPendingRecords();
     logTextArea.setHTML("");
   }
 
+  /**
+   * Retrieve the maximum number of records retained by the panel.
+   * 
+   * @return the maximum number of records
+   */
+  public final int getCapacity() {
+    return capacity;
+  }
+
   public final Widget getWidget() {
     return logDockPanel;
   }
@@ -266,36 +295,18 @@ public class DivLogger implements Logger {
 
   @Override
   public void log(LogRecord record) {
-    String text = record.getFormattedMessage().replaceAll("<", "&lt;").replaceAll(">", "&gt;");
-    String title = makeTitle(record);
-    Throwable throwable = record.getThrowable();
-    if (throwable != null) {
-      while (throwable != null) {
-        /*
-         * Use throwable.toString() and not throwable.getClass().getName() and
-         * throwable.getMessage(), so that instances of UnwrappedClientThrowable, when stack trace
-         * deobfuscation is enabled) display properly
-         */
-        text += "<b>" + throwable.toString() + "</b>";
-        StackTraceElement[] stackTraceElements = throwable.getStackTrace();
-        if (stackTraceElements.length > 0) {
-          text += "<div class='log-stacktrace'>";
-          for (StackTraceElement element : stackTraceElements) {
-            text += STACKTRACE_ELEMENT_PREFIX + element + "<br>";
-          }
-          text += "</div>";
-        }
-        throwable = throwable.getCause();
-        if (throwable != null) {
-          text += "Caused by: ";
-        }
-      }
+    if (pendingCount == capacity) {
+      // overwrite the oldest record, which would be evicted before it could be seen
+      pendingRecords[pendingStart] = record;
+      pendingStart = (pendingStart + 1) % capacity;
+    } else {
+      pendingRecords[(pendingStart + pendingCount) % capacity] = record;
+      pendingCount++;
+    }
+    if (!dirty) {
+      dirty = true;
+      timer.schedule(UPDATE_INTERVAL_MILLIS);
     }
-    text = text.replaceAll("\r\n|\r|\n", "<BR>");
-    addLogText("<div class='" + LogClientBundle.INSTANCE.css().logMessage()
-        + "' onmouseover='className+=\" log-message-hover\"' "
-        + "onmouseout='className=className.replace(/ log-message-hover/g,\"\")' style='color: "
-        + getColor(record.getLevel()) + "' title='" + title + "'>" + text + "</div>");
 
     // Intended to run the first time a message is logged
     if (!logDockPanel.isAttached()) {
@@ -333,6 +344,27 @@ public class DivLogger implements Logger {
     }
   }
 
+  /**
+   * Set the maximum number of records retained by the panel. Older records are discarded.
+   * 
+   * @param capacity the maximum number of records, at least 1
+   */
+  public final void setCapacity(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be at least 1");
+    }
+    LogRecord[] records = new LogRecord[capacity];
+    int keep = Math.min(pendingCount, capacity);
+    for (int i = 0; i < keep; i++) {
+      records[i] = pendingRecords[(pendingStart + pendingCount - keep + i) % this.capacity];
+    }
+    this.capacity = capacity;
+    pendingRecords = records;
+    pendingStart = 0;
+    pendingCount = keep;
+    trimRows();
+  }
+
   /**
    * Set explicit size of log scroll panel area.
    * 
@@ -353,12 +385,12 @@ public class DivLogger implements Logger {
     scrollPanel.setSize(width, height);
   }
 
-  private void addLogText(String logTest) {
-    logText += logTest;
-    if (!dirty) {
-      dirty = true;
-      timer.schedule(UPDATE_INTERVAL_MILLIS);
+  private void clearPendingRecords() {
+    for (int i = 0; i < pendingRecords.length; i++) {
+      pendingRecords[i] = null;
     }
+    pendingStart = 0;
+    pendingCount = 0;
   }
 
   private void ensureInitialized() {
@@ -468,19 +500,45 @@ public class DivLogger implements Logger {
     return header;
   }
 
-  private String makeTitle(LogRecord record) {
+  private Element makeRow(LogRecord record) {
     String message = record.getFormattedMessage();
     Throwable throwable = record.getThrowable();
-    if (throwable != null) {
-      if (throwable.getMessage() == null) {
-        message = throwable.getClass().getName();
-      } else {
-        message = throwable.getMessage().replaceAll(
-            throwable.getClass().getName().replaceAll("^(.+\\.).+$", "$1"), "");
-      }
+    rowHtml.setLength(0);
+    LogUtil.appendEscapedHtml(rowHtml, message);
+    LogUtil.appendStackTraceHtml(rowHtml, throwable);
+
+    DivElement row = Document.get().createDivElement();
+    row.setClassName(LogClientBundle.INSTANCE.css().logMessage());
+    row.getStyle().setColor(getColor(record.getLevel()));
+    // set as a DOM property, so no HTML escaping is required
+    row.setTitle(DOMUtil.adjustTitleLineBreaks(LogUtil.formatTitle(message, throwable)));
+    row.setInnerHTML(rowHtml.toString());
+    return row;
+  }
+
+  /**
+   * Append rows for the pending records, without reserializing the existing log contents.
+   */
+  private void renderPendingRecords() {
+    Element container = logTextArea.getElement();
+    for (int i = 0; i < pendingCount; i++) {
+      int index = (pendingStart + i) % capacity;
+      container.appendChild(makeRow(pendingRecords[index]));
+      pendingRecords[index] = null;
+    }
+    pendingStart = 0;
+    pendingCount = 0;
+    trimRows();
+  }
+
+  /**
+   * Remove the oldest rows beyond the current capacity.
+   */
+  private void trimRows() {
+    Element container = logTextArea.getElement();
+    for (int excess = container.getChildCount() - capacity; excess > 0; excess--) {
+      container.removeChild(container.getFirstChild());
     }
-    return DOMUtil.adjustTitleLineBreaks(message).replaceAll("<", "&lt;").replaceAll(">", "&gt;").replaceAll(
-        "'", "\"");
   }
 
 }
\ No newline at end of file
@@ -13,6 +13,8 @@
  */
 package com.allen_sauer.gwt.log.client;
 
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
 /**
  * Interface for deferred binding generator.
  */
@@ -27,4 +29,13 @@ public interface LogMessageFormatter {
    * @return a formatted message using the 'log_pattern' pattern
    */
   String format(String logLevelText, String category, String message, Throwable throwable);
+
+  /**
+   * Format a log record, including its timestamp and any values associated with it.
+   * 
+   * @param record the record to format
+   * @param callerThrowable the exception used to determine the location of the caller, or null
+   * @return a formatted message using the 'log_pattern' pattern
+   */
+  String format(LogRecord record, Throwable callerThrowable);
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.client;
+
+/**
+ * Produces a log message only once the level at which it is logged is known to be enabled, so
+ * that building the message costs nothing when it is not, e.g.
+ * 
+ * <pre>
+ * Log.debugLazy(new LogMessageSupplier() {
+ *   public String get() {
+ *     return &quot;model=&quot; + model.dump();
+ *   }
+ * });
+ * </pre>
+ * 
+ * When the compile time <code>log_level</code> disables the level, the GWT compiler removes the
+ * call, the supplier and everything it references.
+ */
+public interface LogMessageSupplier {
+  /**
+   * Produce the message.
+   * 
+   * @return the text to be logged
+   */
+  String get();
+}
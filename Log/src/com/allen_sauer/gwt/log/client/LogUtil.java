@@ -15,7 +15,14 @@ package com.allen_sauer.gwt.log.client;
 
 import com.google.gwt.i18n.client.DateTimeFormat;
 
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 // CHECKSTYLE_JAVADOC_OFF
 public class LogUtil {
@@ -34,6 +41,8 @@ public class LogUtil {
 
   private static final String SPACES;
 
+  private static final String STACKTRACE_ELEMENT_PREFIX = "&nbsp;&nbsp;&nbsp;&nbsp;at&nbsp;";
+
   static {
     StringBuffer b = new StringBuffer();
     for (int i = 0; i < 500; i++) {
@@ -42,6 +51,50 @@ public class LogUtil {
     SPACES = b.toString();
   }
 
+  /**
+   * Append text, escaped for use within a quoted HTML attribute value, in a single pass.
+   */
+  public static void appendEscapedAttribute(StringBuilder html, String text) {
+    appendEscaped(html, text, false);
+  }
+
+  /**
+   * Append text, escaped for use as HTML element content, in a single pass. Line breaks are
+   * rendered as <code>&lt;br&gt;</code>.
+   */
+  public static void appendEscapedHtml(StringBuilder html, String text) {
+    appendEscaped(html, text, true);
+  }
+
+  /**
+   * Append the HTML rendering of a throwable and its causes, as displayed by the UI loggers.
+   */
+  public static void appendStackTraceHtml(StringBuilder html, Throwable throwable) {
+    while (throwable != null) {
+      /* Use throwable.toString() and not throwable.getClass().getName() and
+       * throwable.getMessage(), so that instances of UnwrappedClientThrowable, when stack trace
+       * deobfuscation is enabled) display properly
+       */
+      html.append("<b>");
+      appendEscapedHtml(html, throwable.toString());
+      html.append("</b>");
+      StackTraceElement[] stackTraceElements = throwable.getStackTrace();
+      if (stackTraceElements.length > 0) {
+        html.append("<div class='log-stacktrace'>");
+        for (StackTraceElement element : stackTraceElements) {
+          html.append(STACKTRACE_ELEMENT_PREFIX);
+          appendEscapedHtml(html, element.toString());
+          html.append("<br>");
+        }
+        html.append("</div>");
+      }
+      throwable = throwable.getCause();
+      if (throwable != null) {
+        html.append("Caused by: ");
+      }
+    }
+  }
+
   /**
    * Helper method used by {@link com.allen_sauer.gwt.log.rebind.LogMessageFormatterGenerator}.
    * For example, the category <code>com.example.foo.MyClass</code> with precision 2 will result in
@@ -59,13 +112,76 @@ public class LogUtil {
   }
 
   /**
-   * Helper method used by {@link com.allen_sauer.gwt.log.rebind.LogMessageFormatterGenerator}
+   * Format a date using the supplied {@link DateTimeFormat} pattern. Generated formatters do not
+   * call this method, but instead keep a precompiled format for each date pattern.
    */
   public static String formatDate(Date date, String formatMask) {
-    // TODO don't instantiate a new DateTimeFormat each time this method is called
     return DateTimeFormat.getFormat(formatMask).format(date);
   }
 
+  /**
+   * Format an SLF4J style parameterized message, replacing each <code>{}</code> placeholder with
+   * the next argument. A placeholder preceded by a backslash is kept literally, unless the
+   * backslash is itself escaped. Surplus arguments are ignored, as are placeholders once the
+   * arguments run out.
+   * 
+   * @param messagePattern the message, with <code>{}</code> placeholders
+   * @param arguments the values of the placeholders, or null
+   * @return the formatted message
+   */
+  public static String formatMessage(String messagePattern, Object[] arguments) {
+    if (messagePattern == null || arguments == null || arguments.length == 0) {
+      return messagePattern;
+    }
+    StringBuilder buf = new StringBuilder(messagePattern.length() + 16 * arguments.length);
+    substitute(messagePattern, arguments, buf);
+    return buf.toString();
+  }
+
+  /**
+   * Raw (unescaped) tooltip text for a log message: the message itself, or if there is a throwable,
+   * its message with the package name of the throwable class removed.
+   */
+  public static String formatTitle(String message, Throwable throwable) {
+    if (throwable == null) {
+      return message;
+    }
+    String throwableMessage = throwable.getMessage();
+    String className = throwable.getClass().getName();
+    if (throwableMessage == null) {
+      return className;
+    }
+    String packagePrefix = className.substring(0, className.lastIndexOf('.') + 1);
+    if (packagePrefix.length() == 0) {
+      return throwableMessage;
+    }
+    int pos = throwableMessage.indexOf(packagePrefix);
+    if (pos == -1) {
+      return throwableMessage;
+    }
+    StringBuilder title = new StringBuilder(throwableMessage.length());
+    int start = 0;
+    while (pos != -1) {
+      title.append(throwableMessage, start, pos);
+      start = pos + packagePrefix.length();
+      pos = throwableMessage.indexOf(packagePrefix, start);
+    }
+    title.append(throwableMessage, start, throwableMessage.length());
+    return title.toString();
+  }
+
+  /**
+   * Helper method used by {@link com.allen_sauer.gwt.log.rebind.LogMessageFormatterGenerator} for
+   * <code>%X{key}</code>.
+   * 
+   * @return the value associated with the key in the record or its diagnostic context, or an empty
+   *         string
+   */
+  public static String getContextValue(LogRecord record, String key) {
+    String value = record == null ? null : record.get(key);
+    return value == null ? "" : value;
+  }
+
   /**
    * @param throwable optional exception
    * @return the calling stack trace element
@@ -94,6 +210,23 @@ public class LogUtil {
         -1);
   }
 
+  /**
+   * Determine the exception of a parameterized message. As with SLF4J, this is the last argument if
+   * it is a {@link Throwable} which no placeholder consumes.
+   * 
+   * @param messagePattern the message, with <code>{}</code> placeholders
+   * @param arguments the values of the placeholders, or null
+   * @return the exception, or null
+   */
+  public static Throwable getThrowableCandidate(String messagePattern, Object[] arguments) {
+    if (messagePattern == null || arguments == null || arguments.length == 0
+        || !(arguments[arguments.length - 1] instanceof Throwable)) {
+      return null;
+    }
+    return substitute(messagePattern, arguments, null) < arguments.length
+        ? (Throwable) arguments[arguments.length - 1] : null;
+  }
+
   public static String levelToString(int level) {
     switch (level) {
       case Log.LOG_LEVEL_TRACE:
@@ -115,39 +248,75 @@ public class LogUtil {
     }
   }
 
+  /**
+   * Right justify the text appended to the builder since <code>start</code>, in place.
+   */
+  public static void padLeft(StringBuilder buf, int start, int minLength) {
+    for (int pad = minLength - (buf.length() - start); pad > 0; pad -= SPACES.length()) {
+      buf.insert(start, SPACES, 0, Math.min(pad, SPACES.length()));
+    }
+  }
+
   public static String padLeft(String text, int minLength) {
     int len = text.length();
     return len < minLength ? SPACES.substring(0, minLength - len) + text : text;
   }
 
+  /**
+   * Left justify the text appended to the builder since <code>start</code>, in place.
+   */
+  public static void padRight(StringBuilder buf, int start, int minLength) {
+    for (int pad = minLength - (buf.length() - start); pad > 0; pad -= SPACES.length()) {
+      buf.append(SPACES, 0, Math.min(pad, SPACES.length()));
+    }
+  }
+
   public static String padRight(String text, int minLength) {
     int len = text.length();
     return len < minLength ? text + SPACES.substring(0, minLength - len) : text;
   }
 
-  // TODO move DivLogger/WindowLogger stack trace formatting to this class
+  /**
+   * Parse log levels in the <code>log_level</code> URL parameter syntax, a comma separated list of
+   * a level and <code>category=level</code> settings, e.g. <code>WARN,com.acme.grid=TRACE</code>.
+   * 
+   * @param levels the log levels
+   * @return the levels keyed by category, with the level for all other categories under the
+   *         <code>null</code> key
+   * @throws IllegalArgumentException if a level is not recognized
+   */
+  public static Map<String, Integer> parseLogLevels(String levels) {
+    LinkedHashMap<String, Integer> result = new LinkedHashMap<String, Integer>();
+    for (String setting : levels.split(",")) {
+      int equals = setting.indexOf('=');
+      if (equals != -1) {
+        result.put(setting.substring(0, equals).trim(),
+            stringToLevel(setting.substring(equals + 1).trim()));
+      } else if (setting.trim().length() > 0) {
+        result.put(null, stringToLevel(setting.trim()));
+      }
+    }
+    return result;
+  }
+
   public static String stackTraceToString(Throwable throwable) {
-    String text = "";
-    if (throwable != null) {
-      while (throwable != null) {
-        String text1 = "";
-        /* Use throwable.toString() and not throwable.getClass().getName() and
-         * throwable.getMessage(), so that instances of UnwrappedClientThrowable, when stack trace
-         * deobfuscation is enabled) display properly
-         */
-        text1 += throwable.toString() + "\n";
-        StackTraceElement[] stackTraceElements = throwable.getStackTrace();
-        for (StackTraceElement element : stackTraceElements) {
-          text1 += "    at " + element + "\n";
-        }
-        text += text1;
-        throwable = throwable.getCause();
-        if (throwable != null) {
-          text += "Caused by: ";
-        }
+    StringBuilder text = new StringBuilder();
+    while (throwable != null) {
+      /* Use throwable.toString() and not throwable.getClass().getName() and
+       * throwable.getMessage(), so that instances of UnwrappedClientThrowable, when stack trace
+       * deobfuscation is enabled) display properly
+       */
+      text.append(throwable.toString()).append('\n');
+      StackTraceElement[] stackTraceElements = throwable.getStackTrace();
+      for (StackTraceElement element : stackTraceElements) {
+        text.append("    at ").append(element).append('\n');
+      }
+      throwable = throwable.getCause();
+      if (throwable != null) {
+        text.append("Caused by: ");
       }
     }
-    return text;
+    return text.toString();
   }
 
   // TODO add support for numeric values
@@ -171,7 +340,139 @@ public class LogUtil {
     }
   }
 
+  /**
+   * Truncate the text appended to the builder since <code>start</code> to at most
+   * <code>maxLength</code> characters, in place.
+   */
+  public static void trim(StringBuilder buf, int start, int maxLength) {
+    if (buf.length() - start > maxLength) {
+      buf.setLength(start + maxLength);
+    }
+  }
+
   public static String trim(String text, int maxLength) {
-    return text.substring(0, maxLength);
+    return text.length() > maxLength ? text.substring(0, maxLength) : text;
+  }
+
+  private static void appendEscaped(StringBuilder html, String text, boolean convertLineBreaks) {
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '&':
+          html.append("&amp;");
+          break;
+        case '<':
+          html.append("&lt;");
+          break;
+        case '>':
+          html.append("&gt;");
+          break;
+        case '"':
+          html.append("&quot;");
+          break;
+        case '\'':
+          html.append("&#39;");
+          break;
+        case '\r':
+          if (!convertLineBreaks) {
+            html.append(c);
+            break;
+          }
+          if (i + 1 < length && text.charAt(i + 1) == '\n') {
+            i++;
+          }
+          html.append("<br>");
+          break;
+        case '\n':
+          html.append(convertLineBreaks ? "<br>" : "\n");
+          break;
+        default:
+          html.append(c);
+      }
+    }
+  }
+
+  /**
+   * Append an argument as SLF4J's <code>MessageFormatter</code> would, rendering primitive and
+   * nested arrays element by element, and an array which contains itself as <code>[...]</code>.
+   * 
+   * @param seen the arrays being rendered, or null at the outermost level
+   */
+  private static void appendArgument(StringBuilder buf, Object argument, Set<Object[]> seen) {
+    if (argument instanceof Object[]) {
+      Object[] array = (Object[]) argument;
+      if (seen == null) {
+        seen = new HashSet<Object[]>();
+      }
+      if (!seen.add(array)) {
+        buf.append("[...]");
+        return;
+      }
+      buf.append('[');
+      for (int i = 0; i < array.length; i++) {
+        if (i > 0) {
+          buf.append(", ");
+        }
+        appendArgument(buf, array[i], seen);
+      }
+      buf.append(']');
+      seen.remove(array);
+    } else if (argument instanceof boolean[]) {
+      buf.append(Arrays.toString((boolean[]) argument));
+    } else if (argument instanceof byte[]) {
+      buf.append(Arrays.toString((byte[]) argument));
+    } else if (argument instanceof char[]) {
+      buf.append(Arrays.toString((char[]) argument));
+    } else if (argument instanceof double[]) {
+      buf.append(Arrays.toString((double[]) argument));
+    } else if (argument instanceof float[]) {
+      buf.append(Arrays.toString((float[]) argument));
+    } else if (argument instanceof int[]) {
+      buf.append(Arrays.toString((int[]) argument));
+    } else if (argument instanceof long[]) {
+      buf.append(Arrays.toString((long[]) argument));
+    } else if (argument instanceof short[]) {
+      buf.append(Arrays.toString((short[]) argument));
+    } else {
+      try {
+        buf.append(String.valueOf(argument));
+      } catch (RuntimeException e) {
+        // a failing toString() must not prevent the message from being logged
+        buf.append("[FAILED toString()]");
+      }
+    }
+  }
+
+  /**
+   * Substitute the placeholders of a message pattern, or only count them if the buffer is null.
+   * 
+   * @return the number of arguments consumed
+   */
+  private static int substitute(String messagePattern, Object[] arguments, StringBuilder buf) {
+    int consumed = 0;
+    int start = 0;
+    int pos;
+    while (consumed < arguments.length && (pos = messagePattern.indexOf("{}", start)) != -1) {
+      boolean escaped = pos > 0 && messagePattern.charAt(pos - 1) == '\\';
+      boolean escapedBackslash = escaped && pos > 1 && messagePattern.charAt(pos - 2) == '\\';
+      if (buf != null) {
+        // drop the escaping backslash
+        buf.append(messagePattern, start, escaped ? pos - 1 : pos);
+        if (escaped && !escapedBackslash) {
+          buf.append("{}");
+        } else {
+          appendArgument(buf, arguments[consumed], null);
+        }
+      }
+      if (!escaped || escapedBackslash) {
+        consumed++;
+      }
+      start = pos + 2;
+    }
+    if (buf != null) {
+      buf.append(messagePattern, start, messagePattern.length());
+    }
+    return consumed;
   }
 }
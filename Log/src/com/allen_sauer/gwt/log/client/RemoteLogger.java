@@ -15,9 +15,16 @@
  */
 package com.allen_sauer.gwt.log.client;
 
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+
+import com.allen_sauer.gwt.log.client.impl.LoggerDispatch;
 import com.allen_sauer.gwt.log.shared.LogRecord;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 
 /**
@@ -25,8 +32,77 @@ import java.util.Iterator;
  * module has not been inherited by the application.
  */
 public class RemoteLogger extends NullLogger {
+  /**
+   * Standard levels, in ascending order, which index the dispatch table.
+   */
+  private static final int[] LEVELS = {
+      Log.LOG_LEVEL_TRACE, Log.LOG_LEVEL_DEBUG, Log.LOG_LEVEL_INFO, Log.LOG_LEVEL_WARN,
+      Log.LOG_LEVEL_ERROR, Log.LOG_LEVEL_FATAL, Log.LOG_LEVEL_OFF,};
+
+  private static final Logger[] NO_LOGGERS = new Logger[0];
+
+  /**
+   * Policy, selected via the <code>log_IncrementalDispatch</code> property, which determines which
+   * loggers receive records asynchronously.
+   */
+  private static final LoggerDispatch dispatch = GWT.create(LoggerDispatch.class);
+
+  /**
+   * Map a log level to its dispatch table index, i.e. the highest standard level which does not
+   * exceed the supplied level.
+   */
+  private static int levelToIndex(int level) {
+    int index = LEVELS.length - 1;
+    while (index > 0 && level < LEVELS[index]) {
+      index--;
+    }
+    return index;
+  }
+
+  private final RepeatingCommand deferredDispatchCommand = new RepeatingCommand() {
+    @Override
+    public boolean execute() {
+      Duration duration = new Duration();
+      do {
+        if (!hasDeferred()) {
+          deferredDispatchScheduled = false;
+          return false;
+        }
+        deliverNextDeferred();
+      } while (duration.elapsedMillis() < dispatch.getTimeSliceMillis());
+      return true;
+    }
+  };
+
+  private boolean deferredDispatchScheduled;
+
+  /**
+   * Index of the next pending entry in {@link #deferredLoggers} and {@link #deferredRecords}.
+   */
+  private int deferredIndex;
+
+  /**
+   * Pending (logger, record) pairs awaiting incremental delivery, in logging order.
+   */
+  private final ArrayList<Logger> deferredLoggers = new ArrayList<Logger>();
+
+  private final ArrayList<LogRecord> deferredRecords = new ArrayList<LogRecord>();
+
+  /**
+   * For each standard level, the loggers whose minimum level accepts that level. Rebuilt lazily
+   * whenever loggers or their minimum levels change.
+   */
+  private Logger[][] dispatchTable;
+
+  /**
+   * For each standard level, whether this logger or any of the loggers accepts that level.
+   */
+  private boolean[] levelDispatched;
+
   private final ArrayList<Logger> loggers = new ArrayList<Logger>();
 
+  private final HashMap<Logger, Integer> minimumLevels = new HashMap<Logger, Integer>();
+
   /**
    * Retrieves a previously added logger or null if the logger was not added.
    * 
@@ -45,13 +121,42 @@ public class RemoteLogger extends NullLogger {
   }
 
   /**
-   * Adds a logger.
+   * Determine whether a record at the supplied level would be delivered anywhere, so that callers
+   * can avoid creating records nobody is interested in.
+   * 
+   * @param level the log level in question
+   * @return true if this logger or at least one of the loggers accepts the level
+   */
+  public final boolean isLevelDispatched(int level) {
+    if (levelDispatched == null) {
+      rebuildDispatchTable();
+    }
+    return levelDispatched[levelToIndex(level)];
+  }
+
+  /**
+   * Adds a logger which receives records at all levels.
    * 
    * @param logger the logger to add
    */
   public void loggersAdd(Logger logger) {
+    loggersAdd(logger, Log.LOG_LEVEL_TRACE);
+  }
+
+  /**
+   * Adds a logger which only receives records at or above the supplied minimum level. If the logger
+   * was previously added, only its minimum level is updated.
+   * 
+   * @param logger the logger to add
+   * @param minimumLevel the lowest log level the logger should receive
+   */
+  public void loggersAdd(Logger logger, int minimumLevel) {
     if (logger.isSupported()) {
-      loggers.add(logger);
+      if (!minimumLevels.containsKey(logger)) {
+        loggers.add(logger);
+      }
+      minimumLevels.put(logger, minimumLevel);
+      invalidateDispatchTable();
     }
   }
 
@@ -59,6 +164,9 @@ public class RemoteLogger extends NullLogger {
    * Call {@link #clear()} on all the loggers.
    */
   public final void loggersClear() {
+    // records logged before the clear should not reappear afterwards
+    clearDeferred();
+
     //self
     clear();
 
@@ -74,21 +182,32 @@ public class RemoteLogger extends NullLogger {
   }
 
   /**
-   * Call {@link #log(LogRecord)} on all the loggers. In this implementation we just pass the call
-   * to all our loggers immediately.
+   * Call {@link #log(LogRecord)} on the loggers whose minimum level accepts the record. In this
+   * implementation we pass the call to those loggers immediately, except for loggers which the
+   * <code>log_IncrementalDispatch</code> policy defers, which receive records below
+   * <code>FATAL</code> in time-sliced increments once the current event loop returns.
    * 
    * @see RemoteLoggerImpl#log(LogRecord)
    * 
    * @param record the LogRecord to log.
    */
   public void loggersLog(LogRecord record) {
-    for (Iterator<Logger> iterator = loggers.iterator(); iterator.hasNext();) {
-      Logger logger = iterator.next();
-      try {
-        logger.log(record);
-      } catch (RuntimeException e1) {
-        reportAndRemoveLogger(iterator, logger, e1);
+    if (dispatchTable == null) {
+      rebuildDispatchTable();
+    }
+    // the table row is a snapshot, so failing loggers may be removed while iterating
+    Logger[] row = dispatchTable[levelToIndex(record.getLevel())];
+    for (int i = 0; i < row.length; i++) {
+      Logger logger = row[i];
+      if (dispatch.isDeferrable(logger)) {
+        if (record.getLevel() < Log.LOG_LEVEL_FATAL) {
+          deferLog(logger, record);
+          continue;
+        }
+        // preserve ordering ahead of the synchronous record
+        flushDeferred();
       }
+      logTo(logger, record);
     }
   }
 
@@ -112,12 +231,92 @@ public class RemoteLogger extends NullLogger {
     }
   }
 
+  private void clearDeferred() {
+    deferredLoggers.clear();
+    deferredRecords.clear();
+    deferredIndex = 0;
+  }
+
+  private void deferLog(Logger logger, LogRecord record) {
+    deferredLoggers.add(logger);
+    deferredRecords.add(record);
+    if (!deferredDispatchScheduled) {
+      deferredDispatchScheduled = true;
+      Scheduler.get().scheduleIncremental(deferredDispatchCommand);
+    }
+  }
+
+  private void deliverNextDeferred() {
+    Logger logger = deferredLoggers.get(deferredIndex);
+    LogRecord record = deferredRecords.get(deferredIndex);
+    deferredIndex++;
+    if (!hasDeferred()) {
+      clearDeferred();
+    }
+    // the logger may have been removed while the record was pending
+    if (minimumLevels.containsKey(logger)) {
+      logTo(logger, record);
+    }
+  }
+
+  private void flushDeferred() {
+    while (hasDeferred()) {
+      deliverNextDeferred();
+    }
+  }
+
+  private boolean hasDeferred() {
+    return deferredIndex < deferredLoggers.size();
+  }
+
+  private void invalidateDispatchTable() {
+    dispatchTable = null;
+    levelDispatched = null;
+  }
+
+  private void logTo(Logger logger, LogRecord record) {
+    try {
+      logger.log(record);
+    } catch (RuntimeException e) {
+      reportAndRemoveLogger(logger, e);
+    }
+  }
+
+  private void rebuildDispatchTable() {
+    Logger[][] table = new Logger[LEVELS.length][];
+    boolean[] dispatched = new boolean[LEVELS.length];
+    boolean self = isSupported();
+    ArrayList<Logger> accepting = new ArrayList<Logger>();
+    for (int i = 0; i < LEVELS.length; i++) {
+      accepting.clear();
+      for (Logger logger : loggers) {
+        if (minimumLevels.get(logger) <= LEVELS[i]) {
+          accepting.add(logger);
+        }
+      }
+      table[i] = accepting.isEmpty() ? NO_LOGGERS : accepting.toArray(new Logger[accepting.size()]);
+      dispatched[i] = self || table[i].length > 0;
+    }
+    dispatchTable = table;
+    levelDispatched = dispatched;
+  }
+
+  private void removeLogger(Logger logger) {
+    loggers.remove(logger);
+    minimumLevels.remove(logger);
+    invalidateDispatchTable();
+  }
+
   @SuppressWarnings("deprecation")
+  private void reportAndRemoveLogger(final Logger logger, final RuntimeException e) {
+    removeLogger(logger);
+    Log.diagnostic("Removing '" + logger.getClass().getName() + "' due to unexecpted exception", e);
+  }
+
   private void reportAndRemoveLogger(
       final Iterator<Logger> iterator, final Logger logger, final RuntimeException e) {
     iterator.remove();
-    loggers.remove(logger);
-    Log.diagnostic("Removing '" + logger.getClass().getName() + "' due to unexecpted exception", e);
+    reportAndRemoveLogger(logger, e);
   }
 
 }
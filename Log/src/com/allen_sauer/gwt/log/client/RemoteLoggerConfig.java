@@ -19,6 +19,22 @@ package com.allen_sauer.gwt.log.client;
  * Interface for deferred binding generator.
  */
 public interface RemoteLoggerConfig {
+  /**
+   * Interval between polls of {@link #logLevelUrl()}, set by the
+   * {@code log_level_poll_seconds} configuration property.
+   * 
+   * @return the interval in milliseconds
+   */
+  int logLevelPollMillis();
+
+  /**
+   * The URL of a {@code RemoteLogLevelServlet} to poll for log level overrides, set by the
+   * {@code log_level_url} configuration property, or {@code null} to not poll.
+   * 
+   * @return the URL of the log level overrides
+   */
+  String logLevelUrl();
+
   /**
    * Override the server side logging end point or {@code null} to use the default
    * {@code /<module_name>/gwt-log}.
@@ -16,13 +16,21 @@
 package com.allen_sauer.gwt.log.client;
 
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
 import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.rpc.AsyncCallback;
+import com.google.gwt.user.client.rpc.RpcRequestBuilder;
 import com.google.gwt.user.client.rpc.ServiceDefTarget;
 
 import com.allen_sauer.gwt.log.shared.LogRecord;
 
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.Map.Entry;
 
 /**
  * Logger which sends log records via GWT RPC to the server where it can be deobfuscated and logged.
@@ -49,12 +57,33 @@ public final class RemoteLoggerImpl extends RemoteLogger {
 
   private final AsyncCallback<ArrayList<LogRecord>> callback;
 
+  /**
+   * The level override currently applied, or null.
+   */
+  private String appliedLevels;
+
   private boolean callInProgressOrScheduled = false;
 
   private Throwable failure;
 
+  /**
+   * The current log level before the level override changed it, or null.
+   */
+  private Integer levelBeforeOverride;
+
+  private final Timer levelPollTimer = new Timer() {
+    @Override
+    public void run() {
+      pollLevels();
+    }
+  };
+
+  private String levelsETag;
+
   private final ArrayList<LogRecord> logRecordList = new ArrayList<LogRecord>();
 
+  private final ArrayList<String> overriddenCategories = new ArrayList<String>();
+
   private final RemoteLoggerServiceAsync service;
 
   public RemoteLoggerImpl() {
@@ -94,6 +123,10 @@ public final class RemoteLoggerImpl extends RemoteLogger {
       }
 
     };
+
+    if (config.logLevelUrl() != null) {
+      levelPollTimer.schedule(1);
+    }
   }
 
   @Override
@@ -116,6 +149,8 @@ public final class RemoteLoggerImpl extends RemoteLogger {
       // don't forward gwt-log diagnostic messages to the server
       return;
     }
+    // the pattern and arguments of a parameterized message are not serialized
+    record.getMessage();
     logRecordList.add(record);
     maybeTriggerRPC();
   }
@@ -129,6 +164,45 @@ public final class RemoteLoggerImpl extends RemoteLogger {
   public void setCurrentLogLevel(int level) {
   }
 
+  /**
+   * Apply server side level overrides, in the <code>log_level</code> syntax, replacing those
+   * applied before. An empty override restores the client's own levels.
+   */
+  private void applyLevels(String levels) {
+    if (levels.equals(appliedLevels)) {
+      return;
+    }
+    Map<String, Integer> parsed;
+    try {
+      parsed = LogUtil.parseLogLevels(levels);
+    } catch (IllegalArgumentException ex) {
+      GWT.log(REMOTE_LOGGER_NAME + " ignored invalid log levels '" + levels + "'", ex);
+      return;
+    }
+    appliedLevels = levels;
+    for (String category : overriddenCategories) {
+      Log.removeCurrentLogLevel(category);
+    }
+    overriddenCategories.clear();
+    for (Entry<String, Integer> entry : parsed.entrySet()) {
+      if (entry.getKey() != null) {
+        Log.setCurrentLogLevel(entry.getKey(), entry.getValue());
+        overriddenCategories.add(entry.getKey());
+      }
+    }
+    Integer level = parsed.get(null);
+    if (level != null) {
+      if (levelBeforeOverride == null) {
+        levelBeforeOverride = Log.getCurrentLogLevel();
+      }
+      // unlike an explicit request, quietly respect the compile time log level
+      Log.setCurrentLogLevel(Math.max(Log.getLowestLogLevel(), level));
+    } else if (levelBeforeOverride != null) {
+      Log.setCurrentLogLevel(levelBeforeOverride);
+      levelBeforeOverride = null;
+    }
+  }
+
   private void maybeTriggerRPC() {
     if (failure == null && !callInProgressOrScheduled && !logRecordList.isEmpty()) {
       // allow a few log messages to accumulate before firing RPC
@@ -136,4 +210,32 @@ public final class RemoteLoggerImpl extends RemoteLogger {
       callInProgressOrScheduled = true;
     }
   }
+
+  private void pollLevels() {
+    RequestBuilder builder = new RequestBuilder(RequestBuilder.GET, config.logLevelUrl());
+    builder.setHeader(RpcRequestBuilder.STRONG_NAME_HEADER, GWT.getPermutationStrongName());
+    if (levelsETag != null) {
+      builder.setHeader("If-None-Match", levelsETag);
+    }
+    builder.setCallback(new RequestCallback() {
+      @Override
+      public void onError(Request request, Throwable exception) {
+        levelPollTimer.schedule(config.logLevelPollMillis());
+      }
+
+      @Override
+      public void onResponseReceived(Request request, Response response) {
+        if (response.getStatusCode() == Response.SC_OK) {
+          levelsETag = response.getHeader("ETag");
+          applyLevels(response.getText().trim());
+        }
+        levelPollTimer.schedule(config.logLevelPollMillis());
+      }
+    });
+    try {
+      builder.send();
+    } catch (RequestException ex) {
+      levelPollTimer.schedule(config.logLevelPollMillis());
+    }
+  }
 }
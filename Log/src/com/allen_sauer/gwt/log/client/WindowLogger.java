@@ -13,6 +13,8 @@
  */
 package com.allen_sauer.gwt.log.client;
 
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
 import com.google.gwt.core.client.JavaScriptException;
 import com.google.gwt.core.client.JavaScriptObject;
 import com.google.gwt.event.logical.shared.CloseEvent;
@@ -24,17 +26,42 @@ import com.allen_sauer.gwt.log.client.impl.LogClientBundle;
 import com.allen_sauer.gwt.log.client.util.DOMUtil;
 import com.allen_sauer.gwt.log.shared.LogRecord;
 
+import java.util.ArrayList;
+
 /**
- * Logger which outputs to a draggable floating <code>DIV</code>.
+ * Logger which outputs to a separate browser window. Only the most recent {@link #getCapacity()}
+ * records are retained, and records logged in quick succession are written to the window together,
+ * at most once per animation frame.
  * 
  * TODO Fix lack of updates when Firefox is configured to force new windows to open as tabs
  */
 public class WindowLogger implements Logger {
   // CHECKSTYLE_JAVADOC_OFF
 
-  private static final String STACKTRACE_ELEMENT_PREFIX = "&nbsp;&nbsp;&nbsp;&nbsp;at&nbsp;";
+  private static final int DEFAULT_CAPACITY = 1000;
+
+  private int capacity = DEFAULT_CAPACITY;
+
+  /**
+   * Reused for the HTML of each entry.
+   */
+  private final StringBuilder entryHtml = new StringBuilder();
+
+  private boolean frameRequested = false;
+
+  private final AnimationCallback frameCallback = new AnimationCallback() {
+    @Override
+    public void execute(double timestamp) {
+      frameRequested = false;
+      logPendingText();
+    }
+  };
+
+  /**
+   * HTML for each record which has not yet been written to the window.
+   */
+  private final ArrayList<String> pendingEntries = new ArrayList<String>();
 
-  private String logText = "";
   private boolean ready = false;
   private JavaScriptObject window = null;
 
@@ -54,6 +81,7 @@ public class WindowLogger implements Logger {
 
   @Override
   public final void clear() {
+    pendingEntries.clear();
     if (ready) {
       try {
         DOMUtil.windowClear(window);
@@ -63,6 +91,15 @@ public class WindowLogger implements Logger {
     }
   }
 
+  /**
+   * Retrieve the maximum number of records retained in the window.
+   * 
+   * @return the maximum number of records
+   */
+  public final int getCapacity() {
+    return capacity;
+  }
+
   @Override
   public final boolean isSupported() {
     return true;
@@ -72,36 +109,33 @@ public class WindowLogger implements Logger {
   public void log(LogRecord record) {
     String message = record.getFormattedMessage();
     Throwable throwable = record.getThrowable();
-    String text = message.replaceAll("<", "&lt;").replaceAll(">", "&gt;");
-    String title = makeTitle(message, throwable);
+    entryHtml.setLength(0);
+    entryHtml.append("<div class='").append(LogClientBundle.INSTANCE.css().logMessage()).append(
+        "' onmouseover='className+=\" log-message-hover\"' ").append(
+        "onmouseout='className=className.replace(/ log-message-hover/g,\"\")' style='color: ").append(
+        getColor(record.getLevel())).append("' title='");
+    LogUtil.appendEscapedAttribute(entryHtml,
+        DOMUtil.adjustTitleLineBreaks(LogUtil.formatTitle(message, throwable)));
+    entryHtml.append("'>");
+    LogUtil.appendEscapedHtml(entryHtml, message);
     if (throwable != null) {
-      text += "\n";
-      while (throwable != null) {
-        /* Use throwable.toString() and not throwable.getClass().getName() and
-         * throwable.getMessage(), so that instances of UnwrappedClientThrowable, when stack trace
-         * deobfuscation is enabled) display properly
-         */
-        text += "<b>" + throwable.toString() + "</b>";
-        StackTraceElement[] stackTraceElements = throwable.getStackTrace();
-        if (stackTraceElements.length > 0) {
-          text += "<div class='log-stacktrace'>";
-          for (StackTraceElement element : stackTraceElements) {
-            text += STACKTRACE_ELEMENT_PREFIX + element + "<br>";
-          }
-          text += "</div>";
-        }
-        throwable = throwable.getCause();
-        if (throwable != null) {
-          text += "Caused by: ";
-        }
-      }
+      entryHtml.append("<br>");
+      LogUtil.appendStackTraceHtml(entryHtml, throwable);
     }
-    text = text.replaceAll("\r\n|\r|\n", "<BR>");
-    addLogText(
-        "<div class='" + LogClientBundle.INSTANCE.css().logMessage()
-            + "' onmouseover='className+=\" log-message-hover\"' "
-            + "onmouseout='className=className.replace(/ log-message-hover/g,\"\")' style='color: "
-            + getColor(record.getLevel()) + "' title='" + title + "'>" + text + "</div>");
+    entryHtml.append("</div>");
+    addLogText(entryHtml.toString());
+  }
+
+  /**
+   * Set the maximum number of records retained in the window. Older records are discarded.
+   * 
+   * @param capacity the maximum number of records, at least 1
+   */
+  public final void setCapacity(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be at least 1");
+    }
+    this.capacity = capacity;
   }
 
   @Override
@@ -110,11 +144,18 @@ public class WindowLogger implements Logger {
   }
 
   private void addLogText(String text) {
-    logText += text;
+    pendingEntries.add(text);
+    if (pendingEntries.size() >= 2 * capacity) {
+      // the window would discard these anyway, e.g. while it is blocked or still loading
+      pendingEntries.subList(0, pendingEntries.size() - capacity).clear();
+    }
     if (window == null) {
       openNewWindow();
     }
-    logPendingText();
+    if (!frameRequested) {
+      frameRequested = true;
+      AnimationScheduler.get().requestAnimationFrame(frameCallback);
+    }
   }
 
   private void closeWindowIfOpen() {
@@ -145,29 +186,21 @@ public class WindowLogger implements Logger {
   }
 
   private void logPendingText() {
-    if (ready) {
+    if (ready && !pendingEntries.isEmpty()) {
+      int first = Math.max(0, pendingEntries.size() - capacity);
+      StringBuilder html = new StringBuilder();
+      for (int i = first; i < pendingEntries.size(); i++) {
+        html.append(pendingEntries.get(i));
+      }
       try {
-        DOMUtil.windowWrapAndAppendHTML(window, logText);
-        logText = "";
+        DOMUtil.windowAppendHTMLAndTrim(window, html.toString(), capacity);
+        pendingEntries.clear();
       } catch (JavaScriptException e) {
         openNewWindow();
       }
     }
   }
 
-  private String makeTitle(String message, Throwable throwable) {
-    if (throwable != null) {
-      if (throwable.getMessage() == null) {
-        message = throwable.getClass().getName();
-      } else {
-        message = throwable.getMessage().replaceAll(
-            throwable.getClass().getName().replaceAll("^(.+\\.).+$", "$1"), "");
-      }
-    }
-    return DOMUtil.adjustTitleLineBreaks(message).replaceAll("<", "&lt;").replaceAll(
-        ">", "&gt;").replaceAll("'", "\"");
-  }
-
   private void openNewWindow() {
     closeWindowIfOpen();
     window = DOMUtil.windowOpen("");
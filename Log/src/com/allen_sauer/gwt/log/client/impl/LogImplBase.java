@@ -31,6 +31,9 @@ import com.allen_sauer.gwt.log.client.SystemLogger;
 import com.allen_sauer.gwt.log.client.WindowLogger;
 import com.allen_sauer.gwt.log.shared.LogRecord;
 
+import java.util.HashMap;
+import java.util.Map.Entry;
+
 /**
  * Common implementation for all classes that are not expected to be compiled out, i.e. all
  * {@link LogImplInterface} subclasses except for {@link LogImplOff}).
@@ -61,13 +64,6 @@ public abstract class LogImplBase extends LogImpl {
     return new JavaScriptException(javaScriptExceptionName(e), javaScriptExceptionDescription(e));
   }
 
-  private static int getRequestedRuntimeLogLevel() {
-    String logLevelString = Location.getParameter("log_level");
-    int lowestLogLevel = Log.getLowestLogLevel();
-    return logLevelString == null ? lowestLogLevel : Math.max(lowestLogLevel,
-        LogUtil.stringToLevel(logLevelString));
-  }
-
   private static native boolean handleOnError(String msg, String url, int line)
   /*-{
 		@com.allen_sauer.gwt.log.client.Log::fatal(Ljava/lang/String;)("Uncaught JavaScript exception [" + msg + "] in " + url + ", line " + line);
@@ -100,6 +96,18 @@ public abstract class LogImplBase extends LogImpl {
 		$wnd.$GWT_LOG_VERSION = "@GWT_LOG_VERSION@";
   }-*/;
 
+  /**
+   * The current diagnostic context, or null if empty. Replaced rather than modified, so that
+   * records can share it.
+   */
+  private HashMap<String, String> context;
+
+  /**
+   * Runtime log levels set for particular categories, each also applying to the categories below
+   * it, e.g. <code>com.acme.grid</code> covers <code>com.acme.grid.Cell</code>.
+   */
+  private final HashMap<String, Integer> categoryLogLevels = new HashMap<String, Integer>();
+
   private int currentLogLevel = getLowestLogLevel();
 
   /**
@@ -107,6 +115,13 @@ public abstract class LogImplBase extends LogImpl {
    */
   private final RemoteLogger remoteLogger = GWT.create(RemoteLogger.class);
 
+  /**
+   * The effective level of each category checked since the levels last changed, so that checking
+   * a category costs a single lookup.
+   */
+  private final HashMap<String, Integer> resolvedCategoryLogLevels =
+      new HashMap<String, Integer>();
+
   public LogImplBase() {
   }
 
@@ -115,6 +130,11 @@ public abstract class LogImplBase extends LogImpl {
     remoteLogger.loggersAdd(logger);
   }
 
+  @Override
+  public final void addLogger(Logger logger, int minimumLevel) {
+    remoteLogger.loggersAdd(logger, minimumLevel);
+  }
+
   @Override
   public final void clear() {
     remoteLogger.loggersClear();
@@ -122,14 +142,21 @@ public abstract class LogImplBase extends LogImpl {
 
   @Override
   public final void debug(String category, String message, JavaScriptObject e) {
-    if (isDebugEnabled()) {
+    if (isDebugEnabled(category)) {
       log(Log.LOG_LEVEL_DEBUG, category, message, convertJavaScriptObjectToException(e));
     }
   }
 
+  @Override
+  public final void debug(String category, String messagePattern, Object[] arguments) {
+    if (isDebugEnabled(category)) {
+      log(Log.LOG_LEVEL_DEBUG, category, messagePattern, arguments);
+    }
+  }
+
   @Override
   public final void debug(String category, String message, Throwable e) {
-    if (isDebugEnabled()) {
+    if (isDebugEnabled(category)) {
       log(Log.LOG_LEVEL_DEBUG, category, message, e);
     }
   }
@@ -141,28 +168,42 @@ public abstract class LogImplBase extends LogImpl {
 
   @Override
   public final void error(String category, String message, JavaScriptObject e) {
-    if (isErrorEnabled()) {
+    if (isErrorEnabled(category)) {
       log(Log.LOG_LEVEL_ERROR, category, message, convertJavaScriptObjectToException(e));
     }
   }
 
+  @Override
+  public final void error(String category, String messagePattern, Object[] arguments) {
+    if (isErrorEnabled(category)) {
+      log(Log.LOG_LEVEL_ERROR, category, messagePattern, arguments);
+    }
+  }
+
   @Override
   public final void error(String category, String message, Throwable e) {
-    if (isErrorEnabled()) {
+    if (isErrorEnabled(category)) {
       log(Log.LOG_LEVEL_ERROR, category, message, e);
     }
   }
 
   @Override
   public final void fatal(String category, String message, JavaScriptObject e) {
-    if (isFatalEnabled()) {
+    if (isFatalEnabled(category)) {
       log(Log.LOG_LEVEL_FATAL, category, message, convertJavaScriptObjectToException(e));
     }
   }
 
+  @Override
+  public final void fatal(String category, String messagePattern, Object[] arguments) {
+    if (isFatalEnabled(category)) {
+      log(Log.LOG_LEVEL_FATAL, category, messagePattern, arguments);
+    }
+  }
+
   @Override
   public final void fatal(String category, String message, Throwable e) {
-    if (isFatalEnabled()) {
+    if (isFatalEnabled(category)) {
       log(Log.LOG_LEVEL_FATAL, category, message, e);
     }
   }
@@ -172,6 +213,19 @@ public abstract class LogImplBase extends LogImpl {
     return currentLogLevel;
   }
 
+  @Override
+  public final int getCurrentLogLevel(String category) {
+    if (categoryLogLevels.isEmpty() || category == null) {
+      return currentLogLevel;
+    }
+    Integer level = resolvedCategoryLogLevels.get(category);
+    if (level == null) {
+      level = resolveCurrentLogLevel(category);
+      resolvedCategoryLogLevels.put(category, level);
+    }
+    return level;
+  }
+
   @Override
   public final <T extends Logger> T getLogger(Class<T> clazz) {
     return remoteLogger.getLogger(clazz);
@@ -179,14 +233,21 @@ public abstract class LogImplBase extends LogImpl {
 
   @Override
   public final void info(String category, String message, JavaScriptObject e) {
-    if (isInfoEnabled()) {
+    if (isInfoEnabled(category)) {
       log(Log.LOG_LEVEL_INFO, category, message, convertJavaScriptObjectToException(e));
     }
   }
 
+  @Override
+  public final void info(String category, String messagePattern, Object[] arguments) {
+    if (isInfoEnabled(category)) {
+      log(Log.LOG_LEVEL_INFO, category, messagePattern, arguments);
+    }
+  }
+
   @Override
   public final void info(String category, String message, Throwable e) {
-    if (isInfoEnabled()) {
+    if (isInfoEnabled(category)) {
       log(Log.LOG_LEVEL_INFO, category, message, e);
     }
   }
@@ -214,7 +275,7 @@ public abstract class LogImplBase extends LogImpl {
     }
 
     // notify loggers
-    setCurrentLogLevelLoggers(getRequestedRuntimeLogLevel());
+    setRequestedRuntimeLogLevels();
 
     clear();
   }
@@ -225,23 +286,47 @@ public abstract class LogImplBase extends LogImpl {
         && getCurrentLogLevel() <= Log.LOG_LEVEL_DEBUG;
   }
 
+  @Override
+  public final boolean isDebugEnabled(String category) {
+    return getLowestLogLevel() <= Log.LOG_LEVEL_DEBUG
+        && getCurrentLogLevel(category) <= Log.LOG_LEVEL_DEBUG;
+  }
+
   @Override
   public boolean isErrorEnabled() {
     return getLowestLogLevel() <= Log.LOG_LEVEL_ERROR
         && getCurrentLogLevel() <= Log.LOG_LEVEL_ERROR;
   }
 
+  @Override
+  public final boolean isErrorEnabled(String category) {
+    return getLowestLogLevel() <= Log.LOG_LEVEL_ERROR
+        && getCurrentLogLevel(category) <= Log.LOG_LEVEL_ERROR;
+  }
+
   @Override
   public final boolean isFatalEnabled() {
     return getLowestLogLevel() <= Log.LOG_LEVEL_FATAL
         && getCurrentLogLevel() <= Log.LOG_LEVEL_FATAL;
   }
 
+  @Override
+  public final boolean isFatalEnabled(String category) {
+    return getLowestLogLevel() <= Log.LOG_LEVEL_FATAL
+        && getCurrentLogLevel(category) <= Log.LOG_LEVEL_FATAL;
+  }
+
   @Override
   public boolean isInfoEnabled() {
     return getLowestLogLevel() <= Log.LOG_LEVEL_INFO && getCurrentLogLevel() <= Log.LOG_LEVEL_INFO;
   }
 
+  @Override
+  public final boolean isInfoEnabled(String category) {
+    return getLowestLogLevel() <= Log.LOG_LEVEL_INFO
+        && getCurrentLogLevel(category) <= Log.LOG_LEVEL_INFO;
+  }
+
   @Override
   public final boolean isLoggingEnabled() {
     return getLowestLogLevel() != Log.LOG_LEVEL_OFF && getCurrentLogLevel() != Log.LOG_LEVEL_OFF;
@@ -253,18 +338,57 @@ public abstract class LogImplBase extends LogImpl {
         && getCurrentLogLevel() <= Log.LOG_LEVEL_TRACE;
   }
 
+  @Override
+  public final boolean isTraceEnabled(String category) {
+    return getLowestLogLevel() <= Log.LOG_LEVEL_TRACE
+        && getCurrentLogLevel(category) <= Log.LOG_LEVEL_TRACE;
+  }
+
   @Override
   public boolean isWarnEnabled() {
     return getLowestLogLevel() <= Log.LOG_LEVEL_WARN && getCurrentLogLevel() <= Log.LOG_LEVEL_WARN;
   }
 
+  @Override
+  public final boolean isWarnEnabled(String category) {
+    return getLowestLogLevel() <= Log.LOG_LEVEL_WARN
+        && getCurrentLogLevel(category) <= Log.LOG_LEVEL_WARN;
+  }
+
   @Override
   public void log(LogRecord record) {
     if (record.getLevel() >= getLowestLogLevel()) {
+      if (!record.hasContext()) {
+        record.setContext(context);
+      }
       sendToLoggers(record);
     }
   }
 
+  @Override
+  public final void putContext(String key, String value) {
+    HashMap<String, String> newContext = context == null ? new HashMap<String, String>()
+        : new HashMap<String, String>(context);
+    newContext.put(key, value);
+    context = newContext;
+  }
+
+  @Override
+  public final void removeContext(String key) {
+    if (context != null && context.containsKey(key)) {
+      HashMap<String, String> newContext = new HashMap<String, String>(context);
+      newContext.remove(key);
+      context = newContext.isEmpty() ? null : newContext;
+    }
+  }
+
+  @Override
+  public final void removeCurrentLogLevel(String category) {
+    if (categoryLogLevels.remove(category) != null) {
+      resolvedCategoryLogLevels.clear();
+    }
+  }
+
   public void sendToLoggers(LogRecord record) {
     remoteLogger.loggersLog(record);
   }
@@ -278,11 +402,24 @@ public abstract class LogImplBase extends LogImpl {
           "Temporarily setting the current (runtime) log level filter to '"
               + LogUtil.levelToString(level) + "'", null);
       currentLogLevel = level;
+      resolvedCategoryLogLevels.clear();
     }
 
     return currentLogLevel;
   }
 
+  @Override
+  public final int setCurrentLogLevel(String category, int level) {
+    level = Math.max(getLowestLogLevel(), level);
+    Integer previous = categoryLogLevels.put(category, level);
+    if (previous == null || previous != level) {
+      diagnostic("Temporarily setting the current (runtime) log level filter for '" + category
+          + "' to '" + LogUtil.levelToString(level) + "'", null);
+      resolvedCategoryLogLevels.clear();
+    }
+    return level;
+  }
+
   @Override
   public final void setUncaughtExceptionHandler() {
     GWT.setUncaughtExceptionHandler(new GWT.UncaughtExceptionHandler() {
@@ -296,37 +433,84 @@ public abstract class LogImplBase extends LogImpl {
 
   @Override
   public final void trace(String category, String message, JavaScriptObject e) {
-    if (isTraceEnabled()) {
+    if (isTraceEnabled(category)) {
       log(Log.LOG_LEVEL_TRACE, category, message, convertJavaScriptObjectToException(e));
     }
   }
 
+  @Override
+  public final void trace(String category, String messagePattern, Object[] arguments) {
+    if (isTraceEnabled(category)) {
+      log(Log.LOG_LEVEL_TRACE, category, messagePattern, arguments);
+    }
+  }
+
   @Override
   public final void trace(String category, String message, Throwable e) {
-    if (isTraceEnabled()) {
+    if (isTraceEnabled(category)) {
       log(Log.LOG_LEVEL_TRACE, category, message, e);
     }
   }
 
   @Override
   public final void warn(String category, String message, JavaScriptObject e) {
-    if (isWarnEnabled()) {
+    if (isWarnEnabled(category)) {
       log(Log.LOG_LEVEL_WARN, category, message, convertJavaScriptObjectToException(e));
     }
   }
 
+  @Override
+  public final void warn(String category, String messagePattern, Object[] arguments) {
+    if (isWarnEnabled(category)) {
+      log(Log.LOG_LEVEL_WARN, category, messagePattern, arguments);
+    }
+  }
+
   @Override
   public final void warn(String category, String message, Throwable e) {
-    if (isWarnEnabled()) {
+    if (isWarnEnabled(category)) {
       log(Log.LOG_LEVEL_WARN, category, message, e);
     }
   }
 
   private void log(int level, String category, String message, Throwable e) {
+    if (!remoteLogger.isLevelDispatched(level)) {
+      // no logger is interested; skip creating the record and bookmarking the stack
+      return;
+    }
     LogRecord record = new LogRecord(category, level, message, e);
+    record.setContext(context);
+    sendToLoggers(record);
+  }
+
+  private void log(int level, String category, String messagePattern, Object[] arguments) {
+    if (!remoteLogger.isLevelDispatched(level)) {
+      return;
+    }
+    LogRecord record = new LogRecord(category, level, messagePattern, arguments,
+        LogUtil.getThrowableCandidate(messagePattern, arguments));
+    record.setContext(context);
     sendToLoggers(record);
   }
 
+  /**
+   * Find the level set for the category or its nearest ancestor, or else the current level.
+   */
+  private int resolveCurrentLogLevel(String category) {
+    String name = category;
+    while (true) {
+      Integer level = categoryLogLevels.get(name);
+      if (level != null) {
+        return level;
+      }
+      int dot = name.lastIndexOf('.');
+      if (dot == -1) {
+        return currentLogLevel;
+      }
+      name = name.substring(0, dot);
+    }
+  }
+
   private int setCurrentLogLevelLoggers(int level) {
     if (level < getLowestLogLevel()) {
       Window.alert("Unable to lower runtime log level to " + level
@@ -357,4 +541,25 @@ public abstract class LogImplBase extends LogImpl {
     }
   }-*/;
 
-}
\ No newline at end of file
+  /**
+   * Apply the <code>log_level</code> URL parameter, a comma separated list of the current level
+   * and <code>category=level</code> settings, e.g.
+   * <code>?log_level=WARN,com.acme.grid=TRACE</code>.
+   */
+  private void setRequestedRuntimeLogLevels() {
+    int level = getLowestLogLevel();
+    String logLevelString = Location.getParameter("log_level");
+    if (logLevelString != null) {
+      for (Entry<String, Integer> entry : LogUtil.parseLogLevels(logLevelString).entrySet()) {
+        int requested = Math.max(getLowestLogLevel(), entry.getValue());
+        if (entry.getKey() == null) {
+          level = requested;
+        } else {
+          categoryLogLevels.put(entry.getKey(), requested);
+        }
+      }
+    }
+    currentLogLevel = setCurrentLogLevelLoggers(level);
+  }
+
+}
@@ -9,10 +9,14 @@ public interface LogImplInterface {
 
   public abstract void addLogger(Logger logger);
 
+  public abstract void addLogger(Logger logger, int minimumLevel);
+
   public abstract void clear();
 
   public abstract void debug(String category, String message, JavaScriptObject e);
 
+  public abstract void debug(String category, String messagePattern, Object[] arguments);
+
   public abstract void debug(String category, String message, Throwable e);
 
   /**
@@ -22,14 +26,20 @@ public interface LogImplInterface {
 
   public abstract void error(String category, String message, JavaScriptObject e);
 
+  public abstract void error(String category, String messagePattern, Object[] arguments);
+
   public abstract void error(String category, String message, Throwable e);
 
   public abstract void fatal(String category, String message, JavaScriptObject e);
 
+  public abstract void fatal(String category, String messagePattern, Object[] arguments);
+
   public abstract void fatal(String category, String message, Throwable e);
 
   public abstract int getCurrentLogLevel();
 
+  public abstract int getCurrentLogLevel(String category);
+
   public abstract String getCurrentLogLevelString();
 
   public abstract <T extends Logger> T getLogger(Class<T> clazz);
@@ -40,36 +50,62 @@ public interface LogImplInterface {
 
   public abstract void info(String category, String message, JavaScriptObject e);
 
+  public abstract void info(String category, String messagePattern, Object[] arguments);
+
   public abstract void info(String category, String message, Throwable e);
 
   public abstract void init();
 
   public abstract boolean isDebugEnabled();
 
+  public abstract boolean isDebugEnabled(String category);
+
   public abstract boolean isErrorEnabled();
 
+  public abstract boolean isErrorEnabled(String category);
+
   public abstract boolean isFatalEnabled();
 
+  public abstract boolean isFatalEnabled(String category);
+
   public abstract boolean isInfoEnabled();
 
+  public abstract boolean isInfoEnabled(String category);
+
   public abstract boolean isLoggingEnabled();
 
   public abstract boolean isTraceEnabled();
 
+  public abstract boolean isTraceEnabled(String category);
+
   public abstract boolean isWarnEnabled();
 
+  public abstract boolean isWarnEnabled(String category);
+
   public abstract void log(LogRecord record);
 
+  public abstract void putContext(String key, String value);
+
+  public abstract void removeContext(String key);
+
+  public abstract void removeCurrentLogLevel(String category);
+
   public abstract int setCurrentLogLevel(int level);
 
+  public abstract int setCurrentLogLevel(String category, int level);
+
   public abstract void setUncaughtExceptionHandler();
 
   public abstract void trace(String category, String message, JavaScriptObject e);
 
+  public abstract void trace(String category, String messagePattern, Object[] arguments);
+
   public abstract void trace(String category, String message, Throwable e);
 
   public abstract void warn(String category, String message, JavaScriptObject e);
 
+  public abstract void warn(String category, String messagePattern, Object[] arguments);
+
   public abstract void warn(String category, String message, Throwable e);
 
 }
\ No newline at end of file
@@ -30,6 +30,10 @@ public final class LogImplOff extends LogImpl {
   public void addLogger(Logger logger) {
   }
 
+  @Override
+  public void addLogger(Logger logger, int minimumLevel) {
+  }
+
   @Override
   public void clear() {
   }
@@ -38,6 +42,10 @@ public final class LogImplOff extends LogImpl {
   public void debug(String category, String message, JavaScriptObject e) {
   }
 
+  @Override
+  public void debug(String category, String messagePattern, Object[] arguments) {
+  }
+
   @Override
   public void debug(String category, String message, Throwable e) {
   }
@@ -50,6 +58,10 @@ public final class LogImplOff extends LogImpl {
   public void error(String category, String message, JavaScriptObject e) {
   }
 
+  @Override
+  public void error(String category, String messagePattern, Object[] arguments) {
+  }
+
   @Override
   public void error(String category, String message, Throwable e) {
   }
@@ -58,6 +70,10 @@ public final class LogImplOff extends LogImpl {
   public void fatal(String category, String message, JavaScriptObject e) {
   }
 
+  @Override
+  public void fatal(String category, String messagePattern, Object[] arguments) {
+  }
+
   @Override
   public void fatal(String category, String message, Throwable e) {
   }
@@ -67,6 +83,11 @@ public final class LogImplOff extends LogImpl {
     return Log.LOG_LEVEL_OFF;
   }
 
+  @Override
+  public int getCurrentLogLevel(String category) {
+    return Log.LOG_LEVEL_OFF;
+  }
+
   @Override
   public <T extends Logger> T getLogger(Class<T> clazz) {
     return null;
@@ -81,6 +102,10 @@ public final class LogImplOff extends LogImpl {
   public void info(String category, String message, JavaScriptObject e) {
   }
 
+  @Override
+  public void info(String category, String messagePattern, Object[] arguments) {
+  }
+
   @Override
   public void info(String category, String message, Throwable e) {
   }
@@ -94,21 +119,41 @@ public final class LogImplOff extends LogImpl {
     return false;
   }
 
+  @Override
+  public boolean isDebugEnabled(String category) {
+    return false;
+  }
+
   @Override
   public boolean isErrorEnabled() {
     return false;
   }
 
+  @Override
+  public boolean isErrorEnabled(String category) {
+    return false;
+  }
+
   @Override
   public boolean isFatalEnabled() {
     return false;
   }
 
+  @Override
+  public boolean isFatalEnabled(String category) {
+    return false;
+  }
+
   @Override
   public boolean isInfoEnabled() {
     return false;
   }
 
+  @Override
+  public boolean isInfoEnabled(String category) {
+    return false;
+  }
+
   @Override
   public boolean isLoggingEnabled() {
     return false;
@@ -119,20 +164,47 @@ public final class LogImplOff extends LogImpl {
     return false;
   }
 
+  @Override
+  public boolean isTraceEnabled(String category) {
+    return false;
+  }
+
   @Override
   public boolean isWarnEnabled() {
     return false;
   }
 
+  @Override
+  public boolean isWarnEnabled(String category) {
+    return false;
+  }
+
   @Override
   public void log(LogRecord record) {
   }
 
+  @Override
+  public void putContext(String key, String value) {
+  }
+
+  @Override
+  public void removeContext(String key) {
+  }
+
+  @Override
+  public void removeCurrentLogLevel(String category) {
+  }
+
   @Override
   public int setCurrentLogLevel(int level) {
     return Log.LOG_LEVEL_OFF;
   }
 
+  @Override
+  public int setCurrentLogLevel(String category, int level) {
+    return Log.LOG_LEVEL_OFF;
+  }
+
   @Override
   public void setUncaughtExceptionHandler() {
   }
@@ -141,6 +213,10 @@ public final class LogImplOff extends LogImpl {
   public void trace(String category, String message, JavaScriptObject e) {
   }
 
+  @Override
+  public void trace(String category, String messagePattern, Object[] arguments) {
+  }
+
   @Override
   public void trace(String category, String message, Throwable e) {
   }
@@ -149,6 +225,10 @@ public final class LogImplOff extends LogImpl {
   public void warn(String category, String message, JavaScriptObject e) {
   }
 
+  @Override
+  public void warn(String category, String messagePattern, Object[] arguments) {
+  }
+
   @Override
   public void warn(String category, String message, Throwable e) {
   }
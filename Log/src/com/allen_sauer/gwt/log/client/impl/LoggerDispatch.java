@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.client.impl;
+
+import com.allen_sauer.gwt.log.client.Logger;
+
+/**
+ * Default dispatch policy, used by deferred binding, which delivers every record to every logger
+ * synchronously within the caller's stack.
+ */
+public class LoggerDispatch {
+  // CHECKSTYLE_JAVADOC_OFF
+
+  /**
+   * Maximum time, in milliseconds, spent delivering queued records in each incremental slice.
+   */
+  public int getTimeSliceMillis() {
+    return 0;
+  }
+
+  /**
+   * Determine whether records below {@code FATAL} may be queued for the supplied logger and
+   * delivered incrementally after the caller's stack unwinds.
+   */
+  public boolean isDeferrable(Logger logger) {
+    return false;
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.client.impl;
+
+import com.allen_sauer.gwt.log.client.DivLogger;
+import com.allen_sauer.gwt.log.client.Logger;
+import com.allen_sauer.gwt.log.client.WindowLogger;
+
+/**
+ * Dispatch policy, enabled via the <code>log_IncrementalDispatch</code> property, which defers the
+ * DOM heavy {@link DivLogger} and {@link WindowLogger} to time-sliced incremental commands.
+ */
+public final class LoggerDispatchIncremental extends LoggerDispatch {
+  // CHECKSTYLE_JAVADOC_OFF
+
+  private static final int TIME_SLICE_MILLIS = 8;
+
+  @Override
+  public int getTimeSliceMillis() {
+    return TIME_SLICE_MILLIS;
+  }
+
+  @Override
+  public boolean isDeferrable(Logger logger) {
+    return logger instanceof DivLogger || logger instanceof WindowLogger;
+  }
+}
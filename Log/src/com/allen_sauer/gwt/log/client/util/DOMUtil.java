@@ -50,6 +50,31 @@ public class DOMUtil {
     throw new RuntimeException(msg);
   }
 
+  /**
+   * Append the top level elements of the provided HTML to the body of the window, then remove the
+   * oldest elements of the body beyond the supplied maximum.
+   * 
+   * @param w the window
+   * @param html the HTML to append
+   * @param maxChildren the maximum number of elements the body should retain
+   */
+  public static native void windowAppendHTMLAndTrim(JavaScriptObject w, String html,
+      int maxChildren) throws JavaScriptException
+  /*-{
+    var doc = w.document;
+    var div = doc.createElement('div');
+    div.innerHTML = html;
+    var fragment = doc.createDocumentFragment();
+    while (div.firstChild) {
+      fragment.appendChild(div.firstChild);
+    }
+    var body = doc.body;
+    body.appendChild(fragment);
+    while (body.childNodes.length > maxChildren) {
+      body.removeChild(body.firstChild);
+    }
+  }-*/;
+
   public static native void windowClear(JavaScriptObject w)
   /*-{
     w.document.body.innerHTML = "";
@@ -8,7 +8,6 @@
  */
 package com.allen_sauer.gwt.log.rebind;
 
-import com.google.gwt.core.client.Duration;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.ext.BadPropertyValueException;
 import com.google.gwt.core.ext.ConfigurationProperty;
@@ -20,16 +19,20 @@ import com.google.gwt.core.ext.UnableToCompleteException;
 import com.google.gwt.core.ext.typeinfo.JClassType;
 import com.google.gwt.core.ext.typeinfo.NotFoundException;
 import com.google.gwt.core.ext.typeinfo.TypeOracle;
+import com.google.gwt.i18n.client.DateTimeFormat;
 import com.google.gwt.user.rebind.ClassSourceFileComposerFactory;
 import com.google.gwt.user.rebind.SourceWriter;
 
 import com.allen_sauer.gwt.log.client.LogUtil;
+import com.allen_sauer.gwt.log.shared.LogRecord;
 
 import java.io.PrintWriter;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -40,6 +43,12 @@ import java.util.regex.Pattern;
 public class LogMessageFormatterGenerator extends Generator {
   // CHECKSTYLE_JAVADOC_OFF
 
+  /**
+   * Conversions whose value is known at generation time, so that they can be merged with the
+   * surrounding literal text.
+   */
+  private static final HashMap<String, String> CONSTANT_MAP = new HashMap<String, String>();
+
   private static final HashMap<String, String> CONVERSION_MAP = new HashMap<String, String>();
 
   private static final HashMap<String, String> DATE_FORMAT_MAP = new HashMap<String, String>();
@@ -65,7 +74,7 @@ public class LogMessageFormatterGenerator extends Generator {
 
     // %d - date of logging event (default ISO8601)
     // e.g. %d{dd MMM yyyy HH:mm:ss,SSS}, %d{ISO8601} or %d{ABSOLUTE}
-    CONVERSION_MAP.put("d", "new Date()");
+    CONVERSION_MAP.put("d", "timestamp");
 
     // %F - filename
     CONVERSION_MAP.put("F", "ste == null ? \"-\" : ste.getFileName()");
@@ -87,35 +96,92 @@ public class LogMessageFormatterGenerator extends Generator {
     STACKTRACE_SET.add("M");
 
     // %n - platform dependent line separator
-    CONVERSION_MAP.put("n", "\"\\\\n\"");
+    CONSTANT_MAP.put("n", "\n");
 
     // %p - priority of logging event
     CONVERSION_MAP.put("p", "logLevelText");
 
     // %r - number of elapsed milliseconds
-    CONVERSION_MAP.put("r", "Math.round(Duration.currentTimeMillis() - BIG_BANG)");
+    CONVERSION_MAP.put("r", "timestamp - BIG_BANG");
 
     // %t - name of caller thread
-    CONVERSION_MAP.put("t", "\"-\"");
+    CONSTANT_MAP.put("t", "-");
 
     // %x - nested diagnostic context
-    CONVERSION_MAP.put("x", "\"-\"");
+    CONSTANT_MAP.put("x", "-");
 
     // %X - mapped diagnostic context, e.g. %X{someKey}
-    CONVERSION_MAP.put("X", "\"-\"");
+    CONVERSION_MAP.put("X", "LogUtil.getContextValue(record, \"%s\")");
 
     // %% - percent sign
-    CONVERSION_MAP.put("%", "\"%\"");
+    CONSTANT_MAP.put("%", "%");
+  }
+
+  /**
+   * Emit a precompiled {@link DateTimeFormat} and a <code>formatDate<i>N</i>(long)</code> method
+   * for each distinct date pattern. The formatted text is cached and reused for subsequent
+   * timestamps within the same millisecond, or within the same second if the pattern has no
+   * millisecond field. Patterns which end with <code>SSS</code> (such as <code>ISO8601</code>)
+   * format the remainder once per second and append the milliseconds.
+   */
+  private static void dateFormatsToCode(SourceWriter sw, Map<String, Integer> dateFormats) {
+    for (Map.Entry<String, Integer> entry : dateFormats.entrySet()) {
+      String datePattern = entry.getKey();
+      int index = entry.getValue();
+      String unquoted = datePattern.replaceAll("'[^']*'", "");
+      boolean millisSuffix = datePattern.endsWith("SSS")
+          && unquoted.indexOf('S') == unquoted.length() - 3;
+      boolean perSecond = millisSuffix || unquoted.indexOf('S') == -1;
+      String prefixPattern = millisSuffix
+          ? datePattern.substring(0, datePattern.length() - 3) : datePattern;
+
+      sw.println();
+      sw.println("private static final DateTimeFormat DATE_FORMAT_" + index
+          + " = DateTimeFormat.getFormat(\"" + escape(prefixPattern) + "\");");
+      sw.println("private long dateFormat" + index + "Key = Long.MIN_VALUE;");
+      sw.println("private String dateFormat" + index + "Text;");
+      sw.println();
+      sw.println("private String formatDate" + index + "(long millis) { // \"" + escape(datePattern)
+          + "\"");
+      sw.indent();
+      if (perSecond) {
+        sw.println("long key = millis >= 0 ? millis / 1000 : (millis - 999) / 1000;");
+      } else {
+        sw.println("long key = millis;");
+      }
+      sw.println("if (key != dateFormat" + index + "Key) {");
+      sw.indent();
+      sw.println("dateFormat" + index + "Text = DATE_FORMAT_" + index
+          + ".format(new Date(millis));");
+      sw.println("dateFormat" + index + "Key = key;");
+      sw.outdent();
+      sw.println("}");
+      if (millisSuffix) {
+        sw.println("int ms = (int) (millis - key * 1000);");
+        sw.println("return dateFormat" + index
+            + "Text + (ms < 10 ? \"00\" : ms < 100 ? \"0\" : \"\") + ms;");
+      } else {
+        sw.println("return dateFormat" + index + "Text;");
+      }
+      sw.outdent();
+      sw.println("}");
+    }
   }
 
   /**
-   * Convert a log pattern to source code to be used in generated code.
+   * Convert a log pattern to source code to be used in generated code. The generated code appends
+   * each conversion to a single {@link StringBuilder}, applies field widths in place, and appends
+   * literal text and constant conversions as merged string literals.
    * 
    * @param logPattern the log pattern to convert
+   * @param dateFormats receives each distinct date pattern, mapped to the index of its generated
+   *          formatter
    * @return source code which will format the supplied message at runtime
    */
-  private static String logPatternToCode(String logPattern) {
-    StringBuffer buf = new StringBuffer("\"\"");
+  static String logPatternToCode(String logPattern, Map<String, Integer> dateFormats) {
+    StringBuilder code = new StringBuilder();
+    StringBuilder constant = new StringBuilder();
+    String constantComment = "";
     // Regex breakdown
     // 1. (.*?) - Non pattern characters
     // -. % - Escape character ("%")
@@ -129,65 +195,103 @@ public class LogMessageFormatterGenerator extends Generator {
     Pattern pattern = Pattern.compile("(.*?)%(-?)(\\d*)\\.?(\\d*)([cCdFlLmMnprtxX%])(\\{([^\\}]+)\\})?");
     Matcher matcher = pattern.matcher(logPattern);
     boolean stackTraceToggle = false;
+    boolean widthToggle = false;
+    int tailStart = 0;
     while (matcher.find()) {
-      buf.append("\n + \"").append(matcher.group(1)).append("\"");
+      tailStart = matcher.end();
+      constant.append(matcher.group(1));
       int minFieldWidth = Integer.parseInt(matcher.group(2) + "0" + matcher.group(3));
       int maxFieldWidth = Integer.parseInt("0" + matcher.group(4));
       String conversionSpecifier = matcher.group(5);
       String formatSpecifier = matcher.group(7);
+      String group2ToEnd = matcher.group(0).substring(matcher.group(1).length());
+
+      String constantValue = CONSTANT_MAP.get(conversionSpecifier);
+      if (conversionSpecifier.equals("X") && formatSpecifier == null) {
+        // the whole map is not supported
+        constantValue = "-";
+      }
+      if (constantValue != null) {
+        if (minFieldWidth > 0) {
+          constantValue = LogUtil.padLeft(constantValue, minFieldWidth);
+        } else if (minFieldWidth < 0) {
+          constantValue = LogUtil.padRight(constantValue, -minFieldWidth);
+        }
+        if (maxFieldWidth > 0) {
+          constantValue = LogUtil.trim(constantValue, maxFieldWidth);
+        }
+        constant.append(constantValue);
+        constantComment += group2ToEnd;
+        continue;
+      }
 
       String convertedExpression = CONVERSION_MAP.get(conversionSpecifier);
       if (STACKTRACE_SET.contains(conversionSpecifier)) {
         stackTraceToggle = true;
       }
-      String group2ToEnd = matcher.group(0).substring(matcher.group(1).length());
-      if (convertedExpression == null) {
-        buf.append("\n + \"");
-        matcher.appendReplacement(buf, group2ToEnd);
-        buf.append("\" // \"").append(group2ToEnd).append("\"");
-      } else {
-        if (conversionSpecifier.equals("d")) {
-          if (formatSpecifier == null) {
-            formatSpecifier = ISO8601;
-          }
-          String newFormatSpecifier = DATE_FORMAT_MAP.get(formatSpecifier);
-          if (newFormatSpecifier != null) {
-            formatSpecifier = newFormatSpecifier;
-          }
-          convertedExpression = "LogUtil.formatDate(" + convertedExpression + ", \""
-              + formatSpecifier + "\")";
-        } else if (conversionSpecifier.equals("c") || conversionSpecifier.equals("C")) {
-          if (formatSpecifier != null) {
-            int precision = Integer.parseInt("0" + formatSpecifier);
-            convertedExpression = "LogUtil.formatCategory(" + convertedExpression + ", "
-                + precision + ")";
-          }
+      if (conversionSpecifier.equals("d")) {
+        if (formatSpecifier == null) {
+          formatSpecifier = ISO8601;
         }
-
-        if (minFieldWidth > 0) {
-          // right justify
-          convertedExpression = "LogUtil.padLeft(" + convertedExpression + ", " + minFieldWidth
-              + ")";
-        } else if (minFieldWidth < 0) {
-          // left justify
-          convertedExpression = "LogUtil.padRight(" + convertedExpression + ", " + -minFieldWidth
-              + ")";
+        String newFormatSpecifier = DATE_FORMAT_MAP.get(formatSpecifier);
+        if (newFormatSpecifier != null) {
+          formatSpecifier = newFormatSpecifier;
         }
-        if (maxFieldWidth > 0) {
-          convertedExpression = "LogUtil.trim(" + convertedExpression + ", " + maxFieldWidth + ")";
+        Integer index = dateFormats.get(formatSpecifier);
+        if (index == null) {
+          index = dateFormats.size();
+          dateFormats.put(formatSpecifier, index);
         }
+        convertedExpression = "formatDate" + index + "(" + convertedExpression + ")";
+      } else if (conversionSpecifier.equals("X")) {
+        convertedExpression = String.format(convertedExpression, escape(formatSpecifier));
+      } else if (conversionSpecifier.equals("c") || conversionSpecifier.equals("C")) {
+        if (formatSpecifier != null) {
+          int precision = Integer.parseInt("0" + formatSpecifier);
+          convertedExpression = "LogUtil.formatCategory(" + convertedExpression + ", " + precision
+              + ")";
+        }
+      }
 
-        buf.append("\n + (");
-        matcher.appendReplacement(buf, convertedExpression);
-        buf.append(") // \"").append(group2ToEnd).append("\"");
+      appendConstantCode(code, constant, constantComment);
+      constantComment = "";
+      boolean width = minFieldWidth != 0 || maxFieldWidth > 0;
+      if (width) {
+        widthToggle = true;
+        code.append("start = buf.length();\n");
+      }
+      code.append("buf.append(").append(convertedExpression).append("); // \"").append(
+          escape(group2ToEnd)).append("\"\n");
+      if (minFieldWidth > 0) {
+        // right justify
+        code.append("LogUtil.padLeft(buf, start, ").append(minFieldWidth).append(");\n");
+      } else if (minFieldWidth < 0) {
+        // left justify
+        code.append("LogUtil.padRight(buf, start, ").append(-minFieldWidth).append(");\n");
+      }
+      if (maxFieldWidth > 0) {
+        code.append("LogUtil.trim(buf, start, ").append(maxFieldWidth).append(");\n");
       }
     }
-    buf.append("\n + \"");
-    matcher.appendTail(buf);
-    buf.append("\"");
+    constant.append(logPattern.substring(tailStart));
+    appendConstantCode(code, constant, constantComment);
+
     String ste = "GWT.isScript() ? null : LogUtil.getCallingStackTraceElement(throwable)";
-    return (stackTraceToggle ? "StackTraceElement ste = " + ste + ";\n" : "") + "return "
-        + buf.toString() + ";";
+    return (stackTraceToggle ? "StackTraceElement ste = " + ste + ";\n" : "")
+        + "StringBuilder buf = new StringBuilder();\n" + (widthToggle ? "int start;\n" : "")
+        + code + "return buf.toString();";
+  }
+
+  private static void appendConstantCode(StringBuilder code, StringBuilder constant,
+      String comment) {
+    if (constant.length() > 0) {
+      code.append("buf.append(\"").append(escape(constant.toString())).append("\");");
+      if (comment.length() > 0) {
+        code.append(" // \"").append(escape(comment)).append("\"");
+      }
+      code.append("\n");
+      constant.setLength(0);
+    }
   }
 
   @Override
@@ -221,9 +325,10 @@ public class LogMessageFormatterGenerator extends Generator {
     composerFactory.addImplementedInterface(remoteService.getQualifiedSourceName());
 
     composerFactory.addImport(Date.class.getName());
+    composerFactory.addImport(DateTimeFormat.class.getName());
     composerFactory.addImport(GWT.class.getName());
+    composerFactory.addImport(LogRecord.class.getName());
     composerFactory.addImport(LogUtil.class.getName());
-    composerFactory.addImport(Duration.class.getName());
 
     PrintWriter pw = context.tryCreate(logger, packageName, className + "Impl");
     if (pw != null) {
@@ -240,12 +345,32 @@ public class LogMessageFormatterGenerator extends Generator {
         throw new UnableToCompleteException();
       }
 
+      Map<String, Integer> dateFormats = new LinkedHashMap<String, Integer>();
+      String formatCode = logPatternToCode(logPattern, dateFormats);
+
       sw.println();
-      sw.println("private double BIG_BANG = Duration.currentTimeMillis();");
+      sw.println("private final long BIG_BANG = System.currentTimeMillis();");
+      dateFormatsToCode(sw, dateFormats);
 
       sw.println();
       sw.println("public String format(String logLevelText, String category, String message, Throwable throwable) {");
       sw.indent();
+      sw.println("return format(logLevelText, category, message, throwable, System.currentTimeMillis(), null);");
+      sw.outdent();
+      sw.println("}");
+
+      sw.println();
+      sw.println("public String format(LogRecord record, Throwable callerThrowable) {");
+      sw.indent();
+      sw.println("return format(LogUtil.levelToString(record.getLevel()), record.getCategory(), record.getMessage(),");
+      sw.println("    callerThrowable, record.getTimestamp(), record);");
+      sw.outdent();
+      sw.println("}");
+
+      sw.println();
+      sw.println("private String format(String logLevelText, String category, String message, Throwable throwable,");
+      sw.println("    long timestamp, LogRecord record) {");
+      sw.indent();
       sw.println("if (category == null) {");
       sw.indent();
       sw.println("category = \"<null category>\";");
@@ -256,7 +381,7 @@ public class LogMessageFormatterGenerator extends Generator {
       sw.println("message = \"<null message>\";");
       sw.outdent();
       sw.println("}");
-      sw.println(logPatternToCode(logPattern));
+      sw.println(formatCode);
       sw.outdent();
       sw.println("}");
 
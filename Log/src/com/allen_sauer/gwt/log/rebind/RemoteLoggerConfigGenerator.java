@@ -16,7 +16,6 @@
 package com.allen_sauer.gwt.log.rebind;
 
 import com.google.gwt.core.ext.BadPropertyValueException;
-import com.google.gwt.core.ext.ConfigurationProperty;
 import com.google.gwt.core.ext.Generator;
 import com.google.gwt.core.ext.GeneratorContext;
 import com.google.gwt.core.ext.PropertyOracle;
@@ -36,8 +35,34 @@ import java.util.List;
  */
 public class RemoteLoggerConfigGenerator extends Generator {
   // CHECKSTYLE_JAVADOC_OFF
+  private static final String PROPERTY_LOG_LEVEL_POLL_SECONDS = "log_level_poll_seconds";
+  private static final String PROPERTY_LOG_LEVEL_URL = "log_level_url";
   private static final String PROPERTY_LOG_URL = "log_url";
 
+  private static String getValue(TreeLogger logger, PropertyOracle propertyOracle, String name)
+      throws UnableToCompleteException {
+    try {
+      List<String> values = propertyOracle.getConfigurationProperty(name).getValues();
+      return values.get(0) == null ? null : values.get(0).trim();
+    } catch (BadPropertyValueException e) {
+      logger.log(TreeLogger.ERROR, "Unable to find value for '" + name + "'", e);
+      throw new UnableToCompleteException();
+    }
+  }
+
+  private static void printStringMethod(SourceWriter sw, String name, String value) {
+    sw.println();
+    sw.println("public String " + name + "() {");
+    sw.indent();
+    if (value == null) {
+      sw.println("return null;");
+    } else {
+      sw.println("return \"" + value + "\";");
+    }
+    sw.outdent();
+    sw.println("}");
+  }
+
   @Override
   public String generate(TreeLogger logger, GeneratorContext context, String typeName)
       throws UnableToCompleteException {
@@ -73,29 +98,28 @@ public class RemoteLoggerConfigGenerator extends Generator {
       SourceWriter sw = composerFactory.createSourceWriter(context, pw);
 
       PropertyOracle propertyOracle = context.getPropertyOracle();
-      String logUrl;
+      String pollSeconds = getValue(logger, propertyOracle, PROPERTY_LOG_LEVEL_POLL_SECONDS);
+      int pollMillis;
       try {
-        ConfigurationProperty logPatternProperty = propertyOracle.getConfigurationProperty(PROPERTY_LOG_URL);
-        List<String> values = logPatternProperty.getValues();
-        logUrl = values.get(0);
-      } catch (BadPropertyValueException e) {
-        logger.log(TreeLogger.ERROR, "Unable to find value for '" + PROPERTY_LOG_URL + "'", e);
+        pollMillis = Integer.parseInt(pollSeconds) * 1000;
+      } catch (NumberFormatException e) {
+        logger.log(TreeLogger.ERROR, "Invalid value '" + pollSeconds + "' for '"
+            + PROPERTY_LOG_LEVEL_POLL_SECONDS + "'", e);
         throw new UnableToCompleteException();
       }
 
       sw.println();
-      sw.println("public String serviceEntryPointUrl() {");
+      sw.println("public int logLevelPollMillis() {");
       sw.indent();
-
-      if (logUrl == null) {
-        sw.println("return null;");
-      } else {
-        sw.println("return \"" + logUrl.trim() + "\";");
-      }
-
+      sw.println("return " + pollMillis + ";");
       sw.outdent();
       sw.println("}");
 
+      printStringMethod(sw, "logLevelUrl", getValue(logger, propertyOracle,
+          PROPERTY_LOG_LEVEL_URL));
+      printStringMethod(sw, "serviceEntryPointUrl", getValue(logger, propertyOracle,
+          PROPERTY_LOG_URL));
+
       sw.commit(logger);
     }
     return composerFactory.getCreatedClassName();
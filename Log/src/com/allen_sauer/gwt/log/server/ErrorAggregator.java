@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregates the error records received by {@link RemoteLoggerServlet} over a sliding window, by
+ * stack trace fingerprint (see {@link StackTraceFingerprint}) and by category, to answer which
+ * client errors are most frequent right now. Memory use is bounded regardless of the number of
+ * distinct fingerprints and categories, see {@link HeavyHitters}.
+ * <p>
+ * The shared instance is configured via the following system properties:
+ * <ul>
+ * <li><code>gwt-log.aggregate.window</code>, the sliding window in seconds, by default 300</li>
+ * <li><code>gwt-log.aggregate.capacity</code>, the number of fingerprints and of categories
+ * tracked, by default 100</li>
+ * </ul>
+ *
+ * @see ErrorAggregatorServlet
+ */
+public final class ErrorAggregator {
+  public static final String GWT_LOG_AGGREGATE_CAPACITY_PREFERENCE = "gwt-log.aggregate.capacity";
+  public static final String GWT_LOG_AGGREGATE_WINDOW_PREFERENCE = "gwt-log.aggregate.window";
+
+  private static final int BUCKETS = 10;
+
+  private static final ErrorAggregator INSTANCE = new ErrorAggregator(
+      TimeUnit.SECONDS.toMillis(Integer.parseInt(System.getProperty(
+          GWT_LOG_AGGREGATE_WINDOW_PREFERENCE, "300"))), Integer.parseInt(System.getProperty(
+          GWT_LOG_AGGREGATE_CAPACITY_PREFERENCE, "100")), Log.LOG_LEVEL_ERROR);
+
+  private static final int WIDTH = 1024;
+
+  /**
+   * Retrieve the instance which is fed by {@link RemoteLoggerServlet}.
+   *
+   * @return the shared instance
+   */
+  public static ErrorAggregator getInstance() {
+    return INSTANCE;
+  }
+
+  private final HeavyHitters categories;
+
+  private final HeavyHitters fingerprints;
+
+  private final int minimumLevel;
+
+  /**
+   * Constructor.
+   *
+   * @param windowMillis the duration of the sliding window
+   * @param capacity the number of fingerprints and of categories tracked
+   * @param minimumLevel the level at or above which records are counted
+   */
+  public ErrorAggregator(long windowMillis, int capacity, int minimumLevel) {
+    this.minimumLevel = minimumLevel;
+    fingerprints = new HeavyHitters(windowMillis, BUCKETS, WIDTH, capacity);
+    categories = new HeavyHitters(windowMillis, BUCKETS, WIDTH, capacity);
+  }
+
+  /**
+   * Count a record at or above the minimum level by category and, if it has a throwable, by
+   * fingerprint.
+   *
+   * @param record the record, whose stack trace should already be deobfuscated
+   */
+  public void add(LogRecord record) {
+    if (record.getLevel() >= minimumLevel) {
+      // computed here, rather than read from the record, which may carry a client-supplied value
+      add(record, StackTraceFingerprint.fingerprint(record));
+    }
+  }
+
+  /**
+   * Count a record at or above the minimum level by category and, if it has a throwable, by the
+   * fingerprint which the caller has already computed for it.
+   *
+   * @param record the record
+   * @param fingerprint the result of {@link StackTraceFingerprint#fingerprint(LogRecord)} for the
+   *          record's deobfuscated stack trace, or null if it has no throwable
+   */
+  public void add(LogRecord record, String fingerprint) {
+    if (record.getLevel() < minimumLevel) {
+      return;
+    }
+    categories.add(String.valueOf(record.getCategory()), record);
+    if (fingerprint != null) {
+      fingerprints.add(fingerprint, record);
+    }
+  }
+
+  /**
+   * Retrieve the most frequent categories within the window.
+   *
+   * @param n the maximum number of categories to return
+   * @return the categories, most frequent first
+   */
+  public List<HeavyHitters.Entry> getTopCategories(int n) {
+    return categories.top(n);
+  }
+
+  /**
+   * Retrieve the most frequent stack trace fingerprints within the window.
+   *
+   * @param n the maximum number of fingerprints to return
+   * @return the fingerprints, most frequent first, each with a sample record
+   */
+  public List<HeavyHitters.Entry> getTopFingerprints(int n) {
+    return fingerprints.top(n);
+  }
+
+  public long getWindowMillis() {
+    return fingerprints.getWindowMillis();
+  }
+}
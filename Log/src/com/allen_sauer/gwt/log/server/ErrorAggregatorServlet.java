@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.client.LogUtil;
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Date;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Reports the most frequent client errors counted by {@link ErrorAggregator#getInstance()} as
+ * plain text, each with a sample deobfuscated stack trace. Supports the query parameters
+ * <code>by</code>, either <code>fingerprint</code> (the default) or <code>category</code>, and
+ * <code>n</code>, the number of entries, by default 20.
+ * <p>
+ * Since the samples contain client messages and stack traces, the servlet's
+ * <code>&lt;url-pattern&gt;</code> should be protected by a
+ * <code>&lt;security-constraint&gt;</code> in your <code>web.xml</code>.
+ */
+@SuppressWarnings("serial")
+public class ErrorAggregatorServlet extends HttpServlet {
+  private static final int DEFAULT_COUNT = 20;
+  private static final int MAX_COUNT = 1000;
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    int n = DEFAULT_COUNT;
+    String count = request.getParameter("n");
+    if (count != null) {
+      try {
+        n = Math.max(1, Math.min(MAX_COUNT, Integer.parseInt(count)));
+      } catch (NumberFormatException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid n '" + count + "'");
+        return;
+      }
+    }
+    String by = request.getParameter("by");
+    boolean byCategory = "category".equals(by);
+    if (by != null && !byCategory && !"fingerprint".equals(by)) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid by '" + by + "'");
+      return;
+    }
+
+    ErrorAggregator aggregator = ErrorAggregator.getInstance();
+    List<HeavyHitters.Entry> entries = byCategory ? aggregator.getTopCategories(n)
+        : aggregator.getTopFingerprints(n);
+    response.setContentType("text/plain; charset=UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+    PrintWriter out = response.getWriter();
+    out.println("Top " + entries.size() + (byCategory ? " categories" : " fingerprints")
+        + " over the last " + aggregator.getWindowMillis() / 1000 + " seconds");
+    int rank = 0;
+    for (HeavyHitters.Entry entry : entries) {
+      LogRecord sample = entry.getSample();
+      out.println();
+      out.println(++rank + ". " + entry.getKey() + ": " + entry.getCount() + " records, last "
+          + new Date(entry.getLastSeenMillis()));
+      if (sample != null) {
+        out.println("[" + LogUtil.levelToString(sample.getLevel()) + "] "
+            + sample.getCategory() + ": " + sample.getMessage());
+        Throwable throwable = sample.getThrowable();
+        if (throwable != null) {
+          throwable.printStackTrace(out);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Counts occurrences of string keys over a sliding time window and tracks the most frequent ones,
+ * in memory which is bounded regardless of the number of distinct keys.
+ * <p>
+ * The window is divided into buckets, each holding a count-min sketch which is incremented
+ * without locking. Estimates sum the sketches of the buckets within the window, so they never
+ * undercount and overcount by at most a small fraction of the total, depending on the sketch
+ * width. A bounded set of candidate keys, together with the most recent record for each, is
+ * kept alongside. A key which is not a candidate replaces the candidate with the smallest
+ * estimate once its own estimate exceeds it, so keys which become frequent are admitted even
+ * though their earlier occurrences were only counted by the sketch.
+ */
+public final class HeavyHitters {
+  /**
+   * A frequent key, its estimated count within the window and a sample record.
+   */
+  public static final class Entry {
+    private final long count;
+    private final String key;
+    private final long lastSeenMillis;
+    private final LogRecord sample;
+
+    Entry(String key, long count, LogRecord sample, long lastSeenMillis) {
+      this.key = key;
+      this.count = count;
+      this.sample = sample;
+      this.lastSeenMillis = lastSeenMillis;
+    }
+
+    /**
+     * Retrieve the estimated number of occurrences within the window, which may exceed the actual
+     * number by a small fraction of the total.
+     *
+     * @return the estimated count
+     */
+    public long getCount() {
+      return count;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public long getLastSeenMillis() {
+      return lastSeenMillis;
+    }
+
+    /**
+     * Retrieve the most recent record with this key.
+     *
+     * @return the record
+     */
+    public LogRecord getSample() {
+      return sample;
+    }
+  }
+
+  private static final class Bucket {
+    final AtomicLongArray counts;
+    final long epoch;
+
+    Bucket(long epoch, int size) {
+      this.epoch = epoch;
+      counts = new AtomicLongArray(size);
+    }
+  }
+
+  private static final class Candidate {
+    final long hash;
+    final String key;
+    volatile long lastSeenMillis;
+    volatile LogRecord sample;
+
+    Candidate(String key, long hash) {
+      this.key = key;
+      this.hash = hash;
+    }
+  }
+
+  /**
+   * Number of rows, i.e. independent hash functions, of each count-min sketch.
+   */
+  private static final int DEPTH = 4;
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private static long hash(String key) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = 0; i < key.length(); i++) {
+      hash = (hash ^ key.charAt(i)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  /**
+   * Guarded by {@link #candidates}: the number of candidates.
+   */
+  private int admitted;
+
+  private final long bucketMillis;
+
+  private final AtomicReferenceArray<Bucket> buckets;
+
+  private final int capacity;
+
+  private final ConcurrentHashMap<String, Candidate> candidates;
+
+  /**
+   * Smallest candidate estimate as of {@link #thresholdEpoch}, below which keys are not admitted.
+   */
+  private volatile long threshold = -1;
+
+  private volatile long thresholdEpoch = Long.MIN_VALUE;
+
+  private final int width;
+
+  /**
+   * Constructor.
+   *
+   * @param windowMillis the duration of the sliding window
+   * @param bucketCount the number of buckets the window is divided into, i.e. its granularity
+   * @param width the number of counters in each row of the sketch, a power of two; the estimates
+   *          overcount by roughly the window total divided by the width
+   * @param capacity the maximum number of keys tracked along with a sample record
+   */
+  public HeavyHitters(long windowMillis, int bucketCount, int width, int capacity) {
+    if (bucketCount < 1 || windowMillis < bucketCount || Integer.bitCount(width) != 1
+        || capacity < 1) {
+      throw new IllegalArgumentException();
+    }
+    bucketMillis = windowMillis / bucketCount;
+    buckets = new AtomicReferenceArray<Bucket>(bucketCount);
+    this.width = width;
+    this.capacity = capacity;
+    candidates = new ConcurrentHashMap<String, Candidate>(capacity * 2);
+  }
+
+  /**
+   * Count one occurrence of a key.
+   *
+   * @param key the key
+   * @param sample the record to keep as a sample if the key is frequent
+   */
+  public void add(String key, LogRecord sample) {
+    add(key, sample, System.currentTimeMillis());
+  }
+
+  /**
+   * Retrieve the most frequent keys within the window, most frequent first.
+   *
+   * @param n the maximum number of keys to return
+   * @return the keys with their estimated counts
+   */
+  public List<Entry> top(int n) {
+    return top(n, System.currentTimeMillis());
+  }
+
+  public long getWindowMillis() {
+    return bucketMillis * buckets.length();
+  }
+
+  void add(String key, LogRecord sample, long nowMillis) {
+    long epoch = nowMillis / bucketMillis;
+    long hash = hash(key);
+    AtomicLongArray counts = bucket(epoch).counts;
+    for (int row = 0; row < DEPTH; row++) {
+      counts.incrementAndGet(index(hash, row));
+    }
+
+    Candidate candidate = candidates.get(key);
+    if (candidate == null) {
+      candidate = admit(key, hash, epoch);
+      if (candidate == null) {
+        return;
+      }
+    }
+    candidate.sample = sample;
+    candidate.lastSeenMillis = nowMillis;
+  }
+
+  int size() {
+    return candidates.size();
+  }
+
+  List<Entry> top(int n, long nowMillis) {
+    long epoch = nowMillis / bucketMillis;
+    ArrayList<Entry> entries = new ArrayList<Entry>();
+    for (Candidate candidate : candidates.values()) {
+      long count = estimate(candidate.hash, epoch);
+      if (count > 0) {
+        entries.add(new Entry(candidate.key, count, candidate.sample, candidate.lastSeenMillis));
+      }
+    }
+    Collections.sort(entries, new Comparator<Entry>() {
+      @Override
+      public int compare(Entry o1, Entry o2) {
+        return o1.count > o2.count ? -1 : o1.count < o2.count ? 1 : 0;
+      }
+    });
+    return entries.size() > n ? new ArrayList<Entry>(entries.subList(0, n)) : entries;
+  }
+
+  private Candidate admit(String key, long hash, long epoch) {
+    // cheap rejection of infrequent keys once the candidates are full
+    if (epoch == thresholdEpoch && estimate(hash, epoch) <= threshold) {
+      return null;
+    }
+    synchronized (candidates) {
+      Candidate candidate = candidates.get(key);
+      if (candidate != null) {
+        return candidate;
+      }
+      if (admitted == capacity) {
+        Candidate smallest = null;
+        long smallestEstimate = Long.MAX_VALUE;
+        long secondEstimate = Long.MAX_VALUE;
+        for (Candidate c : candidates.values()) {
+          long e = estimate(c.hash, epoch);
+          if (e < smallestEstimate) {
+            secondEstimate = smallestEstimate;
+            smallestEstimate = e;
+            smallest = c;
+          } else if (e < secondEstimate) {
+            secondEstimate = e;
+          }
+        }
+        long estimate = estimate(hash, epoch);
+        thresholdEpoch = epoch;
+        if (estimate <= smallestEstimate) {
+          threshold = smallestEstimate;
+          return null;
+        }
+        candidates.remove(smallest.key);
+        threshold = Math.min(secondEstimate, estimate);
+      } else {
+        admitted++;
+      }
+      candidate = new Candidate(key, hash);
+      candidates.put(key, candidate);
+      return candidate;
+    }
+  }
+
+  /**
+   * Retrieve the bucket for the supplied epoch, replacing the one in its slot if that has expired.
+   */
+  private Bucket bucket(long epoch) {
+    int slot = (int) (epoch % buckets.length());
+    Bucket bucket = buckets.get(slot);
+    while (bucket == null || bucket.epoch < epoch) {
+      Bucket fresh = new Bucket(epoch, DEPTH * width);
+      if (buckets.compareAndSet(slot, bucket, fresh)) {
+        return fresh;
+      }
+      bucket = buckets.get(slot);
+    }
+    // a thread whose clock lags slightly behind counts into the newer bucket
+    return bucket;
+  }
+
+  /**
+   * Sum the count-min estimates of the buckets within the window ending at the supplied epoch.
+   */
+  private long estimate(long hash, long epoch) {
+    long sum = 0;
+    for (int slot = 0; slot < buckets.length(); slot++) {
+      Bucket bucket = buckets.get(slot);
+      if (bucket == null || epoch - bucket.epoch >= buckets.length()) {
+        continue;
+      }
+      long min = Long.MAX_VALUE;
+      for (int row = 0; row < DEPTH; row++) {
+        min = Math.min(min, bucket.counts.get(index(hash, row)));
+      }
+      sum += min;
+    }
+    return sum;
+  }
+
+  /**
+   * Derive the counter index of a row by remixing the hash with a different seed for each row, so
+   * that keys whose counters collide in one row are unlikely to collide in the others.
+   */
+  private int index(long hash, int row) {
+    long h = hash + row * 0x9e3779b97f4a7c15L;
+    h = (h ^ h >>> 33) * 0xc4ceb9fe1a85ec53L;
+    return row * width + ((int) (h ^ h >>> 33) & (width - 1));
+  }
+}
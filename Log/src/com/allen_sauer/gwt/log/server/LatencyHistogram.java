@@ -0,0 +1,240 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * High dynamic range histogram of durations in nanoseconds, in the manner of HdrHistogram: each
+ * power of two is divided into 64 linear sub-buckets, so recorded values are kept to within
+ * 1/64 of their magnitude, from 1 nanosecond up to about 137 seconds, with larger values
+ * clamped.
+ * <p>
+ * Each thread records into one of several sets of counts, chosen by its thread id as in
+ * {@link StripedCounter}, so recording takes no locks and threads rarely contend. Nothing is
+ * attached to the recording threads themselves, which are typically pooled by the servlet
+ * container and outlive the web application. Snapshots sum the counts of all stripes.
+ * {@link #getIntervalSnapshot()}
+ * reports what was recorded during the previous interval, so that percentiles reflect recent
+ * behavior rather than everything since startup.
+ */
+public final class LatencyHistogram {
+  /**
+   * Counts of a histogram at some point in time, or the difference between two such points.
+   */
+  public static final class Snapshot {
+    private final long count;
+    private final long[] counts;
+    private final long totalNanos;
+
+    Snapshot(long[] counts, long totalNanos) {
+      this.counts = counts;
+      this.totalNanos = totalNanos;
+      long sum = 0;
+      for (long c : counts) {
+        sum += c;
+      }
+      count = sum;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Retrieve the largest recorded value, to within the histogram's precision.
+     *
+     * @return the largest value in nanoseconds, or 0 if there are none
+     */
+    public long getMaxNanos() {
+      for (int i = counts.length - 1; i >= 0; i--) {
+        if (counts[i] != 0) {
+          return highestEquivalentValue(i);
+        }
+      }
+      return 0;
+    }
+
+    public long getP50Nanos() {
+      return getValueAtPercentile(50);
+    }
+
+    public long getP999Nanos() {
+      return getValueAtPercentile(99.9);
+    }
+
+    public long getP99Nanos() {
+      return getValueAtPercentile(99);
+    }
+
+    public long getTotalNanos() {
+      return totalNanos;
+    }
+
+    /**
+     * Retrieve the value at or below which the supplied percentage of recorded values lie, to
+     * within the histogram's precision.
+     *
+     * @param percentile the percentage, from 0 to 100
+     * @return the value in nanoseconds, or 0 if there are none
+     */
+    public long getValueAtPercentile(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+      long cumulative = 0;
+      for (int i = 0; i < counts.length; i++) {
+        cumulative += counts[i];
+        if (cumulative >= target) {
+          return highestEquivalentValue(i);
+        }
+      }
+      return getMaxNanos();
+    }
+
+    Snapshot minus(Snapshot earlier) {
+      long[] difference = new long[counts.length];
+      for (int i = 0; i < counts.length; i++) {
+        difference[i] = counts[i] - earlier.counts[i];
+      }
+      return new Snapshot(difference, totalNanos - earlier.totalNanos);
+    }
+  }
+
+  /**
+   * Counts of the threads which share a stripe.
+   */
+  private static final class Recorder {
+    final AtomicLongArray counts = new AtomicLongArray(COUNTS_LENGTH);
+    final AtomicLong totalNanos = new AtomicLong();
+  }
+
+  /**
+   * Values are clamped below <code>2^MAX_BITS</code> nanoseconds.
+   */
+  static final int MAX_BITS = 37;
+
+  private static final int SUB_BUCKET_BITS = 7;
+
+  private static final int SUB_BUCKET_HALF_COUNT = 1 << (SUB_BUCKET_BITS - 1);
+
+  private static final int COUNTS_LENGTH = (MAX_BITS - SUB_BUCKET_BITS + 2)
+      * SUB_BUCKET_HALF_COUNT;
+
+  private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+  /**
+   * Map a value to its counts index: values below <code>2^SUB_BUCKET_BITS</code> are counted
+   * exactly, and each further power of two occupies another <code>SUB_BUCKET_HALF_COUNT</code>
+   * counts.
+   */
+  static int countsIndex(long value) {
+    int bucket = 64 - Long.numberOfLeadingZeros(value | (1 << SUB_BUCKET_BITS) - 1)
+        - SUB_BUCKET_BITS;
+    return bucket * SUB_BUCKET_HALF_COUNT + (int) (value >>> bucket);
+  }
+
+  /**
+   * Retrieve the largest value which maps to the supplied counts index.
+   */
+  static long highestEquivalentValue(int index) {
+    int bucket = Math.max(0, index / SUB_BUCKET_HALF_COUNT - 1);
+    long subBucket = index - bucket * SUB_BUCKET_HALF_COUNT;
+    return (subBucket << bucket) + (1L << bucket) - 1;
+  }
+
+  private final long intervalMillis;
+
+  private Snapshot intervalEnd = new Snapshot(new long[COUNTS_LENGTH], 0);
+
+  private long intervalEndMillis = System.currentTimeMillis();
+
+  private Snapshot intervalStart = intervalEnd;
+
+  /**
+   * Created on first use, so that only stripes which are recorded into take up memory.
+   */
+  private final AtomicReferenceArray<Recorder> recorders = new AtomicReferenceArray<Recorder>(
+      StripedCounter.STRIPES);
+
+  /**
+   * Constructor.
+   *
+   * @param intervalMillis the minimum duration of the intervals reported by
+   *          {@link #getIntervalSnapshot()}
+   */
+  public LatencyHistogram(long intervalMillis) {
+    this.intervalMillis = intervalMillis;
+  }
+
+  /**
+   * Retrieve what was recorded during the previous interval, i.e. between the last two times this
+   * method started a new interval, which it does once the current one is at least the configured
+   * interval long.
+   *
+   * @return the counts of the previous interval
+   */
+  public synchronized Snapshot getIntervalSnapshot() {
+    long now = System.currentTimeMillis();
+    if (now - intervalEndMillis >= intervalMillis) {
+      intervalStart = intervalEnd;
+      intervalEnd = getSnapshot();
+      intervalEndMillis = now;
+    }
+    return intervalEnd.minus(intervalStart);
+  }
+
+  /**
+   * Retrieve everything recorded so far. Values being recorded concurrently may or may not be
+   * included.
+   *
+   * @return the counts since startup
+   */
+  public synchronized Snapshot getSnapshot() {
+    long[] counts = new long[COUNTS_LENGTH];
+    long totalNanos = 0;
+    for (int stripe = 0; stripe < recorders.length(); stripe++) {
+      Recorder r = recorders.get(stripe);
+      if (r != null) {
+        for (int i = 0; i < COUNTS_LENGTH; i++) {
+          counts[i] += r.counts.get(i);
+        }
+        totalNanos += r.totalNanos.get();
+      }
+    }
+    return new Snapshot(counts, totalNanos);
+  }
+
+  /**
+   * Record a duration.
+   *
+   * @param nanos the duration in nanoseconds, which is clamped to the supported range
+   */
+  public void record(long nanos) {
+    long value = nanos < 0 ? 0 : nanos > MAX_VALUE ? MAX_VALUE : nanos;
+    int stripe = StripedCounter.stripe();
+    Recorder r = recorders.get(stripe);
+    if (r == null) {
+      recorders.compareAndSet(stripe, null, new Recorder());
+      r = recorders.get(stripe);
+    }
+    r.counts.getAndIncrement(countsIndex(value));
+    r.totalNanos.getAndAdd(value);
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.client.Log;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the {@link RemoteLogLevels} override which applies to the requesting client as plain
+ * text, empty if there is none. Clients poll it when the <code>log_level_url</code> configuration
+ * property is set, and apply the levels without a reload. Each response carries an ETag, so that
+ * a poll which finds nothing changed costs a <code>304 Not Modified</code>. Map it to a
+ * <code>&lt;url-pattern&gt;</code> in your <code>web.xml</code>; each
+ * <code>&lt;init-param&gt;</code> presets the override of the target it is named after, e.g.
+ * <code>user-agent:Trident</code>.
+ */
+@SuppressWarnings("serial")
+public class RemoteLogLevelServlet extends HttpServlet {
+  /**
+   * Header with the client's permutation, as sent by GWT RPC.
+   */
+  static final String PERMUTATION_HEADER = "X-GWT-Permutation";
+
+  /**
+   * Derive the ETag from a digest of the levels, since a colliding tag would leave a client with
+   * stale levels indefinitely.
+   */
+  static String etag(String levels) {
+    byte[] digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256").digest(levels.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform implementation is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+    StringBuilder etag = new StringBuilder(digest.length * 2 + 2).append('"');
+    for (byte b : digest) {
+      etag.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return etag.append('"').toString();
+  }
+
+  @Override
+  public void destroy() {
+    RemoteLogLevels.unregister();
+    super.destroy();
+  }
+
+  @Override
+  public void init(ServletConfig config) throws ServletException {
+    super.init(config);
+    RemoteLogLevels.register();
+    for (@SuppressWarnings("unchecked")
+    Enumeration<String> e = config.getInitParameterNames(); e.hasMoreElements();) {
+      String target = e.nextElement();
+      try {
+        RemoteLogLevels.getInstance().setOverride(target, config.getInitParameter(target));
+      } catch (IllegalArgumentException ex) {
+        Log.error("Servlet configuration parameter '" + target + "' specifies an invalid override",
+            ex);
+      }
+    }
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    String levels = RemoteLogLevels.getInstance().getLevels(request.getRequestedSessionId(),
+        request.getHeader(PERMUTATION_HEADER), request.getHeader("User-Agent"));
+    if (levels == null) {
+      levels = "";
+    }
+    String etag = etag(levels);
+    response.setHeader("Cache-Control", "private, no-cache");
+    response.setHeader("Vary", "Cookie, User-Agent, " + PERMUTATION_HEADER);
+    response.setHeader("ETag", etag);
+    if (etag.equals(request.getHeader("If-None-Match"))) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+    response.setContentType("text/plain; charset=UTF-8");
+    response.getWriter().print(levels);
+  }
+}
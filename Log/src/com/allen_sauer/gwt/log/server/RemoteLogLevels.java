@@ -0,0 +1,171 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.client.LogUtil;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.management.ObjectName;
+
+/**
+ * Runtime log level overrides handed out to clients by {@link RemoteLogLevelServlet}, so that the
+ * verbosity of running clients can be changed without a new build or a <code>log_level</code> URL
+ * parameter. Each override maps a target to levels in the <code>log_level</code> syntax, e.g.
+ * <code>WARN,com.acme.grid=TRACE</code>. A client receives the override of its most specific
+ * target:
+ * <ol>
+ * <li><code>session:</code><i>id</i>, the HTTP session id the client presents</li>
+ * <li><code>permutation:</code><i>strong name</i>, the compiled permutation it runs</li>
+ * <li><code>user-agent:</code><i>text</i>, contained in its <code>User-Agent</code> header</li>
+ * <li><code>*</code>, any client</li>
+ * </ol>
+ * Overrides are managed from code, from {@link RemoteLogLevelServlet} init parameters or, while
+ * that servlet is in service, over JMX as {@link #OBJECT_NAME}.
+ */
+public final class RemoteLogLevels implements RemoteLogLevelsMXBean {
+  public static final String OBJECT_NAME = "com.allen_sauer.gwt.log:type=RemoteLogLevels";
+
+  public static final String TARGET_ANY = "*";
+
+  public static final String TARGET_PERMUTATION = "permutation:";
+
+  public static final String TARGET_SESSION = "session:";
+
+  public static final String TARGET_USER_AGENT = "user-agent:";
+
+  private static final RemoteLogLevels INSTANCE = new RemoteLogLevels();
+
+  /**
+   * Guarded by the class: the number of servlets in service, and whether the MXBean was
+   * registered by this web application.
+   */
+  private static int registrations;
+  private static boolean registered;
+
+  /**
+   * Retrieve the instance which is served by {@link RemoteLogLevelServlet}.
+   *
+   * @return the shared instance
+   */
+  public static RemoteLogLevels getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Register the shared instance as a platform MXBean when the first servlet is put into service.
+   * Each call must be balanced by {@link #unregister()}.
+   */
+  static synchronized void register() {
+    if (registrations++ > 0) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE,
+          new ObjectName(OBJECT_NAME));
+      registered = true;
+    } catch (Exception e) {
+      // e.g. already registered by another web application
+      Log.warn("Failed to register " + OBJECT_NAME + " due to " + e);
+    } catch (LinkageError e) {
+      // JMX is unavailable, e.g. on Google App Engine
+    }
+  }
+
+  /**
+   * Unregister the MXBean when the last servlet is taken out of service, so that the platform
+   * MBean server no longer references the web application's classes.
+   */
+  static synchronized void unregister() {
+    if (--registrations > 0 || !registered) {
+      return;
+    }
+    registered = false;
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+    } catch (Exception e) {
+      Log.warn("Failed to unregister " + OBJECT_NAME + " due to " + e);
+    }
+  }
+
+  /**
+   * Replaced rather than modified, so that clients are served without locking.
+   */
+  private volatile Map<String, String> overrides = Collections.emptyMap();
+
+  RemoteLogLevels() {
+  }
+
+  /**
+   * Determine the log levels for a client.
+   *
+   * @param sessionId the session id presented by the client, or null
+   * @param permutation the strong name of the client's permutation, or null
+   * @param userAgent the client's user agent, or null
+   * @return the levels of the most specific override, or null if none applies
+   */
+  public String getLevels(String sessionId, String permutation, String userAgent) {
+    Map<String, String> current = overrides;
+    if (current.isEmpty()) {
+      return null;
+    }
+    String levels = sessionId == null ? null : current.get(TARGET_SESSION + sessionId);
+    if (levels == null && permutation != null) {
+      levels = current.get(TARGET_PERMUTATION + permutation);
+    }
+    if (levels == null && userAgent != null) {
+      for (Entry<String, String> entry : current.entrySet()) {
+        if (entry.getKey().startsWith(TARGET_USER_AGENT)
+            && userAgent.contains(entry.getKey().substring(TARGET_USER_AGENT.length()))) {
+          levels = entry.getValue();
+          break;
+        }
+      }
+    }
+    return levels != null ? levels : current.get(TARGET_ANY);
+  }
+
+  @Override
+  public Map<String, String> getOverrides() {
+    return overrides;
+  }
+
+  @Override
+  public synchronized void removeOverride(String target) {
+    if (overrides.containsKey(target)) {
+      LinkedHashMap<String, String> newOverrides = new LinkedHashMap<String, String>(overrides);
+      newOverrides.remove(target);
+      overrides = Collections.unmodifiableMap(newOverrides);
+    }
+  }
+
+  @Override
+  public synchronized void setOverride(String target, String levels) {
+    if (!target.equals(TARGET_ANY) && !target.startsWith(TARGET_PERMUTATION)
+        && !target.startsWith(TARGET_SESSION) && !target.startsWith(TARGET_USER_AGENT)) {
+      throw new IllegalArgumentException("Unrecognized target '" + target + "'");
+    }
+    LogUtil.parseLogLevels(levels);
+    LinkedHashMap<String, String> newOverrides = new LinkedHashMap<String, String>(overrides);
+    newOverrides.put(target, levels.trim());
+    overrides = Collections.unmodifiableMap(newOverrides);
+  }
+}
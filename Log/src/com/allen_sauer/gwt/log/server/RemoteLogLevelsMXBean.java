@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link RemoteLogLevels}, e.g. to turn on <code>TRACE</code> for the one
+ * session which exhibits a problem.
+ */
+public interface RemoteLogLevelsMXBean {
+  /**
+   * Retrieve the current overrides.
+   *
+   * @return the log levels, keyed by target
+   */
+  Map<String, String> getOverrides();
+
+  /**
+   * Remove the override for a target, so that its clients revert to their own levels, or to a
+   * less specific override.
+   *
+   * @param target the target
+   */
+  void removeOverride(String target);
+
+  /**
+   * Set the log levels for a target.
+   *
+   * @param target the target, e.g. <code>session:1a2b3c</code>
+   * @param levels the levels, e.g. <code>WARN,com.acme.grid=TRACE</code>
+   * @throws IllegalArgumentException if the target or a level is not recognized
+   */
+  void setOverride(String target, String levels);
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.client.LogUtil;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the ingestion of client records by
+ * {@link RemoteLoggerServlet}, updated without locking. While that servlet is in service, the
+ * shared instance is registered as a platform MXBean named {@value #OBJECT_NAME}. It is rendered
+ * as plain text by {@link RemoteLoggerMetricsServlet}.
+ */
+public final class RemoteLoggerMetrics implements RemoteLoggerMetricsMXBean {
+  /**
+   * Total of a counter at the start of each of the last {@value #HISTORY} seconds, from which the
+   * per-second counts are derived. The history is brought up to date by the first addition in each
+   * second, so additions racing with it may be attributed to the previous second.
+   */
+  static final class Rate {
+    private static final int HISTORY = 60;
+
+    private final AtomicLongArray history = new AtomicLongArray(HISTORY + 1);
+    private volatile long second;
+    private final StripedCounter total = new StripedCounter();
+
+    void add(long delta, long nowSecond) {
+      if (nowSecond > second) {
+        roll(nowSecond);
+      }
+      total.add(delta);
+    }
+
+    /**
+     * Retrieve the count during each of the last {@value #HISTORY} complete seconds, oldest first.
+     */
+    long[] history(long nowSecond) {
+      roll(nowSecond);
+      long[] counts = new long[HISTORY];
+      for (int i = 0; i < HISTORY; i++) {
+        long s = nowSecond - HISTORY + i;
+        counts[i] = startOf(s + 1) - startOf(s);
+      }
+      return counts;
+    }
+
+    /**
+     * Retrieve the count during the last complete second.
+     */
+    long perSecond(long nowSecond) {
+      roll(nowSecond);
+      return startOf(nowSecond) - startOf(nowSecond - 1);
+    }
+
+    long sum() {
+      return total.sum();
+    }
+
+    private synchronized void roll(long nowSecond) {
+      if (nowSecond <= second) {
+        return;
+      }
+      long sum = total.sum();
+      for (long s = Math.max(second + 1, nowSecond - HISTORY); s <= nowSecond; s++) {
+        history.set((int) (s % history.length()), sum);
+      }
+      second = nowSecond;
+    }
+
+    private long startOf(long s) {
+      return history.get((int) (s % history.length()));
+    }
+  }
+
+  /**
+   * Minimum duration of the intervals over which latency percentiles are reported.
+   */
+  public static final long INTERVAL_MILLIS = 60000;
+
+  public static final String OBJECT_NAME = "com.allen_sauer.gwt.log:type=RemoteLoggerMetrics";
+
+  private static final int[] LEVELS = {
+      Log.LOG_LEVEL_TRACE, Log.LOG_LEVEL_DEBUG, Log.LOG_LEVEL_INFO, Log.LOG_LEVEL_WARN,
+      Log.LOG_LEVEL_ERROR, Log.LOG_LEVEL_FATAL};
+
+  // after LEVELS, which the constructor uses
+  private static final RemoteLoggerMetrics INSTANCE = new RemoteLoggerMetrics();
+
+  /**
+   * Guarded by the class: the number of servlets in service, and whether the MXBean was
+   * registered by this web application.
+   */
+  private static int registrations;
+  private static boolean registered;
+
+  /**
+   * Retrieve the instance which is updated by {@link RemoteLoggerServlet}.
+   *
+   * @return the shared instance
+   */
+  public static RemoteLoggerMetrics getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Register the shared instance as a platform MXBean when the first servlet is put into service.
+   * The platform MBean server outlives the web application, so each call must be balanced by
+   * {@link #unregister()}.
+   */
+  static synchronized void register() {
+    if (registrations++ > 0) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE,
+          new ObjectName(OBJECT_NAME));
+      registered = true;
+    } catch (Exception e) {
+      // e.g. already registered by another web application
+      Log.warn("Failed to register " + OBJECT_NAME + " due to " + e);
+    } catch (LinkageError e) {
+      // JMX is unavailable, e.g. on Google App Engine
+    }
+  }
+
+  /**
+   * Unregister the MXBean when the last servlet is taken out of service, so that it no longer
+   * references the web application's classes.
+   */
+  static synchronized void unregister() {
+    if (--registrations > 0 || !registered) {
+      return;
+    }
+    registered = false;
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+    } catch (Exception e) {
+      Log.warn("Failed to unregister " + OBJECT_NAME + " due to " + e);
+    }
+  }
+
+  /**
+   * Map a level to the index of the highest standard level it does not exceed.
+   */
+  private static int levelIndex(int level) {
+    int index = LEVELS.length - 1;
+    while (index > 0 && level < LEVELS[index]) {
+      index--;
+    }
+    return index;
+  }
+
+  private static long nowSecond() {
+    return System.currentTimeMillis() / 1000;
+  }
+
+  private final LatencyHistogram batchLatency = new LatencyHistogram(INTERVAL_MILLIS);
+
+  private final Rate batches = new Rate();
+
+  private final Rate bytes = new Rate();
+
+  private final LatencyHistogram deobfuscationLatency = new LatencyHistogram(INTERVAL_MILLIS);
+
+  private final LatencyHistogram dispatchLatency = new LatencyHistogram(INTERVAL_MILLIS);
+
+  private final Rate[] records = new Rate[LEVELS.length];
+
+  private final Rate recordsTotal = new Rate();
+
+  RemoteLoggerMetrics() {
+    for (int i = 0; i < records.length; i++) {
+      records[i] = new Rate();
+    }
+  }
+
+  /**
+   * Count a batch of records received.
+   *
+   * @param contentLength the size of the request in bytes, or -1 if unknown
+   */
+  public void batch(long contentLength) {
+    long nowSecond = nowSecond();
+    batches.add(1, nowSecond);
+    if (contentLength > 0) {
+      bytes.add(contentLength, nowSecond);
+    }
+  }
+
+  @Override
+  public long getBatchCount() {
+    return batches.sum();
+  }
+
+  @Override
+  public long getBatchesPerSecond() {
+    return batches.perSecond(nowSecond());
+  }
+
+  @Override
+  public long getBytesPerSecond() {
+    return bytes.perSecond(nowSecond());
+  }
+
+  @Override
+  public long getBytesReceived() {
+    return bytes.sum();
+  }
+
+  /**
+   * Retrieve the time taken by {@link RemoteLoggerServlet#log(java.util.ArrayList)} for each
+   * batch.
+   *
+   * @return the histogram
+   */
+  public LatencyHistogram getBatchHistogram() {
+    return batchLatency;
+  }
+
+  @Override
+  public LatencyHistogram.Snapshot getBatchLatency() {
+    return batchLatency.getIntervalSnapshot();
+  }
+
+  /**
+   * Retrieve the time taken to deobfuscate each record with a stack trace.
+   *
+   * @return the histogram
+   */
+  public LatencyHistogram getDeobfuscationHistogram() {
+    return deobfuscationLatency;
+  }
+
+  @Override
+  public LatencyHistogram.Snapshot getDeobfuscationLatency() {
+    return deobfuscationLatency.getIntervalSnapshot();
+  }
+
+  /**
+   * Retrieve the time taken to hand each record to the server side logging implementation.
+   *
+   * @return the histogram
+   */
+  public LatencyHistogram getDispatchHistogram() {
+    return dispatchLatency;
+  }
+
+  @Override
+  public LatencyHistogram.Snapshot getDispatchLatency() {
+    return dispatchLatency.getIntervalSnapshot();
+  }
+
+  @Override
+  public long getDroppedCount() {
+    return Log.getDroppedCount();
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return Log.getQueueDepth();
+  }
+
+  @Override
+  public Map<String, Long> getRecordCounts() {
+    LinkedHashMap<String, Long> counts = new LinkedHashMap<String, Long>();
+    for (int i = 0; i < LEVELS.length; i++) {
+      counts.put(LogUtil.levelToString(LEVELS[i]), records[i].sum());
+    }
+    return counts;
+  }
+
+  @Override
+  public Map<String, Long> getRecordsPerSecond() {
+    long nowSecond = nowSecond();
+    LinkedHashMap<String, Long> counts = new LinkedHashMap<String, Long>();
+    for (int i = 0; i < LEVELS.length; i++) {
+      counts.put(LogUtil.levelToString(LEVELS[i]), records[i].perSecond(nowSecond));
+    }
+    return counts;
+  }
+
+  @Override
+  public long[] getRecordsPerSecondHistory() {
+    return recordsTotal.history(nowSecond());
+  }
+
+  /**
+   * Count a record received.
+   *
+   * @param level the level of the record
+   */
+  public void record(int level) {
+    long nowSecond = nowSecond();
+    records[levelIndex(level)].add(1, nowSecond);
+    recordsTotal.add(1, nowSecond);
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link RemoteLoggerMetrics}. Rates are counts during the last complete
+ * second, and latencies cover the previous interval of at least a minute.
+ */
+public interface RemoteLoggerMetricsMXBean {
+  long getBatchCount();
+
+  long getBatchesPerSecond();
+
+  long getBytesPerSecond();
+
+  long getBytesReceived();
+
+  /**
+   * Retrieve the latency of {@link RemoteLoggerServlet#log(java.util.ArrayList)} per batch during
+   * the previous interval.
+   *
+   * @return the latency percentiles
+   */
+  LatencyHistogram.Snapshot getBatchLatency();
+
+  /**
+   * Retrieve the latency of deobfuscating a record's stack trace during the previous interval.
+   *
+   * @return the latency percentiles
+   */
+  LatencyHistogram.Snapshot getDeobfuscationLatency();
+
+  /**
+   * Retrieve the latency of passing a record to the server side logging implementation during the
+   * previous interval.
+   *
+   * @return the latency percentiles
+   */
+  LatencyHistogram.Snapshot getDispatchLatency();
+
+  long getDroppedCount();
+
+  int getQueueDepth();
+
+  /**
+   * Retrieve the number of records received since startup by level.
+   *
+   * @return the counts, keyed by level name
+   */
+  Map<String, Long> getRecordCounts();
+
+  /**
+   * Retrieve the number of records received during the last complete second by level.
+   *
+   * @return the counts, keyed by level name
+   */
+  Map<String, Long> getRecordsPerSecond();
+
+  /**
+   * Retrieve the number of records received during each of the last 60 seconds.
+   *
+   * @return the counts, oldest first
+   */
+  long[] getRecordsPerSecondHistory();
+}
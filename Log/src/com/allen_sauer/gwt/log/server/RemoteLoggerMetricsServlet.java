@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Renders {@link RemoteLoggerMetrics#getInstance()} in the plain text exposition format
+ * understood by Prometheus and similar scrapers, so that the ingestion path can be monitored
+ * without any further service. Latency quantiles cover the previous interval of
+ * {@link RemoteLoggerMetrics#INTERVAL_MILLIS}, so that a regressing stage shows up promptly. Map
+ * it to a <code>&lt;url-pattern&gt;</code> in your <code>web.xml</code>.
+ */
+@SuppressWarnings("serial")
+public class RemoteLoggerMetricsServlet extends HttpServlet {
+  private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+  private static void counter(PrintWriter out, String name, String help, long value) {
+    header(out, name, help, "counter");
+    out.println(name + " " + value);
+  }
+
+  private static void gauge(PrintWriter out, String name, String help, long value) {
+    header(out, name, help, "gauge");
+    out.println(name + " " + value);
+  }
+
+  private static void header(PrintWriter out, String name, String help, String type) {
+    out.println("# HELP " + name + " " + help);
+    out.println("# TYPE " + name + " " + type);
+  }
+
+  private static void perLevel(PrintWriter out, String name, String help, String type,
+      Map<String, Long> values) {
+    header(out, name, help, type);
+    for (Map.Entry<String, Long> entry : values.entrySet()) {
+      out.println(name + "{level=\"" + entry.getKey() + "\"} " + entry.getValue());
+    }
+  }
+
+  /**
+   * Render percentiles of the previous interval, with the count and sum since startup.
+   */
+  private static void summary(PrintWriter out, String name, String help,
+      LatencyHistogram histogram) {
+    LatencyHistogram.Snapshot interval = histogram.getIntervalSnapshot();
+    LatencyHistogram.Snapshot total = histogram.getSnapshot();
+    header(out, name, help, "summary");
+    for (double quantile : QUANTILES) {
+      out.println(name + "{quantile=\"" + quantile + "\"} "
+          + interval.getValueAtPercentile(quantile * 100) / 1e9);
+    }
+    out.println(name + "_sum " + total.getTotalNanos() / 1e9);
+    out.println(name + "_count " + total.getCount());
+    header(out, name + "_max", help + " Maximum during the previous interval.", "gauge");
+    out.println(name + "_max " + interval.getMaxNanos() / 1e9);
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    RemoteLoggerMetrics metrics = RemoteLoggerMetrics.getInstance();
+    response.setContentType("text/plain; version=0.0.4; charset=UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+    PrintWriter out = response.getWriter();
+    perLevel(out, "gwt_log_records_total", "Client records received.", "counter",
+        metrics.getRecordCounts());
+    perLevel(out, "gwt_log_records_per_second", "Client records received last second.",
+        "gauge", metrics.getRecordsPerSecond());
+    counter(out, "gwt_log_batches_total", "Client batches received.", metrics.getBatchCount());
+    gauge(out, "gwt_log_batches_per_second", "Client batches received last second.",
+        metrics.getBatchesPerSecond());
+    counter(out, "gwt_log_received_bytes_total", "Bytes of client batches received.",
+        metrics.getBytesReceived());
+    gauge(out, "gwt_log_received_bytes_per_second", "Bytes of client batches received last second.",
+        metrics.getBytesPerSecond());
+    summary(out, "gwt_log_batch_seconds", "Time to handle a batch of client records.",
+        metrics.getBatchHistogram());
+    summary(out, "gwt_log_deobfuscation_seconds", "Time to deobfuscate a record's stack trace.",
+        metrics.getDeobfuscationHistogram());
+    summary(out, "gwt_log_dispatch_seconds", "Time to pass a record to the server side log.",
+        metrics.getDispatchHistogram());
+    gauge(out, "gwt_log_queue_depth", "Records queued by the server side log.",
+        metrics.getQueueDepth());
+    counter(out, "gwt_log_dropped_records_total", "Records dropped by the server side log.",
+        metrics.getDroppedCount());
+  }
+}
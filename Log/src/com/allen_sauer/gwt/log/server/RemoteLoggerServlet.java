@@ -79,6 +79,11 @@ public class RemoteLoggerServlet extends RemoteServiceServlet implements RemoteL
    */
   private static final String PARAMETER_SYMBOL_MAPS_URL = "symbolMapsResourceUrl";
 
+  /**
+   * Key under which the permutation strong name of the client is stored in each record.
+   */
+  private static final String PERMUTATION = "permutation";
+
   /**
    * Non-RFC standard header. See http://en.wikipedia.org/wiki/X-Forwarded-For
    */
@@ -94,9 +99,16 @@ public class RemoteLoggerServlet extends RemoteServiceServlet implements RemoteL
 
   private final HashSet<String> permutationStrongNamesChecked = new HashSet<String>();
 
+  @Override
+  public void destroy() {
+    RemoteLoggerMetrics.unregister();
+    super.destroy();
+  }
+
   @Override
   public final void init(ServletConfig config) throws ServletException {
     super.init(config);
+    RemoteLoggerMetrics.register();
 
     deobfuscatorList = new ArrayList<StackTraceDeobfuscator>();
     for (@SuppressWarnings("unchecked")
@@ -131,21 +143,44 @@ public class RemoteLoggerServlet extends RemoteServiceServlet implements RemoteL
 
   @Override
   public final ArrayList<LogRecord> log(ArrayList<LogRecord> logRecords) {
+    long batchStart = System.nanoTime();
+    RemoteLoggerMetrics metrics = RemoteLoggerMetrics.getInstance();
+    metrics.batch(getThreadLocalRequest().getContentLength());
     for (LogRecord record : logRecords) {
       try {
+        metrics.record(record.getLevel());
         HttpServletRequest request = getThreadLocalRequest();
         record.set("remoteAddr", request.getRemoteAddr());
         String xForwardedFor = request.getHeader(X_FORWARDED_FOR);
         if (xForwardedFor != null) {
           record.set(X_FORWARDED_FOR, xForwardedFor);
         }
-        deobfuscate(record);
+        // these keys are owned by the server; never trust values supplied by the client
+        record.remove(PERMUTATION);
+        record.remove(StackTraceFingerprint.FINGERPRINT_KEY);
+        String permutationStrongName = getPermutationStrongName();
+        if (permutationStrongName != null) {
+          record.set(PERMUTATION, permutationStrongName);
+        }
+        if (record.getModifiableWrappedClientThrowable() != null) {
+          long start = System.nanoTime();
+          deobfuscate(record);
+          metrics.getDeobfuscationHistogram().record(System.nanoTime() - start);
+        }
+        String fingerprint = StackTraceFingerprint.fingerprint(record);
+        if (fingerprint != null) {
+          record.set(StackTraceFingerprint.FINGERPRINT_KEY, fingerprint);
+        }
+        ErrorAggregator.getInstance().add(record, fingerprint);
+        long start = System.nanoTime();
         Log.log(record);
+        metrics.getDispatchHistogram().record(System.nanoTime() - start);
       } catch (RuntimeException e) {
         System.err.println("Failed to log message due to " + e.toString());
         e.printStackTrace();
       }
     }
+    metrics.getBatchHistogram().record(System.nanoTime() - batchStart);
     return shouldReturnDeobfuscatedStackTraceToClient() ? logRecords : null;
   }
 
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.shared.LogRecord;
+import com.allen_sauer.gwt.log.shared.WrappedClientThrowable;
+
+/**
+ * Computes a fingerprint which identifies the same failure across log records, based on the
+ * exception types and the class and method names of the top stack frames of a throwable and its
+ * causes. Messages and line numbers are ignored, since they tend to vary between occurrences and
+ * builds. Client stack traces should be deobfuscated first, since obfuscated names differ between
+ * permutations.
+ */
+public final class StackTraceFingerprint {
+  /**
+   * Key under which {@link RemoteLoggerServlet} stores the fingerprint of each record.
+   */
+  public static final String FINGERPRINT_KEY = "fingerprint";
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /**
+   * Number of frames of each throwable in the cause chain which contribute to the fingerprint.
+   */
+  private static final int MAX_FRAMES = 10;
+
+  /**
+   * Compute the fingerprint of a record's throwable.
+   *
+   * @param record the log record
+   * @return a hexadecimal fingerprint, or null if the record has no throwable
+   */
+  public static String fingerprint(LogRecord record) {
+    WrappedClientThrowable wrapped = record.getModifiableWrappedClientThrowable();
+    if (wrapped == null) {
+      Throwable throwable = record.getThrowable();
+      return throwable == null ? null : fingerprint(throwable);
+    }
+    long hash = FNV_OFFSET_BASIS;
+    for (; wrapped != null; wrapped = wrapped.getCause()) {
+      hash = hash(hash, typeName(wrapped.getOriginalToString()));
+      hash = hash(hash, wrapped.getClientStackTrace());
+    }
+    return toHex(hash);
+  }
+
+  /**
+   * Compute the fingerprint of a throwable.
+   *
+   * @param throwable the throwable
+   * @return a hexadecimal fingerprint
+   */
+  public static String fingerprint(Throwable throwable) {
+    long hash = FNV_OFFSET_BASIS;
+    for (; throwable != null; throwable = throwable.getCause()) {
+      // use toString() so that unwrapped client throwables report their original type
+      hash = hash(hash, typeName(throwable.toString()));
+      hash = hash(hash, throwable.getStackTrace());
+    }
+    return toHex(hash);
+  }
+
+  private static long hash(long hash, StackTraceElement[] stackTrace) {
+    if (stackTrace != null) {
+      for (int i = 0; i < stackTrace.length && i < MAX_FRAMES; i++) {
+        hash = hash(hash, stackTrace[i].getClassName());
+        hash = hash(hash, stackTrace[i].getMethodName());
+      }
+    }
+    return hash;
+  }
+
+  private static long hash(long hash, String text) {
+    if (text != null) {
+      for (int i = 0; i < text.length(); i++) {
+        hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+      }
+    }
+    // separator, so that adjacent strings cannot run into each other
+    return (hash ^ 0xffff) * FNV_PRIME;
+  }
+
+  private static String toHex(long hash) {
+    String hex = Long.toHexString(hash);
+    return "0000000000000000".substring(hex.length()) + hex;
+  }
+
+  /**
+   * Extract the type from the <code>toString()</code> of a throwable, i.e. the text before any
+   * <code>": "</code> message separator.
+   */
+  private static String typeName(String originalToString) {
+    if (originalToString == null) {
+      return null;
+    }
+    int index = originalToString.indexOf(": ");
+    return index < 0 ? originalToString : originalToString.substring(0, index);
+  }
+
+  private StackTraceFingerprint() {
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter which many threads can increment without contending on a single memory location,
+ * in the manner of Java 8's <code>LongAdder</code>. Each thread adds to one of several cells,
+ * chosen by its thread id and spaced a cache line apart, and {@link #sum()} adds up the cells.
+ */
+public final class StripedCounter {
+  /**
+   * Number of longs in a 64 byte cache line, the spacing between cells.
+   */
+  static final int PADDING = 8;
+
+  static final int STRIPES = Integer.highestOneBit(Math.min(64,
+      Runtime.getRuntime().availableProcessors() * 2) * 2 - 1);
+
+  /**
+   * Select the stripe of the current thread.
+   */
+  static int stripe() {
+    long id = Thread.currentThread().getId();
+    return (int) (id * 0x9e3779b97f4a7c15L >>> 32) & (STRIPES - 1);
+  }
+
+  private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+  /**
+   * Add to the counter.
+   *
+   * @param delta the amount to add
+   */
+  public void add(long delta) {
+    cells.getAndAdd(stripe() * PADDING, delta);
+  }
+
+  /**
+   * Add one to the counter.
+   */
+  public void increment() {
+    add(1);
+  }
+
+  /**
+   * Retrieve the total. Additions made while the cells are being summed may or may not be
+   * included.
+   *
+   * @return the sum of all additions
+   */
+  public long sum() {
+    long sum = 0;
+    for (int i = 0; i < STRIPES; i++) {
+      sum += cells.get(i * PADDING);
+    }
+    return sum;
+  }
+}
@@ -21,6 +21,7 @@ import com.allen_sauer.gwt.log.client.LogMessageFormatter;
 import com.allen_sauer.gwt.log.client.LogUtil;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -34,15 +35,22 @@ public class LogRecord implements Serializable, IsSerializable {
 
   static final LogMessageFormatter FORMATTER = (LogMessageFormatter) (GWT.isClient() ? GWT.create(
       LogMessageFormatter.class) : null);
+  private static final String LOG_SEQUENCE = "logSequence";
   private static int gloablRecordSequence;
+  private transient Object[] arguments;
   private transient Throwable bookmarkThrowable;
   private String category;
+  private HashMap<String, String> context;
   private transient String formattedMessage;
   private int level;
   private HashMap<String, String> map;
   private String message;
+  private transient String messagePattern;
   private int recordSequence;
   private transient Throwable throwable;
+  private long timestamp;
+  private transient UnwrappedClientThrowable unwrappedClientThrowable;
+  private transient int unwrappedModificationCount;
   private WrappedClientThrowable wrappedBookmarkThrowable;
   private WrappedClientThrowable wrappedClientThrowable;
 
@@ -63,6 +71,7 @@ public class LogRecord implements Serializable, IsSerializable {
     this.category = category;
     this.throwable = throwable;
     recordSequence = ++gloablRecordSequence;
+    timestamp = System.currentTimeMillis();
     this.level = level;
     this.message = message;
     wrappedClientThrowable = WrappedClientThrowable.getInstanceOrNull(throwable);
@@ -74,10 +83,80 @@ public class LogRecord implements Serializable, IsSerializable {
     }
   }
 
+  /**
+   * Constructor for a parameterized message, which is only formatted when the message is first
+   * retrieved.
+   *
+   * @param category The category in which this message should be logged
+   * @param level the level at which this message should be logged
+   * @param messagePattern the message to be logged, with SLF4J style <code>{}</code> placeholders
+   * @param arguments the values of the placeholders
+   * @param throwable the stack trace associated with this message or null
+   */
+  public LogRecord(String category, int level, String messagePattern, Object[] arguments,
+      Throwable throwable) {
+    this(category, level, null, throwable);
+    this.messagePattern = messagePattern;
+    this.arguments = arguments;
+  }
+
+  /**
+   * Retrieve the arguments of a parameterized message. Like the pattern, these are not serialized.
+   *
+   * @return the arguments, or null if the message is not parameterized
+   */
+  public Object[] getArguments() {
+    return arguments;
+  }
+
+  /**
+   * Retrieve the value associated with a key, either set on this record or present in its
+   * diagnostic context.
+   *
+   * @param key the key
+   * @return the value, or null if there is none
+   */
+  public String get(String key) {
+    if (map != null) {
+      String value = map.get(key);
+      if (value != null) {
+        return value;
+      }
+    } else if (LOG_SEQUENCE.equals(key)) {
+      return "" + getRecordSequence();
+    }
+    return context == null ? null : context.get(key);
+  }
+
+  /**
+   * Retrieve the stack trace element of the code which logged this record, based on the logged
+   * throwable or otherwise on the stack captured when this record was created.
+   *
+   * @return the calling stack trace element, or null if no stack is available
+   */
+  public StackTraceElement getCallingStackTraceElement() {
+    Throwable callerThrowable = getThrowable();
+    if (callerThrowable == null) {
+      callerThrowable = bookmarkThrowable != null ? bookmarkThrowable
+          : UnwrappedClientThrowable.getInstanceOrNull(wrappedBookmarkThrowable);
+    }
+    return callerThrowable == null ? null : LogUtil.getCallingStackTraceElement(callerThrowable);
+  }
+
   public String getCategory() {
     return category;
   }
 
+  /**
+   * Retrieve the diagnostic context which was in effect when this record was logged.
+   *
+   * @return the key/value pairs of the diagnostic context, possibly empty
+   */
+  public Set<Entry<String, String>> getContextEntrySet() {
+    return context == null ? Collections.<String, String> emptyMap().entrySet()
+        : context.entrySet();
+  }
+
   /**
    * Retrieve a formatted message for this log record.
    *
@@ -89,17 +168,17 @@ public class LogRecord implements Serializable, IsSerializable {
       // avoid recomputing message for each logger
       return formattedMessage;
     }
-    Throwable callerThrowable = UnwrappedClientThrowable.getInstanceOrNull(
-        wrappedClientThrowable != null ? wrappedClientThrowable : wrappedBookmarkThrowable);
-    formattedMessage = level == Log.LOG_LEVEL_OFF ? message : FORMATTER.format(
-        LogUtil.levelToString(level), getCategory(), message, callerThrowable);
+    Throwable callerThrowable = wrappedClientThrowable != null ? getUnwrappedClientThrowable()
+        : UnwrappedClientThrowable.getInstanceOrNull(wrappedBookmarkThrowable);
+    formattedMessage = level == Log.LOG_LEVEL_OFF ? getMessage() : FORMATTER.format(this,
+        callerThrowable);
     return formattedMessage;
   }
 
   private HashMap<String, String> getHashMap() {
     if (map == null) {
       map = new HashMap<String, String>();
-      map.put("logSequence", "" + getRecordSequence());
+      map.put(LOG_SEQUENCE, "" + getRecordSequence());
     }
     return map;
   }
@@ -123,14 +202,26 @@ public class LogRecord implements Serializable, IsSerializable {
   }
 
   /**
-   * Retrieve this raw log record.
+   * Retrieve this raw log record, formatting a parameterized message on first use.
    *
    * @return the raw log message
    */
   public String getMessage() {
+    if (message == null && messagePattern != null) {
+      message = LogUtil.formatMessage(messagePattern, arguments);
+    }
     return message;
   }
 
+  /**
+   * Retrieve the pattern of a parameterized message.
+   *
+   * @return the pattern, or null if the message is not parameterized
+   */
+  public String getMessagePattern() {
+    return messagePattern;
+  }
+
   /**
    * Get the wrapped client throwable, suitable for serialization with RPC serialization code
    * penalty.
@@ -156,8 +247,60 @@ public class LogRecord implements Serializable, IsSerializable {
    * @return the original or reconstituted throwable
    */
   public Throwable getThrowable() {
-    return throwable != null ? throwable : UnwrappedClientThrowable.getInstanceOrNull(
-        wrappedClientThrowable);
+    return throwable != null ? throwable : getUnwrappedClientThrowable();
+  }
+
+  /**
+   * Retrieve the time at which this record was created, i.e. when the message was logged, rather
+   * than when it was formatted or received by the server.
+   *
+   * @return the time in milliseconds since the epoch
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * Whether a diagnostic context has been attached to this log record.
+   *
+   * @return true if {@link #setContext(HashMap)} was called with a non-null context
+   */
+  public boolean hasContext() {
+    return context != null;
+  }
+
+  /**
+   * Reconstitute the wrapped client throwable at most once per stack trace, since every logger
+   * calls {@link #getThrowable()} and each reconstitution copies the entire cause chain. The cached
+   * instance is discarded whenever deobfuscation replaces a client stack trace.
+   */
+  private UnwrappedClientThrowable getUnwrappedClientThrowable() {
+    if (wrappedClientThrowable == null) {
+      return null;
+    }
+    int modificationCount = wrappedClientThrowable.getModificationCount();
+    if (unwrappedClientThrowable == null || unwrappedModificationCount != modificationCount) {
+      unwrappedClientThrowable = UnwrappedClientThrowable.getInstanceOrNull(wrappedClientThrowable);
+      unwrappedModificationCount = modificationCount;
+    }
+    return unwrappedClientThrowable;
+  }
+
+  /**
+   * Remove a key, whether set on this record or present in its diagnostic context. The shared
+   * context is not modified, but replaced by a copy without the key.
+   *
+   * @param key the key to be removed
+   */
+  public void remove(String key) {
+    if (map != null) {
+      map.remove(key);
+    }
+    if (context != null && context.containsKey(key)) {
+      HashMap<String, String> copy = new HashMap<String, String>(context);
+      copy.remove(key);
+      context = copy;
+    }
   }
 
   /**
@@ -169,4 +312,14 @@ public class LogRecord implements Serializable, IsSerializable {
   public void set(String key, String value) {
     getHashMap().put(key, value);
   }
+
+  /**
+   * Attach a diagnostic context to this log record. The map is shared, rather than copied, so it
+   * must not be modified afterwards.
+   *
+   * @param context the immutable key/value pairs of the diagnostic context, or null
+   */
+  public void setContext(HashMap<String, String> context) {
+    this.context = context;
+  }
 }
@@ -33,6 +33,13 @@ public class WrappedClientThrowable implements Serializable, IsSerializable {
   private WrappedClientThrowable cause;
   private StackTraceElement[] clientStackTrace;
   private String message;
+
+  /**
+   * Incremented whenever the client stack trace is replaced, so that cached reconstituted
+   * throwables can be invalidated.
+   */
+  private transient int modificationCount;
+
   private String originalToString;
 
   /**
@@ -68,6 +75,16 @@ public class WrappedClientThrowable implements Serializable, IsSerializable {
     return message;
   }
 
+  /**
+   * Retrieve a counter which increases each time this throwable, or any of its causes, has its
+   * client stack trace replaced.
+   *
+   * @return the modification count for this throwable and its causes
+   */
+  int getModificationCount() {
+    return cause == null ? modificationCount : modificationCount + cause.getModificationCount();
+  }
+
   public String getOriginalToString() {
     return originalToString;
   }
@@ -80,6 +97,7 @@ public class WrappedClientThrowable implements Serializable, IsSerializable {
    */
   public void setClientStackTrace(StackTraceElement[] clientStackTrace) {
     this.clientStackTrace = clientStackTrace;
+    modificationCount++;
   }
 
   private void setCause(WrappedClientThrowable cause) {
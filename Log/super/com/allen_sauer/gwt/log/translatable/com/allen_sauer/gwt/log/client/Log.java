@@ -78,6 +78,18 @@ public final class Log {
     impl.addLogger(logger);
   }
 
+  /**
+   * Register a new logger which only receives messages at or above the supplied level. Records below
+   * the minimum level of every logger are discarded before any formatting takes place. Calling this
+   * method for a previously registered logger updates its minimum level.
+   * 
+   * @param logger the logger to add.
+   * @param minimumLevel the lowest level the logger should receive, e.g. {@link #LOG_LEVEL_WARN}
+   */
+  public static void addLogger(Logger logger, int minimumLevel) {
+    impl.addLogger(logger, minimumLevel);
+  }
+
   /**
    * Supported loggers will have their output cleared. Alternatively, some loggers may either insert
    * separator text, or may do nothing.
@@ -150,6 +162,24 @@ public final class Log {
     impl.debug(category, message, e);
   }
 
+  /**
+   * Log a <code>DEBUG</code> level message with SLF4J style <code>{}</code> placeholders, e.g.
+   * 
+   * <pre>
+   *   Log.debug("foo", "Loaded {} rows in {} ms", rows, millis);
+   * </pre>
+   * 
+   * The message is only formatted when a logger needs its text. A trailing exception argument not
+   * consumed by a placeholder is logged as the exception of the message.
+   * 
+   * @param category the category to be logged
+   * @param messagePattern the text to be logged, with <code>{}</code> placeholders
+   * @param arguments the values of the placeholders
+   */
+  public static void debug(String category, String messagePattern, Object... arguments) {
+    impl.debug(category, messagePattern, arguments);
+  }
+
   /**
    * Log a <code>DEBUG</code> level message from within a Java try/catch block, e.g.
    * 
@@ -194,6 +224,58 @@ public final class Log {
     impl.debug("gwt-log", message, e);
   }
 
+  /**
+   * Log a <code>DEBUG</code> level message which is only produced if <code>DEBUG</code> is enabled.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param message the producer of the text to be logged
+   */
+  public static void debugLazy(LogMessageSupplier message) {
+    debugLazy("gwt-log", message, (Throwable) null);
+  }
+
+  /**
+   * Log a <code>DEBUG</code> level message which is only produced if <code>DEBUG</code> is enabled,
+   * from within a Java try/catch block.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param message the producer of the text to be logged
+   * @param e the exception to be logged
+   */
+  public static void debugLazy(LogMessageSupplier message, Throwable e) {
+    debugLazy("gwt-log", message, e);
+  }
+
+  /**
+   * Log a <code>DEBUG</code> level message which is only produced if <code>DEBUG</code> is enabled.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param category the category to be logged
+   * @param message the producer of the text to be logged
+   */
+  public static void debugLazy(String category, LogMessageSupplier message) {
+    debugLazy(category, message, (Throwable) null);
+  }
+
+  /**
+   * Log a <code>DEBUG</code> level message which is only produced if <code>DEBUG</code> is enabled,
+   * from within a Java try/catch block. Unlike {@link #debug(String, String, Throwable)}, the
+   * message is not built when the level is disabled, and when it is disabled at compile time the
+   * call and the supplier are removed altogether.
+   * 
+   * @param category the category to be logged
+   * @param message the producer of the text to be logged
+   * @param e the exception to be logged
+   */
+  public static void debugLazy(String category, LogMessageSupplier message, Throwable e) {
+    if (impl.isDebugEnabled(category)) {
+      impl.debug(category, message.get(), e);
+    }
+  }
+
   /**
    * Log an internal <code>gwt-log</code> diagnostic message.
    * 
@@ -277,6 +359,24 @@ public final class Log {
     impl.error(category, message, e);
   }
 
+  /**
+   * Log a <code>ERROR</code> level message with SLF4J style <code>{}</code> placeholders, e.g.
+   * 
+   * <pre>
+   *   Log.error("foo", "Loaded {} rows in {} ms", rows, millis);
+   * </pre>
+   * 
+   * The message is only formatted when a logger needs its text. A trailing exception argument not
+   * consumed by a placeholder is logged as the exception of the message.
+   * 
+   * @param category the category to be logged
+   * @param messagePattern the text to be logged, with <code>{}</code> placeholders
+   * @param arguments the values of the placeholders
+   */
+  public static void error(String category, String messagePattern, Object... arguments) {
+    impl.error(category, messagePattern, arguments);
+  }
+
   /**
    * Log a <code>ERROR</code> level message from within a Java try/catch block, e.g.
    * 
@@ -321,6 +421,58 @@ public final class Log {
     impl.error("gwt-log", message, e);
   }
 
+  /**
+   * Log a <code>ERROR</code> level message which is only produced if <code>ERROR</code> is enabled.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param message the producer of the text to be logged
+   */
+  public static void errorLazy(LogMessageSupplier message) {
+    errorLazy("gwt-log", message, (Throwable) null);
+  }
+
+  /**
+   * Log a <code>ERROR</code> level message which is only produced if <code>ERROR</code> is enabled,
+   * from within a Java try/catch block.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param message the producer of the text to be logged
+   * @param e the exception to be logged
+   */
+  public static void errorLazy(LogMessageSupplier message, Throwable e) {
+    errorLazy("gwt-log", message, e);
+  }
+
+  /**
+   * Log a <code>ERROR</code> level message which is only produced if <code>ERROR</code> is enabled.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param category the category to be logged
+   * @param message the producer of the text to be logged
+   */
+  public static void errorLazy(String category, LogMessageSupplier message) {
+    errorLazy(category, message, (Throwable) null);
+  }
+
+  /**
+   * Log a <code>ERROR</code> level message which is only produced if <code>ERROR</code> is enabled,
+   * from within a Java try/catch block. Unlike {@link #error(String, String, Throwable)}, the
+   * message is not built when the level is disabled, and when it is disabled at compile time the
+   * call and the supplier are removed altogether.
+   * 
+   * @param category the category to be logged
+   * @param message the producer of the text to be logged
+   * @param e the exception to be logged
+   */
+  public static void errorLazy(String category, LogMessageSupplier message, Throwable e) {
+    if (impl.isErrorEnabled(category)) {
+      impl.error(category, message.get(), e);
+    }
+  }
+
   /**
    * Log a <code>FATAL</code> level message with no exception information.
    * 
@@ -391,6 +543,24 @@ public final class Log {
     impl.fatal(category, message, e);
   }
 
+  /**
+   * Log a <code>FATAL</code> level message with SLF4J style <code>{}</code> placeholders, e.g.
+   * 
+   * <pre>
+   *   Log.fatal("foo", "Loaded {} rows in {} ms", rows, millis);
+   * </pre>
+   * 
+   * The message is only formatted when a logger needs its text. A trailing exception argument not
+   * consumed by a placeholder is logged as the exception of the message.
+   * 
+   * @param category the category to be logged
+   * @param messagePattern the text to be logged, with <code>{}</code> placeholders
+   * @param arguments the values of the placeholders
+   */
+  public static void fatal(String category, String messagePattern, Object... arguments) {
+    impl.fatal(category, messagePattern, arguments);
+  }
+
   /**
    * Log a <code>FATAL</code> level message from within a Java try/catch block, e.g.
    * 
@@ -435,6 +605,58 @@ public final class Log {
     impl.fatal("gwt-log", message, e);
   }
 
+  /**
+   * Log a <code>FATAL</code> level message which is only produced if <code>FATAL</code> is enabled.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param message the producer of the text to be logged
+   */
+  public static void fatalLazy(LogMessageSupplier message) {
+    fatalLazy("gwt-log", message, (Throwable) null);
+  }
+
+  /**
+   * Log a <code>FATAL</code> level message which is only produced if <code>FATAL</code> is enabled,
+   * from within a Java try/catch block.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param message the producer of the text to be logged
+   * @param e the exception to be logged
+   */
+  public static void fatalLazy(LogMessageSupplier message, Throwable e) {
+    fatalLazy("gwt-log", message, e);
+  }
+
+  /**
+   * Log a <code>FATAL</code> level message which is only produced if <code>FATAL</code> is enabled.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param category the category to be logged
+   * @param message the producer of the text to be logged
+   */
+  public static void fatalLazy(String category, LogMessageSupplier message) {
+    fatalLazy(category, message, (Throwable) null);
+  }
+
+  /**
+   * Log a <code>FATAL</code> level message which is only produced if <code>FATAL</code> is enabled,
+   * from within a Java try/catch block. Unlike {@link #fatal(String, String, Throwable)}, the
+   * message is not built when the level is disabled, and when it is disabled at compile time the
+   * call and the supplier are removed altogether.
+   * 
+   * @param category the category to be logged
+   * @param message the producer of the text to be logged
+   * @param e the exception to be logged
+   */
+  public static void fatalLazy(String category, LogMessageSupplier message, Throwable e) {
+    if (impl.isFatalEnabled(category)) {
+      impl.fatal(category, message.get(), e);
+    }
+  }
+
   /**
    * Get the current gwt-log log level.
    * 
@@ -444,6 +666,19 @@ public final class Log {
     return impl.getCurrentLogLevel();
   }
 
+  /**
+   * Get the current gwt-log log level of a category, i.e. the level set for the category or its
+   * nearest parent category, or else the current gwt-log log level.
+   * 
+   * @see #setCurrentLogLevel(String, int)
+   * 
+   * @param category the category
+   * @return the category's current gwt-log log level
+   */
+  public static int getCurrentLogLevel(String category) {
+    return impl.getCurrentLogLevel(category);
+  }
+
   /**
    * Get a text representation of the current gwt-log log level.
    * 
@@ -561,6 +796,24 @@ public final class Log {
     impl.info(category, message, e);
   }
 
+  /**
+   * Log a <code>INFO</code> level message with SLF4J style <code>{}</code> placeholders, e.g.
+   * 
+   * <pre>
+   *   Log.info("foo", "Loaded {} rows in {} ms", rows, millis);
+   * </pre>
+   * 
+   * The message is only formatted when a logger needs its text. A trailing exception argument not
+   * consumed by a placeholder is logged as the exception of the message.
+   * 
+   * @param category the category to be logged
+   * @param messagePattern the text to be logged, with <code>{}</code> placeholders
+   * @param arguments the values of the placeholders
+   */
+  public static void info(String category, String messagePattern, Object... arguments) {
+    impl.info(category, messagePattern, arguments);
+  }
+
   /**
    * Log a <code>INFO</code> level message from within a Java try/catch block, e.g.
    * 
@@ -605,6 +858,58 @@ public final class Log {
     impl.info("gwt-log", message, e);
   }
 
+  /**
+   * Log a <code>INFO</code> level message which is only produced if <code>INFO</code> is enabled.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param message the producer of the text to be logged
+   */
+  public static void infoLazy(LogMessageSupplier message) {
+    infoLazy("gwt-log", message, (Throwable) null);
+  }
+
+  /**
+   * Log a <code>INFO</code> level message which is only produced if <code>INFO</code> is enabled,
+   * from within a Java try/catch block.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param message the producer of the text to be logged
+   * @param e the exception to be logged
+   */
+  public static void infoLazy(LogMessageSupplier message, Throwable e) {
+    infoLazy("gwt-log", message, e);
+  }
+
+  /**
+   * Log a <code>INFO</code> level message which is only produced if <code>INFO</code> is enabled.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param category the category to be logged
+   * @param message the producer of the text to be logged
+   */
+  public static void infoLazy(String category, LogMessageSupplier message) {
+    infoLazy(category, message, (Throwable) null);
+  }
+
+  /**
+   * Log a <code>INFO</code> level message which is only produced if <code>INFO</code> is enabled,
+   * from within a Java try/catch block. Unlike {@link #info(String, String, Throwable)}, the
+   * message is not built when the level is disabled, and when it is disabled at compile time the
+   * call and the supplier are removed altogether.
+   * 
+   * @param category the category to be logged
+   * @param message the producer of the text to be logged
+   * @param e the exception to be logged
+   */
+  public static void infoLazy(String category, LogMessageSupplier message, Throwable e) {
+    if (impl.isInfoEnabled(category)) {
+      impl.info(category, message.get(), e);
+    }
+  }
+
   /**
    * Guard utility method to prevent expensive parameter evaluation side effects when logging is set
    * at a higher level, e.g.
@@ -625,6 +930,20 @@ public final class Log {
     return impl.isDebugEnabled();
   }
 
+  /**
+   * Guard utility method to prevent expensive parameter evaluation side effects when logging in a
+   * category is set at a higher level.
+   * 
+   * @see #isDebugEnabled()
+   * @see #setCurrentLogLevel(String, int)
+   * 
+   * @param category the category to be logged
+   * @return <code>true</code> if the category's log level is at least <code>DEBUG</code>
+   */
+  public static boolean isDebugEnabled(String category) {
+    return impl.isDebugEnabled(category);
+  }
+
   /**
    * Guard utility method to prevent expensive parameter evaluation side effects when logging is set
    * at a higher level.
@@ -637,6 +956,20 @@ public final class Log {
     return impl.isErrorEnabled();
   }
 
+  /**
+   * Guard utility method to prevent expensive parameter evaluation side effects when logging in a
+   * category is set at a higher level.
+   * 
+   * @see #isDebugEnabled()
+   * @see #setCurrentLogLevel(String, int)
+   * 
+   * @param category the category to be logged
+   * @return <code>true</code> if the category's log level is at least <code>ERROR</code>
+   */
+  public static boolean isErrorEnabled(String category) {
+    return impl.isErrorEnabled(category);
+  }
+
   /**
    * Guard utility method to prevent expensive parameter evaluation side effects when logging is set
    * at a higher level.
@@ -649,6 +982,20 @@ public final class Log {
     return impl.isFatalEnabled();
   }
 
+  /**
+   * Guard utility method to prevent expensive parameter evaluation side effects when logging in a
+   * category is set at a higher level.
+   * 
+   * @see #isDebugEnabled()
+   * @see #setCurrentLogLevel(String, int)
+   * 
+   * @param category the category to be logged
+   * @return <code>true</code> if the category's log level is at least <code>FATAL</code>
+   */
+  public static boolean isFatalEnabled(String category) {
+    return impl.isFatalEnabled(category);
+  }
+
   /**
    * Guard utility method to prevent expensive parameter evaluation side effects when logging is set
    * at a higher level.
@@ -661,6 +1008,20 @@ public final class Log {
     return impl.isInfoEnabled();
   }
 
+  /**
+   * Guard utility method to prevent expensive parameter evaluation side effects when logging in a
+   * category is set at a higher level.
+   * 
+   * @see #isDebugEnabled()
+   * @see #setCurrentLogLevel(String, int)
+   * 
+   * @param category the category to be logged
+   * @return <code>true</code> if the category's log level is at least <code>INFO</code>
+   */
+  public static boolean isInfoEnabled(String category) {
+    return impl.isInfoEnabled(category);
+  }
+
   /**
    * Guard utility method to prevent expensive parameter evaluation side effects when logging is
    * disabled.
@@ -698,6 +1059,20 @@ public final class Log {
     return impl.isTraceEnabled();
   }
 
+  /**
+   * Guard utility method to prevent expensive parameter evaluation side effects when logging in a
+   * category is set at a higher level.
+   * 
+   * @see #isDebugEnabled()
+   * @see #setCurrentLogLevel(String, int)
+   * 
+   * @param category the category to be logged
+   * @return <code>true</code> if the category's log level is at least <code>TRACE</code>
+   */
+  public static boolean isTraceEnabled(String category) {
+    return impl.isTraceEnabled(category);
+  }
+
   /**
    * Guard utility method to prevent expensive parameter evaluation side effects when logging is set
    * at a higher level.
@@ -710,10 +1085,59 @@ public final class Log {
     return impl.isWarnEnabled();
   }
 
+  /**
+   * Guard utility method to prevent expensive parameter evaluation side effects when logging in a
+   * category is set at a higher level.
+   * 
+   * @see #isDebugEnabled()
+   * @see #setCurrentLogLevel(String, int)
+   * 
+   * @param category the category to be logged
+   * @return <code>true</code> if the category's log level is at least <code>WARN</code>
+   */
+  public static boolean isWarnEnabled(String category) {
+    return impl.isWarnEnabled(category);
+  }
+
   public static void log(LogRecord record) {
     impl.log(record);
   }
 
+  /**
+   * Add a key/value pair to the diagnostic context, which is attached to every subsequently logged
+   * message and may be included in formatted output via <code>%X{key}</code>. Messages already
+   * logged keep the context which was in effect at the time.
+   * 
+   * @param key the key
+   * @param value the value
+   */
+  public static void putContext(String key, String value) {
+    impl.putContext(key, value);
+  }
+
+  /**
+   * Remove a key from the diagnostic context.
+   * 
+   * @see #putContext(String, String)
+   * 
+   * @param key the key to remove
+   */
+  public static void removeContext(String key) {
+    impl.removeContext(key);
+  }
+
+  /**
+   * Remove the log level set for a category, which then inherits the level of its parent
+   * category again.
+   * 
+   * @see #setCurrentLogLevel(String, int)
+   * 
+   * @param category the category
+   */
+  public static void removeCurrentLogLevel(String category) {
+    impl.removeCurrentLogLevel(category);
+  }
+
   /**
    * Set the current gwt-log log level to a requested level. The actual level may be higher than the
    * requested level due to the compile time log level that is currently in effect.
@@ -725,6 +1149,21 @@ public final class Log {
     return impl.setCurrentLogLevel(level);
   }
 
+  /**
+   * Set the current gwt-log log level of a category and of the categories below it, e.g.
+   * <code>com.acme.grid</code> also covers <code>com.acme.grid.Cell</code>, to raise or lower
+   * the verbosity of one subsystem only. The actual level may be higher than the requested level
+   * due to the compile time log level that is currently in effect. Category levels may also be
+   * requested in the URL, e.g. <code>?log_level=WARN,com.acme.grid=TRACE</code>.
+   * 
+   * @param category the category
+   * @param level the new gwt-log log level of the category
+   * @return the resulting gwt-log log level of the category
+   */
+  public static int setCurrentLogLevel(String category, int level) {
+    return impl.setCurrentLogLevel(category, level);
+  }
+
   /**
    * Installs an UncaughtExceptionHandler that will trap and log <code>FATAL</code> messages, but
    * only if <i>both</i> the compile time and runtime <code>log_level</code> is set to
@@ -804,6 +1243,24 @@ public final class Log {
     impl.trace(category, message, e);
   }
 
+  /**
+   * Log a <code>TRACE</code> level message with SLF4J style <code>{}</code> placeholders, e.g.
+   * 
+   * <pre>
+   *   Log.trace("foo", "Loaded {} rows in {} ms", rows, millis);
+   * </pre>
+   * 
+   * The message is only formatted when a logger needs its text. A trailing exception argument not
+   * consumed by a placeholder is logged as the exception of the message.
+   * 
+   * @param category the category to be logged
+   * @param messagePattern the text to be logged, with <code>{}</code> placeholders
+   * @param arguments the values of the placeholders
+   */
+  public static void trace(String category, String messagePattern, Object... arguments) {
+    impl.trace(category, messagePattern, arguments);
+  }
+
   /**
    * Log a <code>TRACE</code> level message from within a Java try/catch block, e.g.
    * 
@@ -848,6 +1305,58 @@ public final class Log {
     impl.trace("gwt-log", message, e);
   }
 
+  /**
+   * Log a <code>TRACE</code> level message which is only produced if <code>TRACE</code> is enabled.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param message the producer of the text to be logged
+   */
+  public static void traceLazy(LogMessageSupplier message) {
+    traceLazy("gwt-log", message, (Throwable) null);
+  }
+
+  /**
+   * Log a <code>TRACE</code> level message which is only produced if <code>TRACE</code> is enabled,
+   * from within a Java try/catch block.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param message the producer of the text to be logged
+   * @param e the exception to be logged
+   */
+  public static void traceLazy(LogMessageSupplier message, Throwable e) {
+    traceLazy("gwt-log", message, e);
+  }
+
+  /**
+   * Log a <code>TRACE</code> level message which is only produced if <code>TRACE</code> is enabled.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param category the category to be logged
+   * @param message the producer of the text to be logged
+   */
+  public static void traceLazy(String category, LogMessageSupplier message) {
+    traceLazy(category, message, (Throwable) null);
+  }
+
+  /**
+   * Log a <code>TRACE</code> level message which is only produced if <code>TRACE</code> is enabled,
+   * from within a Java try/catch block. Unlike {@link #trace(String, String, Throwable)}, the
+   * message is not built when the level is disabled, and when it is disabled at compile time the
+   * call and the supplier are removed altogether.
+   * 
+   * @param category the category to be logged
+   * @param message the producer of the text to be logged
+   * @param e the exception to be logged
+   */
+  public static void traceLazy(String category, LogMessageSupplier message, Throwable e) {
+    if (impl.isTraceEnabled(category)) {
+      impl.trace(category, message.get(), e);
+    }
+  }
+
   /**
    * Log a <code>WARN</code> level message with no exception information.
    * 
@@ -918,6 +1427,24 @@ public final class Log {
     impl.warn(category, message, e);
   }
 
+  /**
+   * Log a <code>WARN</code> level message with SLF4J style <code>{}</code> placeholders, e.g.
+   * 
+   * <pre>
+   *   Log.warn("foo", "Loaded {} rows in {} ms", rows, millis);
+   * </pre>
+   * 
+   * The message is only formatted when a logger needs its text. A trailing exception argument not
+   * consumed by a placeholder is logged as the exception of the message.
+   * 
+   * @param category the category to be logged
+   * @param messagePattern the text to be logged, with <code>{}</code> placeholders
+   * @param arguments the values of the placeholders
+   */
+  public static void warn(String category, String messagePattern, Object... arguments) {
+    impl.warn(category, messagePattern, arguments);
+  }
+
   /**
    * Log a <code>WARN</code> level message from within a Java try/catch block, e.g.
    * 
@@ -962,6 +1489,58 @@ public final class Log {
     impl.warn("gwt-log", message, e);
   }
 
+  /**
+   * Log a <code>WARN</code> level message which is only produced if <code>WARN</code> is enabled.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param message the producer of the text to be logged
+   */
+  public static void warnLazy(LogMessageSupplier message) {
+    warnLazy("gwt-log", message, (Throwable) null);
+  }
+
+  /**
+   * Log a <code>WARN</code> level message which is only produced if <code>WARN</code> is enabled,
+   * from within a Java try/catch block.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param message the producer of the text to be logged
+   * @param e the exception to be logged
+   */
+  public static void warnLazy(LogMessageSupplier message, Throwable e) {
+    warnLazy("gwt-log", message, e);
+  }
+
+  /**
+   * Log a <code>WARN</code> level message which is only produced if <code>WARN</code> is enabled.
+   * 
+   * @see LogMessageSupplier
+   * 
+   * @param category the category to be logged
+   * @param message the producer of the text to be logged
+   */
+  public static void warnLazy(String category, LogMessageSupplier message) {
+    warnLazy(category, message, (Throwable) null);
+  }
+
+  /**
+   * Log a <code>WARN</code> level message which is only produced if <code>WARN</code> is enabled,
+   * from within a Java try/catch block. Unlike {@link #warn(String, String, Throwable)}, the
+   * message is not built when the level is disabled, and when it is disabled at compile time the
+   * call and the supplier are removed altogether.
+   * 
+   * @param category the category to be logged
+   * @param message the producer of the text to be logged
+   * @param e the exception to be logged
+   */
+  public static void warnLazy(String category, LogMessageSupplier message, Throwable e) {
+    if (impl.isWarnEnabled(category)) {
+      impl.warn(category, message.get(), e);
+    }
+  }
+
   /**
    * Default private constructor, to be used by GWT module initialization only.
    */
@@ -0,0 +1,85 @@
+package com.allen_sauer.gwt.log;
+
+import com.allen_sauer.gwt.log.client.LogUtil;
+
+/**
+ * Compares the previous <code>replaceAll</code> based HTML rendering of the UI loggers with the
+ * single-pass {@link LogUtil} renderer.
+ */
+public class HtmlEscapeBenchmark {
+  private static final int ITERATIONS = 20000;
+  private static final String MESSAGE = "Loaded <Widget> from map {a=1, b=2}\nnext line";
+  private static final String STACKTRACE_ELEMENT_PREFIX = "&nbsp;&nbsp;&nbsp;&nbsp;at&nbsp;";
+
+  public static void main(String[] args) {
+    Throwable throwable = new RuntimeException("outer <b>",
+        new IllegalStateException("java.lang.IllegalStateException: inner"));
+    StringBuilder html = new StringBuilder();
+
+    // warm up
+    long checksum = legacy(throwable, ITERATIONS) + singlePass(html, throwable, ITERATIONS);
+
+    long start = System.nanoTime();
+    checksum += legacy(throwable, ITERATIONS);
+    long legacyNanos = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    checksum += singlePass(html, throwable, ITERATIONS);
+    long singlePassNanos = System.nanoTime() - start;
+
+    System.out.println("replaceAll:  " + legacyNanos / ITERATIONS + " ns/record");
+    System.out.println("single pass: " + singlePassNanos / ITERATIONS + " ns/record");
+    System.out.println("(checksum " + checksum + ")");
+
+    html.setLength(0);
+    LogUtil.appendEscapedHtml(html, "<a href=\"x\">&'\r\n");
+    if (!"&lt;a href=&quot;x&quot;&gt;&amp;&#39;<br>".equals(html.toString())) {
+      throw new AssertionError("unexpected escaping: " + html);
+    }
+    if (!"IllegalStateException: inner".equals(
+        LogUtil.formatTitle(MESSAGE, throwable.getCause()))) {
+      throw new AssertionError("unexpected title: " + LogUtil.formatTitle(MESSAGE, throwable));
+    }
+  }
+
+  private static long legacy(Throwable t, int iterations) {
+    long length = 0;
+    for (int i = 0; i < iterations; i++) {
+      String text = MESSAGE.replaceAll("<", "&lt;").replaceAll(">", "&gt;");
+      Throwable throwable = t;
+      while (throwable != null) {
+        text += "<b>" + throwable.toString() + "</b>";
+        StackTraceElement[] stackTraceElements = throwable.getStackTrace();
+        if (stackTraceElements.length > 0) {
+          text += "<div class='log-stacktrace'>";
+          for (StackTraceElement element : stackTraceElements) {
+            text += STACKTRACE_ELEMENT_PREFIX + element + "<br>";
+          }
+          text += "</div>";
+        }
+        throwable = throwable.getCause();
+        if (throwable != null) {
+          text += "Caused by: ";
+        }
+      }
+      text = text.replaceAll("\r\n|\r|\n", "<BR>");
+      String title = t.getMessage().replaceAll(
+          t.getClass().getName().replaceAll("^(.+\\.).+$", "$1"), "");
+      title = title.replaceAll("<", "&lt;").replaceAll(">", "&gt;").replaceAll("'", "\"");
+      length += text.length() + title.length();
+    }
+    return length;
+  }
+
+  private static long singlePass(StringBuilder html, Throwable throwable, int iterations) {
+    long length = 0;
+    for (int i = 0; i < iterations; i++) {
+      html.setLength(0);
+      LogUtil.appendEscapedAttribute(html, LogUtil.formatTitle(MESSAGE, throwable));
+      LogUtil.appendEscapedHtml(html, MESSAGE);
+      LogUtil.appendStackTraceHtml(html, throwable);
+      length += html.length();
+    }
+    return length;
+  }
+}
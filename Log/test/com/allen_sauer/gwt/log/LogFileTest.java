@@ -0,0 +1,12 @@
+package com.allen_sauer.gwt.log;
+
+import java.io.File;
+
+public class LogFileTest extends LogTest {
+  public static void main(String[] args) {
+    System.setProperty("gwt-log.RemoteLogger", "FILE");
+    System.setProperty("gwt-log.file", new File(System.getProperty("java.io.tmpdir"),
+        "gwt-log-test.log").getPath());
+    testApi();
+  }
+}
@@ -0,0 +1,88 @@
+package com.allen_sauer.gwt.log;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.shared.LogRecord;
+import com.allen_sauer.gwt.log.shared.UnwrappedClientThrowable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Compares reconstituting a client throwable once per logger (the previous behavior of
+ * {@link LogRecord#getThrowable()}) with the memoized implementation.
+ */
+public class LogRecordThrowableBenchmark {
+  private static final int ITERATIONS = 20000;
+  private static final int LOGGERS = 5;
+
+  public static void main(String[] args) throws Exception {
+    LogRecord record = roundTrip(new LogRecord("gwt-log", Log.LOG_LEVEL_ERROR, "error",
+        new RuntimeException("outer", new IllegalStateException("inner"))));
+
+    // warm up
+    unwrapPerLogger(record, ITERATIONS);
+    memoized(record, ITERATIONS);
+
+    long start = System.nanoTime();
+    long unwrapped = unwrapPerLogger(record, ITERATIONS);
+    long unwrapNanos = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    long memoized = memoized(record, ITERATIONS);
+    long memoizedNanos = System.nanoTime() - start;
+
+    System.out.println("unwrap per logger: " + unwrapNanos / ITERATIONS + " ns/record, "
+        + unwrapped + " throwables reconstituted");
+    System.out.println("memoized:          " + memoizedNanos / ITERATIONS + " ns/record, "
+        + memoized + " throwables reconstituted");
+
+    // deobfuscation replaces the stack trace; the cached throwable must be discarded
+    Throwable before = record.getThrowable();
+    record.getModifiableWrappedClientThrowable().getCause().setClientStackTrace(
+        new StackTraceElement[] {new StackTraceElement("Foo", "bar", "Foo.java", 1)});
+    Throwable after = record.getThrowable();
+    if (before == after || !"Foo".equals(after.getCause().getStackTrace()[0].getClassName())) {
+      throw new AssertionError("stale reconstituted throwable after setClientStackTrace()");
+    }
+  }
+
+  private static long memoized(LogRecord record, int iterations) {
+    Throwable last = null;
+    long distinct = 0;
+    for (int i = 0; i < iterations; i++) {
+      for (int j = 0; j < LOGGERS; j++) {
+        Throwable t = record.getThrowable();
+        if (t != last) {
+          distinct++;
+          last = t;
+        }
+      }
+    }
+    return distinct;
+  }
+
+  private static LogRecord roundTrip(LogRecord record) throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(record);
+    out.close();
+    return (LogRecord) new ObjectInputStream(
+        new ByteArrayInputStream(bytes.toByteArray())).readObject();
+  }
+
+  private static long unwrapPerLogger(LogRecord record, int iterations) {
+    long count = 0;
+    for (int i = 0; i < iterations; i++) {
+      for (int j = 0; j < LOGGERS; j++) {
+        if (UnwrappedClientThrowable.getInstanceOrNull(
+            record.getModifiableWrappedClientThrowable()) != null) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+}
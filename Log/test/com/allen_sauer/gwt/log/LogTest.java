@@ -1,6 +1,8 @@
 package com.allen_sauer.gwt.log;
 
 import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.client.LogMessageSupplier;
+import com.allen_sauer.gwt.log.shared.LogRecord;
 
 public class LogTest {
   protected static void testApi() {
@@ -19,6 +21,7 @@ public class LogTest {
 
     Log.info("info");
     Log.info("info", new NullPointerException());
+    Log.info("literal {0} and 'quotes'");
 
     Log.warn("warn");
     Log.warn("warn", new NullPointerException());
@@ -28,5 +31,30 @@ public class LogTest {
 
     Log.fatal("fatal");
     Log.fatal("fatal", new NullPointerException());
+
+    Log.traceLazy(new LogMessageSupplier() {
+      @Override
+      public String get() {
+        if (!Log.isTraceEnabled()) {
+          throw new IllegalStateException("message produced while TRACE is disabled");
+        }
+        return "lazy trace";
+      }
+    });
+    Log.infoLazy("some.category", new LogMessageSupplier() {
+      @Override
+      public String get() {
+        return "lazy info";
+      }
+    }, new NullPointerException());
+
+    Log.debug("some.category", "parameterized {} {}", "debug", new int[0].length);
+    Log.info("some.category", "parameterized {}", "info", new NullPointerException());
+
+    Log.putContext("user", "fred");
+    LogRecord record = new LogRecord("some.category", Log.LOG_LEVEL_WARN, "attributes", null);
+    record.set("remoteAddr", "127.0.0.1");
+    Log.log(record);
+    Log.removeContext("user");
   }
 }
@@ -0,0 +1,86 @@
+package com.allen_sauer.gwt.log;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.client.LogUtil;
+import com.allen_sauer.gwt.log.server.PatternLayout;
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+
+/**
+ * Checks {@link PatternLayout} output and reports its per-record allocation.
+ */
+public class PatternLayoutTest {
+  private static final int ITERATIONS = 200000;
+
+  public static void main(String[] args) {
+    LogRecord record = new LogRecord("com.example.foo.MyClass", Log.LOG_LEVEL_WARN, "hello",
+        null);
+    String nl = System.getProperty("line.separator");
+
+    check("%m%n", record, "hello" + nl);
+    check("[%-5p] [%5p] [%.2p] %%", record, "[WARN ] [ WARN] [WA] %");
+    check("%c|%c{1}|%c{2}|%20c{1}|%-8.3c{1}|", record,
+        "com.example.foo.MyClass|MyClass|foo.MyClass|             MyClass|MyC|");
+    check("%x %X{key} %3x|", record, "-    -|");
+    HashMap<String, String> context = new HashMap<String, String>();
+    context.put("user", "fred");
+    context.put("key", "shadowed");
+    record.setContext(context);
+    record.set("key", "value");
+    check("%X{key} %X{user} %-6X{user}| %X{logSequence}", record, "value fred fred  | "
+        + record.getRecordSequence());
+    check("%d{yyyy}", record, new SimpleDateFormat("yyyy").format(new Date(record.getTimestamp())));
+    check("%d", record, new SimpleDateFormat("yyyy-MM-dd HH:mm:ss,SSS").format(
+        new Date(record.getTimestamp())));
+    check("%C{1}.%M", record, "PatternLayoutTest.main");
+    check("%m", new LogRecord(null, Log.LOG_LEVEL_INFO, "{}+{}={} \\{} \\\\{} {}",
+        new Object[] {1, 2, new Object[] {3, null}, "x", "y"}, null), "1+2=[3, null] {} \\x y");
+    Object[] cyclic = new Object[] {"z", null};
+    cyclic[1] = cyclic;
+    check("%m", new LogRecord(null, Log.LOG_LEVEL_INFO, "{} {} {} {} {}", new Object[] {
+        new int[] {1, 2}, new char[] {'a'}, new Object[] {"x", new String[] {"y"}},
+        new Object[] {new long[] {3}, new double[] {0.5}}, cyclic}, null),
+        "[1, 2] [a] [x, [y]] [[3], [0.5]] [z, [...]]");
+    Throwable e = new Throwable();
+    check("%m", new LogRecord(null, Log.LOG_LEVEL_INFO, "{} {}", new Object[] {"a", "b", e},
+        LogUtil.getThrowableCandidate("{} {}", new Object[] {"a", "b", e})), "a b");
+    check("%m", new LogRecord(null, Log.LOG_LEVEL_INFO, "{}", new Object[] {e}, null),
+        e.toString());
+    if (LogUtil.getThrowableCandidate("{} {}", new Object[] {"a", e}) != null) {
+      throw new AssertionError("throwable consumed by a placeholder is not the exception");
+    }
+
+    PatternLayout layout = new PatternLayout("%d [%-5p] %c{1}: %m%n");
+    StringBuilder buf = new StringBuilder();
+    for (int i = 0; i < ITERATIONS; i++) {
+      buf.setLength(0);
+      layout.format(record, buf);
+    }
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    long allocated = threads.getThreadAllocatedBytes(threadId);
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      buf.setLength(0);
+      layout.format(record, buf);
+    }
+    long nanos = System.nanoTime() - start;
+    allocated = threads.getThreadAllocatedBytes(threadId) - allocated;
+    System.out.println("'" + layout.getPattern().trim() + "': " + nanos / ITERATIONS
+        + " ns/record, " + allocated / ITERATIONS + " bytes allocated/record");
+  }
+
+  private static void check(String pattern, LogRecord record, String expected) {
+    StringBuilder buf = new StringBuilder();
+    new PatternLayout(pattern).format(record, buf);
+    if (!expected.equals(buf.toString())) {
+      throw new AssertionError("pattern '" + pattern + "' produced '" + buf + "' instead of '"
+          + expected + "'");
+    }
+  }
+}
@@ -0,0 +1,200 @@
+package com.allen_sauer.gwt.log.rebind;
+
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles the formatter code generated by {@link LogMessageFormatterGenerator} and by the previous
+ * string concatenation generator for a corpus of patterns, and checks that both produce the same
+ * output. Date and elapsed time conversions are excluded, since they depend on the GWT runtime
+ * and the current time.
+ */
+public class LogMessageFormatterGeneratorTest {
+  private static final String[] CATEGORIES = {
+      "com.example.foo.MyClass", "MyClass", "",
+      "a.very.long.category.name.which.exceeds.any.width"};
+
+  private static final String[] LEVELS = {"TRACE", "DEBUG", "INFO", "WARN", "ERROR", "FATAL"};
+
+  private static final String[] MESSAGES = {"hello", "", "multi\nline", "100% 'quoted'"};
+
+  private static final String[] PATTERNS = {
+      "%m", "%m%n", "%-5p %m%n", "(%F:%L) [%-5p] %m%n", "%5p|%-5p|%.3p|%2.3p|%-10.3p|",
+      "%c %c{1} %c{2} %c{9} %20c{1} %-20c %.10c %10.20c{2}", "%C %C{1} %M %l %F %L",
+      "%t %x %X %% %5% %-3x| %.1t", "%%m %m%% 100%", "[%10m] [%-10m] [%.2m] [%3.5m]",
+      "literal only", "", "%z %m %q", "%n%n%m%n",};
+
+  public static void main(String[] args) throws Exception {
+    File dir = new File(System.getProperty("java.io.tmpdir"), "gwt-log-formatter-test-"
+        + System.nanoTime());
+    List<String> sources = new ArrayList<String>();
+    for (int i = 0; i < PATTERNS.length; i++) {
+      sources.add(writeClass(dir, "Current" + i, LogMessageFormatterGenerator.logPatternToCode(
+          PATTERNS[i], new LinkedHashMap<String, Integer>()), null));
+      sources.add(writeClass(dir, "Legacy" + i, legacyLogPatternToCode(PATTERNS[i]),
+          "text.substring(0, maxLength)"));
+      sources.add(writeClass(dir, "LegacyGuarded" + i, legacyLogPatternToCode(PATTERNS[i]),
+          "text.length() > maxLength ? text.substring(0, maxLength) : text"));
+    }
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    List<String> compilerArgs = new ArrayList<String>();
+    compilerArgs.add("-nowarn");
+    compilerArgs.add("-cp");
+    compilerArgs.add(System.getProperty("java.class.path"));
+    compilerArgs.add("-d");
+    compilerArgs.add(dir.getPath());
+    compilerArgs.addAll(sources);
+    if (compiler.run(null, null, null, compilerArgs.toArray(new String[0])) != 0) {
+      throw new AssertionError("generated code does not compile");
+    }
+
+    URLClassLoader loader = new URLClassLoader(new URL[] {dir.toURI().toURL()},
+        LogMessageFormatterGeneratorTest.class.getClassLoader());
+    Throwable throwable = new RuntimeException("boom");
+    int comparisons = 0;
+    int trimFixes = 0;
+    for (int i = 0; i < PATTERNS.length; i++) {
+      Method current = formatMethod(loader, "Current" + i);
+      Method legacy = formatMethod(loader, "Legacy" + i);
+      Method guarded = formatMethod(loader, "LegacyGuarded" + i);
+      for (String level : LEVELS) {
+        for (String category : CATEGORIES) {
+          for (String message : MESSAGES) {
+            Object[] params = {level, category, message, throwable, 0L, null};
+            String actual = (String) current.invoke(null, params);
+            String expected;
+            try {
+              expected = (String) legacy.invoke(null, params);
+            } catch (java.lang.reflect.InvocationTargetException e) {
+              if (!(e.getCause() instanceof StringIndexOutOfBoundsException)) {
+                throw e;
+              }
+              // LogUtil.trim() used to fail on text shorter than the maximum width
+              expected = (String) guarded.invoke(null, params);
+              trimFixes++;
+            }
+            if (!expected.equals(actual)) {
+              throw new AssertionError("pattern '" + PATTERNS[i] + "' produced '" + actual
+                  + "' instead of '" + expected + "'");
+            }
+            comparisons++;
+          }
+        }
+      }
+    }
+    loader.close();
+    System.out.println(PATTERNS.length + " patterns, " + comparisons + " comparisons, "
+        + trimFixes + " of which previously failed in LogUtil.trim()");
+  }
+
+  private static Method formatMethod(ClassLoader loader, String className) throws Exception {
+    return loader.loadClass("generated." + className).getMethod("format", String.class,
+        String.class, String.class, Throwable.class, long.class, LogRecord.class);
+  }
+
+  /**
+   * The string concatenation code generator which preceded the current implementation, minus
+   * date support.
+   */
+  private static String legacyLogPatternToCode(String logPattern) {
+    HashMap<String, String> conversionMap = new HashMap<String, String>();
+    conversionMap.put("c", "category");
+    conversionMap.put("C", "ste == null ? \"-\" : ste.getClassName()");
+    conversionMap.put("F", "ste == null ? \"-\" : ste.getFileName()");
+    conversionMap.put("l", "ste == null ? \"-\" : ste.toString()");
+    conversionMap.put("L", "ste == null ? \"-\" : ste.getLineNumber()");
+    conversionMap.put("m", "message");
+    conversionMap.put("M", "ste == null ? \"-\" : ste.getMethodName()");
+    conversionMap.put("n", "\"\\\\n\"");
+    conversionMap.put("p", "logLevelText");
+    conversionMap.put("t", "\"-\"");
+    conversionMap.put("x", "\"-\"");
+    conversionMap.put("X", "\"-\"");
+    conversionMap.put("%", "\"%\"");
+
+    StringBuffer buf = new StringBuffer("\"\"");
+    Pattern pattern = Pattern.compile("(.*?)%(-?)(\\d*)\\.?(\\d*)([cCdFlLmMnprtxX%])(\\{([^\\}]+)\\})?");
+    Matcher matcher = pattern.matcher(logPattern);
+    while (matcher.find()) {
+      buf.append("\n + \"").append(matcher.group(1)).append("\"");
+      int minFieldWidth = Integer.parseInt(matcher.group(2) + "0" + matcher.group(3));
+      int maxFieldWidth = Integer.parseInt("0" + matcher.group(4));
+      String conversionSpecifier = matcher.group(5);
+      String formatSpecifier = matcher.group(7);
+
+      String convertedExpression = conversionMap.get(conversionSpecifier);
+      if (conversionSpecifier.equals("c") || conversionSpecifier.equals("C")) {
+        if (formatSpecifier != null) {
+          int precision = Integer.parseInt("0" + formatSpecifier);
+          convertedExpression = "LogUtil.formatCategory(" + convertedExpression + ", "
+              + precision + ")";
+        }
+      }
+      if (minFieldWidth > 0) {
+        convertedExpression = "LogUtil.padLeft(" + convertedExpression + ", " + minFieldWidth
+            + ")";
+      } else if (minFieldWidth < 0) {
+        convertedExpression = "LogUtil.padRight(" + convertedExpression + ", " + -minFieldWidth
+            + ")";
+      }
+      if (maxFieldWidth > 0) {
+        convertedExpression = "LogUtil.legacyTrim(" + convertedExpression + ", " + maxFieldWidth
+            + ")";
+      }
+      buf.append("\n + (");
+      matcher.appendReplacement(buf, convertedExpression);
+      buf.append(")");
+    }
+    buf.append("\n + \"");
+    matcher.appendTail(buf);
+    buf.append("\"");
+    return "StackTraceElement ste = LogUtil.getCallingStackTraceElement(throwable);\n"
+        + "return " + buf.toString() + ";";
+  }
+
+  private static String writeClass(File dir, String className, String body, String legacyTrim)
+      throws IOException {
+    File file = new File(dir, "generated/" + className + ".java");
+    file.getParentFile().mkdirs();
+    Writer writer = new FileWriter(file);
+    try {
+      writer.write("package generated;\n"
+          + "import com.google.gwt.core.client.GWT;\n"
+          + (legacyTrim == null ? "import com.allen_sauer.gwt.log.client.LogUtil;\n" : "")
+          + "public class " + className + " {\n"
+          + (legacyTrim == null ? ""
+              : "  static class LogUtil extends com.allen_sauer.gwt.log.client.LogUtil {\n"
+              + "    static String legacyTrim(String text, int maxLength) {\n"
+              + "      return " + legacyTrim + ";\n"
+              + "    }\n"
+              + "  }\n")
+          + "  public static String format(String logLevelText, String category, String message,"
+          + " Throwable throwable, long timestamp,"
+          + " com.allen_sauer.gwt.log.shared.LogRecord record) {\n"
+          + "    if (category == null) { category = \"<null category>\"; }\n"
+          + "    if (message == null) { message = \"<null message>\"; }\n"
+          + body + "\n"
+          + "  }\n"
+          + "}\n");
+    } finally {
+      writer.close();
+    }
+    return file.getPath();
+  }
+}
@@ -0,0 +1,119 @@
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares looking up the JDK logger for each record's category (the previous behavior of
+ * {@link ServerLogImplJDK14#log(LogRecord)}) with the cached lookup, from several threads at
+ * once. Records are logged below the effective level, so the lookup dominates.
+ */
+public class CategoryLoggerCacheBenchmark {
+  private static final int CATEGORIES = 200;
+  private static final int ITERATIONS = 2000;
+  private static final int THREADS = 8;
+
+  public static void main(String[] args) throws Exception {
+    final LogRecord[] records = new LogRecord[CATEGORIES];
+    for (int i = 0; i < CATEGORIES; i++) {
+      records[i] = new LogRecord("category" + i, Log.LOG_LEVEL_TRACE, "trace", null);
+    }
+    final ServerLogImplJDK14 cached = new ServerLogImplJDK14();
+    Runnable lookup = new Runnable() {
+      @Override
+      public void run() {
+        for (LogRecord record : records) {
+          Logger logger = Logger.getLogger(record.getCategory());
+          if (logger.isLoggable(Level.FINE)) {
+            throw new AssertionError("FINE should not be loggable");
+          }
+        }
+      }
+    };
+    Runnable cache = new Runnable() {
+      @Override
+      public void run() {
+        for (LogRecord record : records) {
+          cached.log(record);
+        }
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      // warm up
+      time(executor, lookup);
+      time(executor, cache);
+
+      long lookupNanos = time(executor, lookup);
+      long cacheNanos = time(executor, cache);
+      long logged = (long) THREADS * ITERATIONS * CATEGORIES;
+      System.out.println(THREADS + " threads, " + CATEGORIES + " categories");
+      System.out.println("Logger.getLogger() per record: " + lookupNanos / logged
+          + " ns/record");
+      System.out.println("cached:                        " + cacheNanos / logged
+          + " ns/record");
+    } finally {
+      executor.shutdown();
+    }
+
+    // client supplied categories must not grow the cache, or the framework, without bound
+    CategoryLoggerCache<String> bounded = new CategoryLoggerCache<String>(10) {
+      @Override
+      String create(String category) {
+        return category;
+      }
+
+      @Override
+      String fallback() {
+        return "fallback";
+      }
+    };
+    for (int i = 0; i < 100; i++) {
+      String expected = i < 10 ? "category" + i : "fallback";
+      if (!bounded.get("category" + i).equals(expected)) {
+        throw new AssertionError("wrong logger for category" + i);
+      }
+    }
+    if (bounded.size() != 10) {
+      throw new AssertionError("expected 10 cached loggers, found " + bounded.size());
+    }
+
+    // nor pass arbitrary text to the logging framework
+    String[] invalid = {"", "with space", "line\nbreak", "<script>", new String(new char[300])
+        .replace('\0', 'x')};
+    for (String category : invalid) {
+      if (!bounded.get(category).equals("fallback")) {
+        throw new AssertionError("expected fallback logger for '" + category + "'");
+      }
+    }
+  }
+
+  private static long time(ExecutorService executor, final Runnable runnable) throws Exception {
+    Callable<Void> task = new Callable<Void>() {
+      @Override
+      public Void call() {
+        for (int i = 0; i < ITERATIONS; i++) {
+          runnable.run();
+        }
+        return null;
+      }
+    };
+    Future<?>[] futures = new Future<?>[THREADS];
+    long start = System.nanoTime();
+    for (int i = 0; i < THREADS; i++) {
+      futures[i] = executor.submit(task);
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    return System.nanoTime() - start;
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds a skewed stream of keys with a long tail of distinct keys to {@link HeavyHitters} from
+ * several threads, then checks the top keys and their estimates against exact counts, the bound
+ * on tracked keys and expiry from the sliding window.
+ */
+public class HeavyHittersTest {
+  private static final int CAPACITY = 100;
+  private static final int EVENTS_PER_THREAD = 250000;
+  private static final int THREADS = 8;
+  private static final int TOP = 20;
+  private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  public static void main(String[] args) throws Exception {
+    // generate the streams up front, so that only add() is timed
+    final String[][] streams = new String[THREADS][EVENTS_PER_THREAD];
+    HashMap<String, Integer> exact = new HashMap<String, Integer>();
+    Random random = new Random(42);
+    for (String[] stream : streams) {
+      for (int i = 0; i < stream.length; i++) {
+        // one in four events is a unique key, the rest follow a power law over 1000 keys
+        String key = random.nextInt(4) == 0 ? "unique" + random.nextLong()
+            : "key" + (int) Math.pow(1000, random.nextDouble() * random.nextDouble());
+        stream[i] = key;
+        Integer count = exact.get(key);
+        exact.put(key, count == null ? 1 : count + 1);
+      }
+    }
+
+    final HeavyHitters heavyHitters = new HeavyHitters(WINDOW_MILLIS, 10, 1024, CAPACITY);
+    final LogRecord record = new LogRecord("category", Log.LOG_LEVEL_ERROR, "error", null);
+    final long now = System.currentTimeMillis();
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    long start = System.nanoTime();
+    try {
+      Future<?>[] futures = new Future<?>[THREADS];
+      for (int t = 0; t < THREADS; t++) {
+        final String[] stream = streams[t];
+        futures[t] = executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            for (String key : stream) {
+              heavyHitters.add(key, record, now);
+            }
+          }
+        });
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    long nanos = System.nanoTime() - start;
+    long total = (long) THREADS * EVENTS_PER_THREAD;
+    System.out.println(total + " events, " + exact.size() + " distinct keys, " + THREADS
+        + " threads: " + nanos / total + " ns/event");
+
+    if (heavyHitters.size() > CAPACITY) {
+      throw new AssertionError("tracking " + heavyHitters.size() + " keys");
+    }
+
+    // the sketch overcounts by about total / width per row, far less with four rows
+    long tolerance = total / 1024;
+    List<HeavyHitters.Entry> top = heavyHitters.top(TOP, now);
+    for (HeavyHitters.Entry entry : top) {
+      int actual = exact.get(entry.getKey());
+      if (entry.getCount() < actual || entry.getCount() > actual + tolerance) {
+        throw new AssertionError(entry.getKey() + " estimated " + entry.getCount() + ", actual "
+            + actual);
+      }
+      if (entry.getSample() != record) {
+        throw new AssertionError("no sample for " + entry.getKey());
+      }
+    }
+    // every key which is more frequent than the least frequent one reported must be reported
+    long reportedMin = top.get(top.size() - 1).getCount();
+    for (String key : exact.keySet()) {
+      if (exact.get(key) > reportedMin + tolerance && !contains(top, key)) {
+        throw new AssertionError(key + " with " + exact.get(key) + " occurrences not reported");
+      }
+    }
+    System.out.println("top " + TOP + ": " + top.get(0).getKey() + "=" + top.get(0).getCount()
+        + " .. " + top.get(TOP - 1).getKey() + "=" + reportedMin);
+
+    // rarely seen keys are not admitted while the tracked keys are more frequent
+    heavyHitters.add("rare", record, now);
+    if (contains(heavyHitters.top(CAPACITY, now), "rare")) {
+      throw new AssertionError("'rare' should not displace frequent keys");
+    }
+
+    // a key which was frequent before the window slid past it is replaced by a new one
+    long later = now + WINDOW_MILLIS;
+    for (int i = 0; i < 3; i++) {
+      heavyHitters.add("new", record, later);
+    }
+    top = heavyHitters.top(TOP, later);
+    if (top.size() != 1 || !"new".equals(top.get(0).getKey()) || top.get(0).getCount() != 3) {
+      throw new AssertionError("expected only 'new' after the window slid");
+    }
+    System.out.println("PASS");
+  }
+
+  private static boolean contains(List<HeavyHitters.Entry> entries, String key) {
+    for (HeavyHitters.Entry entry : entries) {
+      if (entry.getKey().equals(key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
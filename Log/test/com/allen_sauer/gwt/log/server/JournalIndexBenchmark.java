@@ -0,0 +1,148 @@
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.client.Log;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Indexes 10M synthetic records spread over a day, then times queries such as "all errors for
+ * permutation X with fingerprint Y in the last hour", verifying each result against a brute force
+ * scan of the generated records.
+ */
+public class JournalIndexBenchmark {
+  private static final int CATEGORIES = 50;
+  private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+  private static final int FINGERPRINTS = 500;
+  private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+  private static final int[] LEVELS = {
+      Log.LOG_LEVEL_TRACE, Log.LOG_LEVEL_DEBUG, Log.LOG_LEVEL_INFO, Log.LOG_LEVEL_WARN,
+      Log.LOG_LEVEL_ERROR, Log.LOG_LEVEL_FATAL};
+  private static final int PERMUTATIONS = 8;
+  private static final int RECORDS = 10000000;
+  private static final int REMOTE_ADDRS = 10000;
+
+  private static int[] categories;
+  private static int[] fingerprints;
+  private static long[] ingests;
+  private static byte[] levels;
+  private static int[] permutations;
+  private static int[] remoteAddrs;
+
+  public static void main(String[] args) throws Exception {
+    generate();
+    Path dir = Files.createTempDirectory("gwt-log-index");
+    try {
+      JournalIndex index = new JournalIndex(dir, HOUR_MILLIS);
+      long start = System.nanoTime();
+      for (int i = 0; i < RECORDS; i++) {
+        // the index retains each map until the indexer thread gets to it
+        HashMap<String, String> attributes = new HashMap<String, String>();
+        attributes.put("logSequence", "" + i);
+        attributes.put("permutation", "P" + permutations[i]);
+        attributes.put("remoteAddr", "10.0." + remoteAddrs[i] / 256 + "." + remoteAddrs[i] % 256);
+        if (fingerprints[i] >= 0) {
+          attributes.put("fingerprint", "F" + fingerprints[i]);
+        }
+        index.add(i / 100000, i % 100000 * 100, ingests[i], LEVELS[levels[i]],
+            "category" + categories[i], attributes);
+      }
+      index.close();
+      long indexNanos = System.nanoTime() - start;
+      long bytes = 0;
+      int files = 0;
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.resolve("index"))) {
+        for (Path path : stream) {
+          bytes += Files.size(path);
+          files++;
+        }
+      }
+      System.out.println(RECORDS + " records indexed in " + indexNanos / 1000000 + " ms ("
+          + indexNanos / RECORDS + " ns/record), " + files + " partitions, " + bytes / RECORDS
+          + " bytes/record");
+
+      // reopen, as a separate process searching the sealed partitions would
+      index = JournalIndex.open(dir);
+      long now = ingests[RECORDS - 1];
+      query(index, "errors, permutation, fingerprint, last hour", new JournalQuery(
+          now - HOUR_MILLIS, now).minimumLevel(Log.LOG_LEVEL_ERROR).attribute("permutation", "P3")
+          .attribute("fingerprint", "F7"), Log.LOG_LEVEL_ERROR, -1, 3, 7, -1, now - HOUR_MILLIS,
+          now);
+      query(index, "fingerprint, whole day", new JournalQuery(0, now).attribute("fingerprint",
+          "F7"), Log.LOG_LEVEL_TRACE, -1, -1, 7, -1, 0, now);
+      query(index, "remoteAddr, whole day", new JournalQuery(0, now).attribute("remoteAddr",
+          "10.0.1.2"), Log.LOG_LEVEL_TRACE, -1, -1, -1, 258, 0, now);
+      query(index, "category, warnings, six hours", new JournalQuery(now - 6 * HOUR_MILLIS, now)
+          .category("category5").minimumLevel(Log.LOG_LEVEL_WARN), Log.LOG_LEVEL_WARN, 5, -1, -1,
+          -1, now - 6 * HOUR_MILLIS, now);
+    } finally {
+      delete(dir);
+    }
+  }
+
+  private static void delete(Path path) throws Exception {
+    if (Files.isDirectory(path)) {
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+        for (Path child : stream) {
+          delete(child);
+        }
+      }
+    }
+    Files.delete(path);
+  }
+
+  private static void generate() {
+    Random random = new Random(42);
+    categories = new int[RECORDS];
+    fingerprints = new int[RECORDS];
+    ingests = new long[RECORDS];
+    levels = new byte[RECORDS];
+    permutations = new int[RECORDS];
+    remoteAddrs = new int[RECORDS];
+    long base = 1400000000000L;
+    for (int i = 0; i < RECORDS; i++) {
+      ingests[i] = base + i * DAY_MILLIS / RECORDS;
+      categories[i] = random.nextInt(CATEGORIES);
+      levels[i] = (byte) random.nextInt(LEVELS.length);
+      // only warnings and above have a throwable, skewed towards a few common failures
+      fingerprints[i] = LEVELS[levels[i]] >= Log.LOG_LEVEL_WARN
+          ? (int) (FINGERPRINTS * Math.pow(random.nextDouble(), 3)) : -1;
+      permutations[i] = random.nextInt(PERMUTATIONS);
+      remoteAddrs[i] = random.nextInt(REMOTE_ADDRS);
+    }
+  }
+
+  private static void query(JournalIndex index, String description, JournalQuery query,
+      int minimumLevel, int category, int permutation, int fingerprint, int remoteAddr, long from,
+      long to) throws Exception {
+    int expected = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < RECORDS; i++) {
+      if (LEVELS[levels[i]] >= minimumLevel && (category < 0 || categories[i] == category)
+          && (permutation < 0 || permutations[i] == permutation)
+          && (fingerprint < 0 || fingerprints[i] == fingerprint)
+          && (remoteAddr < 0 || remoteAddrs[i] == remoteAddr) && ingests[i] >= from
+          && ingests[i] <= to) {
+        expected++;
+      }
+    }
+    long scanNanos = System.nanoTime() - start;
+
+    // warm up
+    index.find(query, Integer.MAX_VALUE);
+    start = System.nanoTime();
+    List<long[]> refs = index.find(query, Integer.MAX_VALUE);
+    long indexNanos = System.nanoTime() - start;
+    if (refs.size() != expected) {
+      throw new AssertionError(description + ": expected " + expected + " records, found "
+          + refs.size());
+    }
+    System.out.println(description + ": " + refs.size() + " records in "
+        + indexNanos / 1000 + " us (in-memory scan of the generated fields: "
+        + scanNanos / 1000 + " us)");
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Records a long tailed distribution of durations into {@link LatencyHistogram} from several
+ * short lived threads and checks the percentiles against the exact values, then checks interval
+ * snapshots and clamping.
+ */
+public class LatencyHistogramTest {
+  private static final double[] PERCENTILES = {0, 50, 90, 99, 99.9, 99.99, 100};
+  private static final int THREADS = 8;
+  private static final int VALUES_PER_THREAD = 1000000;
+
+  public static void main(String[] args) throws Exception {
+    final long[][] values = new long[THREADS][VALUES_PER_THREAD];
+    Random random = new Random(42);
+    for (long[] v : values) {
+      for (int i = 0; i < v.length; i++) {
+        // log-normal around 20 microseconds, with an occasional multi-second outlier
+        v[i] = random.nextInt(100000) == 0 ? 1000000000L * (1 + random.nextInt(10))
+            : (long) (20000 * Math.exp(random.nextGaussian() * 1.5));
+      }
+    }
+
+    // warm up
+    LatencyHistogram warmUp = new LatencyHistogram(Long.MAX_VALUE);
+    for (long value : values[0]) {
+      warmUp.record(value);
+    }
+
+    final LatencyHistogram histogram = new LatencyHistogram(Long.MAX_VALUE);
+    Thread[] threads = new Thread[THREADS];
+    long start = System.nanoTime();
+    for (int t = 0; t < THREADS; t++) {
+      final int index = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (long value : values[index]) {
+            histogram.record(value);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long nanos = System.nanoTime() - start;
+    System.out.println(THREADS + " threads: " + nanos / THREADS / VALUES_PER_THREAD
+        + " ns/record");
+
+    // the counts outlive the recording threads
+    LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+    check("repeated snapshot", snapshot, histogram.getSnapshot());
+
+    long[] sorted = new long[THREADS * VALUES_PER_THREAD];
+    long sum = 0;
+    for (int t = 0; t < THREADS; t++) {
+      System.arraycopy(values[t], 0, sorted, t * VALUES_PER_THREAD, VALUES_PER_THREAD);
+    }
+    for (long value : sorted) {
+      sum += value;
+    }
+    Arrays.sort(sorted);
+    if (snapshot.getCount() != sorted.length || snapshot.getTotalNanos() != sum) {
+      throw new AssertionError("count " + snapshot.getCount() + ", total "
+          + snapshot.getTotalNanos());
+    }
+    for (double percentile : PERCENTILES) {
+      long exact = sorted[Math.max(0, (int) Math.ceil(percentile / 100 * sorted.length) - 1)];
+      long estimate = snapshot.getValueAtPercentile(percentile);
+      // reported as the highest value in the sub-bucket, so never lower and at most 1/64 higher
+      if (estimate < exact || estimate > exact + exact / 64) {
+        throw new AssertionError("p" + percentile + " estimated " + estimate + ", exact "
+            + exact);
+      }
+      System.out.println("p" + percentile + ": " + estimate + " ns (exact " + exact + ")");
+    }
+
+    // values up to 127 are exact, larger ones are clamped
+    LatencyHistogram small = new LatencyHistogram(0);
+    for (int i = 0; i < 128; i++) {
+      small.record(i);
+    }
+    LatencyHistogram.Snapshot interval = small.getIntervalSnapshot();
+    check("p50 of 0..127", 63, interval.getValueAtPercentile(50));
+    check("max of 0..127", 127, interval.getMaxNanos());
+    small.record(Long.MAX_VALUE);
+    small.record(-1);
+    interval = small.getIntervalSnapshot();
+    check("interval count", 2, interval.getCount());
+    check("clamped", (1L << LatencyHistogram.MAX_BITS) - 1, interval.getMaxNanos());
+    check("total count", 130, small.getSnapshot().getCount());
+    System.out.println("PASS");
+  }
+
+  private static void check(String what, LatencyHistogram.Snapshot expected,
+      LatencyHistogram.Snapshot actual) {
+    check(what, expected.getCount(), actual.getCount());
+    check(what, expected.getTotalNanos(), actual.getTotalNanos());
+  }
+
+  private static void check(String what, long expected, long actual) {
+    if (expected != actual) {
+      throw new AssertionError(what + ": expected " + expected + ", actual " + actual);
+    }
+  }
+}
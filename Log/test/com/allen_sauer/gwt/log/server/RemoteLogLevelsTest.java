@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.client.LogUtil;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Checks which {@link RemoteLogLevels} override a client receives, and the conditional responses
+ * of {@link RemoteLogLevelServlet}.
+ */
+public class RemoteLogLevelsTest {
+  private static final String CHROME = "Mozilla/5.0 (X11; Linux x86_64) Chrome/33.0 Safari/537.36";
+
+  public static void main(String[] args) throws Exception {
+    Map<String, Integer> parsed = LogUtil.parseLogLevels(" WARN, com.acme.grid = TRACE,");
+    check("parsed levels", 2, parsed.size());
+    check("current level", Log.LOG_LEVEL_WARN, parsed.get(null));
+    check("category level", Log.LOG_LEVEL_TRACE, parsed.get("com.acme.grid"));
+    check("empty levels", 0, LogUtil.parseLogLevels("").size());
+
+    RemoteLogLevels levels = new RemoteLogLevels();
+    check("no override", null, levels.getLevels("s1", "p1", CHROME));
+    levels.setOverride(RemoteLogLevels.TARGET_ANY, "WARN");
+    levels.setOverride(RemoteLogLevels.TARGET_USER_AGENT + "Chrome/", "INFO");
+    levels.setOverride(RemoteLogLevels.TARGET_PERMUTATION + "p1", "DEBUG");
+    levels.setOverride(RemoteLogLevels.TARGET_SESSION + "s1", "WARN,com.acme.grid=TRACE");
+    check("session", "WARN,com.acme.grid=TRACE", levels.getLevels("s1", "p1", CHROME));
+    check("permutation", "DEBUG", levels.getLevels("s2", "p1", CHROME));
+    check("user agent", "INFO", levels.getLevels(null, "p2", CHROME));
+    check("any", "WARN", levels.getLevels(null, null, "Mozilla/5.0 Firefox/27.0"));
+    levels.removeOverride(RemoteLogLevels.TARGET_SESSION + "s1");
+    check("removed session", "DEBUG", levels.getLevels("s1", "p1", CHROME));
+    expectRejected(levels, "user:fred", "TRACE");
+    expectRejected(levels, RemoteLogLevels.TARGET_ANY, "VERBOSE");
+    check("rejected override", "WARN", levels.getOverrides().get(RemoteLogLevels.TARGET_ANY));
+
+    RemoteLogLevels shared = RemoteLogLevels.getInstance();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    RemoteLogLevels.register();
+    server.invoke(new ObjectName(RemoteLogLevels.OBJECT_NAME), "setOverride", new Object[] {
+        RemoteLogLevels.TARGET_SESSION + "s3", "com.acme=TRACE"}, new String[] {
+        String.class.getName(), String.class.getName()});
+    check("JMX override", "com.acme=TRACE", shared.getLevels("s3", null, null));
+    RemoteLogLevels.unregister();
+    check("unregistered", false, server.isRegistered(new ObjectName(RemoteLogLevels.OBJECT_NAME)));
+
+    RemoteLogLevelServlet servlet = new RemoteLogLevelServlet();
+    Map<String, Object> response = get(servlet, "s3", null);
+    check("status", HttpServletResponse.SC_OK, response.get("status"));
+    check("body", "com.acme=TRACE", response.get("body"));
+    String etag = (String) response.get("ETag");
+    check("ETag", RemoteLogLevelServlet.etag("com.acme=TRACE"), etag);
+    // "Aa" and "BB" have the same String.hashCode()
+    check("distinct ETags", false, RemoteLogLevelServlet.etag("Aa").equals(
+        RemoteLogLevelServlet.etag("BB")));
+    check("unchanged", HttpServletResponse.SC_NOT_MODIFIED, get(servlet, "s3", etag).get("status"));
+    shared.setOverride(RemoteLogLevels.TARGET_SESSION + "s3", "com.acme=DEBUG");
+    check("changed", "com.acme=DEBUG", get(servlet, "s3", etag).get("body"));
+    check("other session", "", get(servlet, "s4", null).get("body"));
+    shared.removeOverride(RemoteLogLevels.TARGET_SESSION + "s3");
+    System.out.println("PASS");
+  }
+
+  private static void check(String what, Object expected, Object actual) {
+    if (expected == null ? actual != null : !expected.equals(actual)) {
+      throw new AssertionError(what + ": expected " + expected + ", actual " + actual);
+    }
+  }
+
+  private static void expectRejected(RemoteLogLevels levels, String target, String value) {
+    try {
+      levels.setOverride(target, value);
+    } catch (IllegalArgumentException e) {
+      return;
+    }
+    throw new AssertionError("accepted " + target + " " + value);
+  }
+
+  /**
+   * Issue a GET with the given session and If-None-Match header, returning the response status,
+   * body and headers.
+   */
+  private static Map<String, Object> get(RemoteLogLevelServlet servlet, final String sessionId,
+      final String ifNoneMatch) throws Exception {
+    final Map<String, Object> result = new HashMap<String, Object>();
+    result.put("status", HttpServletResponse.SC_OK);
+    final StringWriter body = new StringWriter();
+    HttpServletRequest request = proxy(HttpServletRequest.class, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        if (method.getName().equals("getRequestedSessionId")) {
+          return sessionId;
+        } else if (method.getName().equals("getHeader") && args[0].equals("If-None-Match")) {
+          return ifNoneMatch;
+        }
+        return null;
+      }
+    });
+    HttpServletResponse response = proxy(HttpServletResponse.class, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        if (method.getName().equals("setHeader")) {
+          result.put((String) args[0], args[1]);
+        } else if (method.getName().equals("setStatus")) {
+          result.put("status", args[0]);
+        } else if (method.getName().equals("getWriter")) {
+          return new PrintWriter(body, true);
+        }
+        return null;
+      }
+    });
+    servlet.doGet(request, response);
+    result.put("body", body.toString());
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+    return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler);
+  }
+}
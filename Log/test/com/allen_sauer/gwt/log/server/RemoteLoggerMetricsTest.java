@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 Fred Sauer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.client.Log;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+/**
+ * Updates {@link RemoteLoggerMetrics} from several threads and checks the totals, the per-second
+ * history and the attributes read through JMX.
+ */
+public class RemoteLoggerMetricsTest {
+  private static final int ITERATIONS = 1000000;
+  private static final int THREADS = 8;
+
+  public static void main(String[] args) throws Exception {
+    final RemoteLoggerMetrics metrics = RemoteLoggerMetrics.getInstance();
+    final StripedCounter counter = new StripedCounter();
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    long start = System.nanoTime();
+    try {
+      Future<?>[] futures = new Future<?>[THREADS];
+      for (int t = 0; t < THREADS; t++) {
+        futures[t] = executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            for (int i = 0; i < ITERATIONS; i++) {
+              counter.increment();
+              metrics.record(i % 2 == 0 ? Log.LOG_LEVEL_ERROR : Log.LOG_LEVEL_DEBUG);
+              metrics.getDispatchHistogram().record(i % 1000);
+            }
+          }
+        });
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    long nanos = System.nanoTime() - start;
+    long total = (long) THREADS * ITERATIONS;
+    System.out.println(THREADS + " threads: " + nanos / total
+        + " ns per record counted and timed");
+    check("counter", total, counter.sum());
+    check("ERROR records", total / 2, metrics.getRecordCounts().get("ERROR"));
+    check("DEBUG records", total / 2, metrics.getRecordCounts().get("DEBUG"));
+    LatencyHistogram.Snapshot dispatch = metrics.getDispatchHistogram().getSnapshot();
+    check("dispatch count", total, dispatch.getCount());
+    check("dispatch max", 999, dispatch.getMaxNanos());
+
+    // per-second counts, including seconds without any additions
+    RemoteLoggerMetrics.Rate rate = new RemoteLoggerMetrics.Rate();
+    rate.add(3, 1000);
+    rate.add(4, 1001);
+    rate.add(5, 1001);
+    rate.add(1, 1004);
+    check("rate", 0, rate.perSecond(1004));
+    check("rate", 1, rate.perSecond(1005));
+    long[] history = rate.history(1005);
+    long[] expected = new long[60];
+    expected[56] = 9;
+    expected[59] = 1;
+    expected[55] = 3;
+    if (!Arrays.equals(expected, history)) {
+      throw new AssertionError("history " + Arrays.toString(history));
+    }
+    check("rate after a gap", 0, rate.perSecond(2000));
+    check("sum", 13, rate.sum());
+
+    // registered while a servlet is in service
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(RemoteLoggerMetrics.OBJECT_NAME);
+    RemoteLoggerMetrics.register();
+    RemoteLoggerMetrics.register();
+    RemoteLoggerMetrics.unregister();
+    CompositeData latency = (CompositeData) server.getAttribute(name, "DispatchLatency");
+    if (!latency.containsKey("p999Nanos")) {
+      throw new AssertionError("no p999Nanos in " + latency);
+    }
+    TabularData recordCounts = (TabularData) server.getAttribute(name, "RecordCounts");
+    check("JMX ERROR records", total / 2,
+        (Long) recordCounts.get(new Object[] {"ERROR"}).get("value"));
+    RemoteLoggerMetrics.unregister();
+    if (server.isRegistered(name)) {
+      throw new AssertionError(name + " is still registered");
+    }
+    System.out.println("PASS");
+  }
+
+  private static void check(String what, long expected, long actual) {
+    if (expected != actual) {
+      throw new AssertionError(what + ": expected " + expected + ", actual " + actual);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Logs from several threads at once to a file which rolls frequently, then checks that every
+ * record was written exactly once, on its own line, with files rolled as soon as they reach the
+ * maximum size.
+ */
+public class ServerLogImplFileTest {
+  private static final int MAX_SIZE = 256 * 1024;
+  private static final int RECORDS_PER_THREAD = 50000;
+  private static final int THREADS = 8;
+
+  public static void main(String[] args) throws Exception {
+    Path dir = Files.createTempDirectory("gwt-log");
+    Path file = dir.resolve("test.log");
+    final ServerLogImplFile log = new ServerLogImplFile(file, "%t %m%n", MAX_SIZE, 0,
+        ServerLogImplFile.Sync.ROLL, THREADS * RECORDS_PER_THREAD);
+
+    final LogRecord[][] records = new LogRecord[THREADS][RECORDS_PER_THREAD];
+    for (int t = 0; t < THREADS; t++) {
+      for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+        records[t][i] = new LogRecord("gwt-log", Log.LOG_LEVEL_INFO, "" + i, null);
+      }
+    }
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      final int thread = t;
+      threads[t] = new Thread("t" + t) {
+        @Override
+        public void run() {
+          for (LogRecord record : records[thread]) {
+            log.log(record);
+          }
+        }
+      };
+    }
+    long start = System.nanoTime();
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long logNanos = System.nanoTime() - start;
+    log.close();
+    long writeNanos = System.nanoTime() - start;
+
+    BitSet[] seen = new BitSet[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      seen[t] = new BitSet(RECORDS_PER_THREAD);
+    }
+    List<Path> files = new ArrayList<Path>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      for (Path path : stream) {
+        files.add(path);
+      }
+    }
+    for (Path path : files) {
+      // the record which reaches the maximum size is the last one in the file
+      if (Files.size(path) >= MAX_SIZE + "t0 49999\n".length()) {
+        throw new AssertionError(path + " was not rolled at " + MAX_SIZE + " bytes");
+      }
+      for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+        String[] parts = line.split(" ");
+        int t = Integer.parseInt(parts[0].substring(1));
+        int i = Integer.parseInt(parts[1]);
+        if (parts.length != 2 || seen[t].get(i)) {
+          throw new AssertionError("unexpected line '" + line + "' in " + path);
+        }
+        seen[t].set(i);
+      }
+      Files.delete(path);
+    }
+    Files.delete(dir);
+    for (int t = 0; t < THREADS; t++) {
+      if (seen[t].cardinality() != RECORDS_PER_THREAD) {
+        throw new AssertionError("thread " + t + " lost "
+            + (RECORDS_PER_THREAD - seen[t].cardinality()) + " records");
+      }
+    }
+    if (files.size() < 2) {
+      throw new AssertionError("expected the log file to roll");
+    }
+
+    int total = THREADS * RECORDS_PER_THREAD;
+    System.out.println(THREADS + " threads, " + total + " records, " + files.size() + " files");
+    System.out.println("log():         " + logNanos / total + " ns/record");
+    System.out.println("until written: " + writeNanos / total + " ns/record");
+  }
+}
@@ -0,0 +1,201 @@
+package com.allen_sauer.gwt.log.server;
+
+import com.allen_sauer.gwt.log.client.Log;
+import com.allen_sauer.gwt.log.shared.LogRecord;
+
+import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Journals records from several threads at once into small segments, then replays them: in full,
+ * for a time range, via the index, after corrupting a record and after a gap left by a record
+ * whose writer died before writing it.
+ */
+public class ServerLogImplJournalTest {
+  private static final long INDEX_PARTITION_MILLIS = 60 * 60 * 1000L;
+  private static final int RECORDS_PER_THREAD = 20000;
+  private static final int SEGMENT_SIZE = 512 * 1024;
+  private static final int THREADS = 8;
+
+  public static void main(String[] args) throws Exception {
+    Path dir = Files.createTempDirectory("gwt-log-journal");
+    final ServerLogImplJournal journal = new ServerLogImplJournal(dir, SEGMENT_SIZE,
+        INDEX_PARTITION_MILLIS);
+
+    final LogRecord[][] records = new LogRecord[THREADS][RECORDS_PER_THREAD];
+    for (int t = 0; t < THREADS; t++) {
+      for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+        records[t][i] = new LogRecord("t" + t, Log.LOG_LEVEL_ERROR, "" + i,
+            i % 1000 == 0 ? new IllegalStateException("failure " + i) : null);
+        records[t][i].set("remoteAddr", "10.0.0." + t);
+      }
+    }
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      final int thread = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (LogRecord record : records[thread]) {
+            journal.log(record);
+          }
+        }
+      };
+    }
+    long start = System.nanoTime();
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long nanos = System.nanoTime() - start;
+    journal.close();
+    int total = THREADS * RECORDS_PER_THREAD;
+    List<Path> segments = ServerLogImplJournal.listSegments(dir);
+    System.out.println(THREADS + " threads, " + total + " records, " + segments.size()
+        + " segments, " + nanos / total + " ns/record");
+    if (segments.size() < 2 || journal.getDroppedCount() != 0) {
+      throw new AssertionError(segments.size() + " segments, " + journal.getDroppedCount()
+          + " dropped");
+    }
+
+    // full replay
+    BitSet[] seen = new BitSet[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      seen[t] = new BitSet(RECORDS_PER_THREAD);
+    }
+    JournalReader reader = new JournalReader(dir, Long.MIN_VALUE, Long.MAX_VALUE);
+    long first = Long.MAX_VALUE;
+    long last = Long.MIN_VALUE;
+    for (JournalRecord record; (record = reader.next()) != null;) {
+      int t = Integer.parseInt(record.getCategory().substring(1));
+      int i = Integer.parseInt(record.getMessage());
+      LogRecord original = records[t][i];
+      if (seen[t].get(i) || record.getTimestamp() != original.getTimestamp()
+          || record.getRecordSequence() != original.getRecordSequence()
+          || !("10.0.0." + t).equals(record.getAttributes().get("remoteAddr"))
+          || (i % 1000 == 0) != (record.getThrowableText() != null)) {
+        throw new AssertionError("unexpected record " + record);
+      }
+      seen[t].set(i);
+      first = Math.min(first, record.getIngestTimestamp());
+      last = Math.max(last, record.getIngestTimestamp());
+    }
+    for (int t = 0; t < THREADS; t++) {
+      if (seen[t].cardinality() != RECORDS_PER_THREAD) {
+        throw new AssertionError("thread " + t + " lost "
+            + (RECORDS_PER_THREAD - seen[t].cardinality()) + " records");
+      }
+    }
+
+    // time range replay matches filtering the full replay
+    long from = first + (last - first) / 3;
+    long to = first + 2 * (last - first) / 3;
+    int expected = 0;
+    reader = new JournalReader(dir, Long.MIN_VALUE, Long.MAX_VALUE);
+    for (JournalRecord record; (record = reader.next()) != null;) {
+      if (record.getIngestTimestamp() >= from && record.getIngestTimestamp() <= to) {
+        expected++;
+      }
+    }
+    int actual = 0;
+    reader = new JournalReader(dir, from, to);
+    for (JournalRecord record; (record = reader.next()) != null;) {
+      actual++;
+    }
+    if (actual != expected) {
+      throw new AssertionError("expected " + expected + " records in range, found " + actual);
+    }
+
+    // the index finds the same records as a replay, including after reopening the journal and
+    // after rebuilding a lost index
+    checkIndex(journal.getIndex(), dir, 0, from, to);
+    checkIndex(JournalIndex.open(dir), dir, 1, from, to);
+    new ServerLogImplJournal(dir, SEGMENT_SIZE, INDEX_PARTITION_MILLIS).close();
+    checkIndex(JournalIndex.open(dir), dir, 2, Long.MIN_VALUE, Long.MAX_VALUE);
+    delete(dir.resolve("index"));
+    ServerLogImplJournal rebuilt = new ServerLogImplJournal(dir, SEGMENT_SIZE,
+        INDEX_PARTITION_MILLIS);
+    checkIndex(rebuilt.getIndex(), dir, 3, Long.MIN_VALUE, Long.MAX_VALUE);
+    rebuilt.close();
+
+    // a record which was not completely written is skipped
+    try (RandomAccessFile file = new RandomAccessFile(segments.get(0).toFile(), "rw")) {
+      file.seek(ServerLogImplJournal.HEADER_SIZE + 20);
+      file.writeInt(0xDEAD);
+    }
+    segments = ServerLogImplJournal.listSegments(dir);
+    reader = new JournalReader(dir, Long.MIN_VALUE, Long.MAX_VALUE);
+    int count = 0;
+    for (JournalRecord record; (record = reader.next()) != null;) {
+      count++;
+    }
+    if (count != total - 1 || reader.getSkippedCount() != 1) {
+      throw new AssertionError(count + " records read, " + reader.getSkippedCount() + " skipped");
+    }
+
+    // records after a reservation which was never written are still found, also by a rebuild
+    try (RandomAccessFile file = new RandomAccessFile(segments.get(0).toFile(), "rw")) {
+      int position = ServerLogImplJournal.align(ServerLogImplJournal.HEADER_SIZE
+          + file.readInt());
+      file.seek(position);
+      int size = ServerLogImplJournal.align(ServerLogImplJournal.HEADER_SIZE + file.readInt());
+      file.seek(position);
+      file.write(new byte[size]);
+    }
+    reader = new JournalReader(dir, Long.MIN_VALUE, Long.MAX_VALUE);
+    count = 0;
+    for (JournalRecord record; (record = reader.next()) != null;) {
+      count++;
+    }
+    if (count != total - 2 || reader.getSkippedCount() != 2) {
+      throw new AssertionError(count + " records read, " + reader.getSkippedCount() + " skipped");
+    }
+    delete(dir.resolve("index"));
+    rebuilt = new ServerLogImplJournal(dir, SEGMENT_SIZE, INDEX_PARTITION_MILLIS);
+    checkIndex(rebuilt.getIndex(), dir, 4, Long.MIN_VALUE, Long.MAX_VALUE);
+    rebuilt.close();
+
+    delete(dir);
+  }
+
+  private static void checkIndex(JournalIndex index, Path dir, int thread, long from, long to)
+      throws Exception {
+    String category = "t" + thread;
+    int expected = 0;
+    JournalReader reader = new JournalReader(dir, from, to);
+    for (JournalRecord record; (record = reader.next()) != null;) {
+      if (category.equals(record.getCategory())) {
+        expected++;
+      }
+    }
+    List<JournalRecord> found = index.search(new JournalQuery(from, to).category(category)
+        .attribute("remoteAddr", "10.0.0." + thread).minimumLevel(Log.LOG_LEVEL_ERROR),
+        Integer.MAX_VALUE);
+    for (JournalRecord record : found) {
+      if (!category.equals(record.getCategory()) || record.getIngestTimestamp() < from
+          || record.getIngestTimestamp() > to) {
+        throw new AssertionError("unexpected record " + record);
+      }
+    }
+    if (found.size() != expected || expected == 0) {
+      throw new AssertionError("expected " + expected + " records, found " + found.size());
+    }
+  }
+
+  private static void delete(Path path) throws Exception {
+    if (Files.isDirectory(path)) {
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+        for (Path child : stream) {
+          delete(child);
+        }
+      }
+    }
+    Files.delete(path);
+  }
+}